@@ -0,0 +1,32 @@
+package com.github.yuga.gandikota.latency.monitoring.benchmark;
+
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Options shared by the <code>main</code> methods of the benchmarks.
+ *
+ * Every benchmark is run with the GC profiler, which reports the allocation rate next to the score:
+ * <code>gc.alloc.rate</code> in MB/sec and <code>gc.alloc.rate.norm</code> in bytes per operation.
+ * When running <code>target/benchmarks.jar</code> directly, pass <code>-prof gc</code> for the same.
+ *
+ * @author Yuga Gandikota
+ */
+public final class BenchmarkOptions {
+
+	private BenchmarkOptions() {
+	}
+
+	/**
+	 * @param aBenchmark benchmark class to run.
+	 * @return options that run all benchmarks of the class with the GC profiler.
+	 */
+	public static ChainedOptionsBuilder withAllocationProfiler(Class<?> aBenchmark) {
+		return new OptionsBuilder()
+				.include(Pattern.quote(aBenchmark.getName()) + "\\.")
+				.addProfiler(GCProfiler.class);
+	}
+}
@@ -0,0 +1,92 @@
+package com.github.yuga.gandikota.latency.monitoring.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.AttributeNamingStrategy;
+
+/**
+ * Cost of building an attribute name with each of the naming strategies, for a proxy of one
+ * and of two interfaces.
+ *
+ * <pre>
+ * mvn -P benchmarks package
+ * java -cp target/benchmarks.jar com.github.yuga.gandikota.latency.monitoring.benchmark.NamingStrategyBenchmark
+ * </pre>
+ *
+ * @author Yuga Gandikota
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamingStrategyBenchmark {
+
+	public interface Repository {
+		List<String> find(String query, int limit, Map<String, Object> hints);
+	}
+
+	public interface Cache {
+		void evict(String key);
+	}
+
+	public static class RepositoryImpl implements Repository, Cache {
+		public List<String> find(String query, int limit, Map<String, Object> hints) {
+			return null;
+		}
+
+		public void evict(String key) {
+		}
+	}
+
+	/* simple name of the naming strategy class*/
+	@Param({"DefaultAttributeNamingStrategy", "SimpleAttributeNamingStrategy"})
+	public String strategy;
+
+	/* number of interfaces proxied, the default strategy adds the interface name if there is more than one*/
+	@Param({"1", "2"})
+	public int types;
+
+	private AttributeNamingStrategy namingStrategy;
+
+	private Object source;
+
+	private Class<?>[] allTypes;
+
+	private Method method;
+
+	@Setup
+	public void setup() throws Exception {
+		namingStrategy = (AttributeNamingStrategy) Class.forName(
+				AttributeNamingStrategy.class.getPackage().getName() + "." + strategy).newInstance();
+		source = new RepositoryImpl();
+		allTypes = types == 1 ? new Class<?>[] {Repository.class} : new Class<?>[] {Repository.class, Cache.class};
+		method = Repository.class.getMethod("find", String.class, int.class, Map.class);
+	}
+
+	@Benchmark
+	public String getAttributeName() {
+		return namingStrategy.getAttributeName(source, allTypes, Repository.class, method);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(BenchmarkOptions.withAllocationProfiler(NamingStrategyBenchmark.class).build()).run();
+	}
+}
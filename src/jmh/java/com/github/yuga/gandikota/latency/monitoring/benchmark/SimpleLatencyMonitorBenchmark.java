@@ -0,0 +1,75 @@
+package com.github.yuga.gandikota.latency.monitoring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+
+import com.github.yuga.gandikota.latency.monitoring.utils.SimpleLatencyMonitor;
+
+/**
+ * Cost of <code>SimpleLatencyMonitor.addSample</code> and <code>getAverage</code> on a monitor shared by
+ * all benchmark threads, for several sample sizes.
+ *
+ * Run <code>main</code> to run the benchmark with 1, 8 and 64 threads and the GC profiler:
+ * <pre>
+ * mvn -P benchmarks package
+ * java -cp target/benchmarks.jar com.github.yuga.gandikota.latency.monitoring.benchmark.SimpleLatencyMonitorBenchmark
+ * </pre>
+ *
+ * @author Yuga Gandikota
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleLatencyMonitorBenchmark {
+
+	/* thread counts run by main*/
+	private static final int[] THREADS = {1, 8, 64};
+
+	/* number of samples the average is computed over*/
+	@Param({"10", "100", "1000"})
+	public int sampleSize;
+
+	private SimpleLatencyMonitor monitor;
+
+	@Setup
+	public void setup() {
+		monitor = new SimpleLatencyMonitor(sampleSize, TimeUnit.MICROSECONDS);
+		//start with a full buffer, so getAverage() does not read a partly filled one.
+		for (int i=0; i<sampleSize; i++) {
+			monitor.addSample(1000L + i);
+		}
+	}
+
+	@Benchmark
+	public void addSample(StripedLatencyMonitorBenchmark.Samples samples) {
+		monitor.addSample(samples.next());
+	}
+
+	@Benchmark
+	public long getAverage() {
+		return monitor.getAverage();
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : THREADS) {
+			new Runner(BenchmarkOptions.withAllocationProfiler(SimpleLatencyMonitorBenchmark.class)
+					.threads(threads)
+					.build()).run();
+		}
+	}
+}
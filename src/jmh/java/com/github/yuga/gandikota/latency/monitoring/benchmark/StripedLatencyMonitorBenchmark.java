@@ -0,0 +1,107 @@
+package com.github.yuga.gandikota.latency.monitoring.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import com.github.yuga.gandikota.latency.monitoring.utils.HistogramLatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencyMonitor;
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.SimpleLatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.StripedLatencyMonitorFactory;
+
+/**
+ * Recording throughput of a single monitor shared by all benchmark threads, striped and not striped.
+ *
+ * Run <code>main</code> to run the benchmark with 1, 2, 4... up to the number of available processors
+ * threads, with the GC profiler, and print how the throughput scales:
+ * <pre>
+ * mvn -P benchmarks package
+ * java -cp target/benchmarks.jar com.github.yuga.gandikota.latency.monitoring.benchmark.StripedLatencyMonitorBenchmark
+ * </pre>
+ *
+ * @author Yuga Gandikota
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedLatencyMonitorBenchmark {
+
+	/* kind of monitor: BUFFER or HISTOGRAM*/
+	@Param({"BUFFER", "HISTOGRAM"})
+	public String kind;
+
+	/* number of stripes, 1 is not striped, 0 is one stripe per available processor*/
+	@Param({"1", "0"})
+	public int stripes;
+
+	private LatencyMonitor monitor;
+
+	@Setup
+	public void setup() {
+		LatencyMonitorFactory factory = "HISTOGRAM".equals(kind) ? new HistogramLatencyMonitorFactory() : new SimpleLatencyMonitorFactory();
+		if (stripes != 1) {
+			factory = new StripedLatencyMonitorFactory(factory, stripes);
+		}
+		monitor = factory.createLatencyMonitor(100, TimeUnit.MICROSECONDS);
+	}
+
+	/* per thread source of sample values, spread between about 1 and 65 microseconds*/
+	@State(Scope.Thread)
+	public static class Samples {
+		private long seed = System.nanoTime() | 1L;
+
+		long next() {
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			return 1000L + (seed & 0xFFFFL);
+		}
+	}
+
+	@Benchmark
+	public void addSample(Samples samples) {
+		monitor.addSample(samples.next());
+	}
+
+	public static void main(String[] args) throws Exception {
+		int processors = Runtime.getRuntime().availableProcessors();
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("%-10s %-8s %-8s %15s%n", "kind", "stripes", "threads", "ops/us"));
+
+		for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+			Options options = BenchmarkOptions.withAllocationProfiler(StripedLatencyMonitorBenchmark.class)
+					.threads(threads)
+					.build();
+			Collection<RunResult> results = new Runner(options).run();
+			for (RunResult result : results) {
+				summary.append(String.format("%-10s %-8s %-8d %15.2f%n",
+						result.getParams().getParam("kind"),
+						result.getParams().getParam("stripes"),
+						threads,
+						result.getPrimaryResult().getScore()));
+			}
+			if (threads == processors) {
+				break;
+			}
+		}
+		System.out.println(summary);
+	}
+}
@@ -0,0 +1,162 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.AttributeList;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.openmbean.TabularData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+
+import com.github.yuga.gandikota.latency.monitoring.benchmark.BenchmarkOptions;
+
+/**
+ * Cost of reading all attributes of a proxy with <code>getAttributes</code> and <code>snapshot</code>, and of <code>getMBeanInfo</code>,
+ * for a bean with 32 monitored methods. With HISTOGRAM monitors and failures recorded for every method
+ * the bean has more than 700 attributes.
+ *
+ * <pre>
+ * mvn -P benchmarks package
+ * java -cp target/benchmarks.jar com.github.yuga.gandikota.latency.monitoring.proxy.GetAttributesBenchmark
+ * </pre>
+ *
+ * @author Yuga Gandikota
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetAttributesBenchmark {
+
+	public interface Wide {
+		void m00();
+		void m01();
+		void m02();
+		void m03();
+		void m04();
+		void m05();
+		void m06();
+		void m07();
+		void m08();
+		void m09();
+		void m10();
+		void m11();
+		void m12();
+		void m13();
+		void m14();
+		void m15();
+		void m16();
+		void m17();
+		void m18();
+		void m19();
+		void m20();
+		void m21();
+		void m22();
+		void m23();
+		void m24();
+		void m25();
+		void m26();
+		void m27();
+		void m28();
+		void m29();
+		void m30();
+		void m31();
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=Buffer", types={Wide.class}, monitorKind=MonitorKind.BUFFER)
+	static class Buffer {
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=Histogram", types={Wide.class}, monitorKind=MonitorKind.HISTOGRAM)
+	static class Histogram {
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=Windowed", types={Wide.class}, monitorKind=MonitorKind.WINDOWED)
+	static class Windowed {
+	}
+
+	/* kind of monitor used by the proxy*/
+	@Param({"BUFFER", "HISTOGRAM", "WINDOWED"})
+	public MonitorKind kind;
+
+	/* whether every method also failed once, which adds the failure attributes*/
+	@Param({"false", "true"})
+	public boolean failures;
+
+	private LatencyMonitoredProxy proxy;
+
+	private String[] attributeNames;
+
+	@Setup
+	public void setup() throws Exception {
+		final boolean[] fail = new boolean[1];
+		Object bean = java.lang.reflect.Proxy.newProxyInstance(Wide.class.getClassLoader(), new Class<?>[] {Wide.class},
+				new InvocationHandler() {
+					public Object invoke(Object aProxy, Method aMethod, Object[] aArgs) {
+						if (fail[0]) {
+							throw new IllegalStateException("benchmark failure");
+						}
+						return null;
+					}
+				});
+		Class<?> holder = kind == MonitorKind.HISTOGRAM ? Histogram.class : (kind == MonitorKind.WINDOWED ? Windowed.class : Buffer.class);
+		proxy = new LatencyMonitoredProxy(bean, holder.getAnnotation(JMXLatencyMonitored.class));
+		Wide wide = (Wide) proxy.getProxy();
+
+		for (Method method : Wide.class.getMethods()) {
+			method.invoke(wide);
+		}
+		if (failures) {
+			fail[0] = true;
+			for (Method method : Wide.class.getMethods()) {
+				try {
+					method.invoke(wide);
+				}
+				catch (Exception e) {
+					//expected
+				}
+			}
+		}
+
+		MBeanAttributeInfo[] attributes = proxy.getMBeanInfo().getAttributes();
+		attributeNames = new String[attributes.length];
+		for (int i=0; i<attributes.length; i++) {
+			attributeNames[i] = attributes[i].getName();
+		}
+	}
+
+	@Benchmark
+	public AttributeList getAttributes() {
+		return proxy.getAttributes(attributeNames);
+	}
+
+	@Benchmark
+	public TabularData snapshot() {
+		return proxy.snapshot();
+	}
+
+	@Benchmark
+	public MBeanInfo getMBeanInfo() {
+		return proxy.getMBeanInfo();
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(BenchmarkOptions.withAllocationProfiler(GetAttributesBenchmark.class).build()).run();
+	}
+}
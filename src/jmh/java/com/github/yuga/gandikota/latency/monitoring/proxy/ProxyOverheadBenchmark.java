@@ -0,0 +1,119 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+
+import com.github.yuga.gandikota.latency.monitoring.benchmark.BenchmarkOptions;
+
+/**
+ * Overhead of LatencyMonitoredProxy: a direct call to a bean against the same call through its proxy,
+ * for every kind of monitor and proxy engine. The proxy is created directly, without Spring and without registering
+ * the MBean, which is why this benchmark is in the proxy package.
+ *
+ * <pre>
+ * mvn -P benchmarks package
+ * java -cp target/benchmarks.jar com.github.yuga.gandikota.latency.monitoring.proxy.ProxyOverheadBenchmark
+ * </pre>
+ *
+ * @author Yuga Gandikota
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyOverheadBenchmark {
+
+	public interface Service {
+		long compute(long value);
+	}
+
+	public static class ServiceImpl implements Service {
+		public long compute(long value) {
+			return value * 31L + 7L;
+		}
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=Buffer", types={Service.class}, monitorKind=MonitorKind.BUFFER)
+	static class Buffer {
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=Histogram", types={Service.class}, monitorKind=MonitorKind.HISTOGRAM)
+	static class Histogram {
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=Windowed", types={Service.class}, monitorKind=MonitorKind.WINDOWED)
+	static class Windowed {
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=Ewma", types={Service.class}, monitorKind=MonitorKind.EWMA)
+	static class Ewma {
+	}
+
+	@JMXLatencyMonitored(beanName="Benchmark:name=OffHeap", types={Service.class}, monitorKind=MonitorKind.OFF_HEAP)
+	static class OffHeap {
+	}
+
+	/* kind of monitor used by the proxy*/
+	@Param({"BUFFER", "HISTOGRAM", "WINDOWED", "EWMA", "OFF_HEAP"})
+	public MonitorKind kind;
+
+	/* how the proxy is implemented*/
+	@Param({"REFLECTIVE", "GENERATED"})
+	public ProxyEngine engine;
+
+	private Service direct;
+
+	private Service proxied;
+
+	private long value;
+
+	@Setup
+	public void setup() throws Exception {
+		direct = new ServiceImpl();
+		proxied = (Service) new LatencyMonitoredProxy(new ServiceImpl(), annotation(kind), engine).getProxy();
+	}
+
+	/* annotation of the holder class declared for the given kind*/
+	static JMXLatencyMonitored annotation(MonitorKind aKind) {
+		switch (aKind) {
+		case HISTOGRAM:
+			return Histogram.class.getAnnotation(JMXLatencyMonitored.class);
+		case WINDOWED:
+			return Windowed.class.getAnnotation(JMXLatencyMonitored.class);
+		case EWMA:
+			return Ewma.class.getAnnotation(JMXLatencyMonitored.class);
+		case OFF_HEAP:
+			return OffHeap.class.getAnnotation(JMXLatencyMonitored.class);
+		default:
+			return Buffer.class.getAnnotation(JMXLatencyMonitored.class);
+		}
+	}
+
+	@Benchmark
+	public long direct() {
+		return direct.compute(value++);
+	}
+
+	@Benchmark
+	public long proxied() {
+		return proxied.compute(value++);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(BenchmarkOptions.withAllocationProfiler(ProxyOverheadBenchmark.class).build()).run();
+	}
+}
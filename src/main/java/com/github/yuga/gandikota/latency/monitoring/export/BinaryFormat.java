@@ -0,0 +1,71 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Layout of binary snapshot files, shared by <code>BinarySnapshotWriter</code> and <code>SnapshotReader</code>.
+ * 
+ * <pre>
+ * file     := MAGIC(int) VERSION(byte) record*
+ * record   := SERIES id(varint) bean(utf) attribute(utf) unit(utf)
+ *           | SNAPSHOT timestampDelta(zigzag varlong) count(varint) entry*
+ * entry    := (id &lt;&lt; 1 | 0)(varint) valueDelta(zigzag varlong)   integral value
+ *           | (id &lt;&lt; 1 | 1)(varint) value(double)               other values
+ * </pre>
+ * 
+ * A series is an attribute of a bean. It is defined once per file, before the first snapshot that has
+ * a value of it. Integral values are written as the difference to the previous integral value of the
+ * series in the file, 0 before the first, so counters that change little take a byte or two. The
+ * timestamp is the difference to the timestamp of the previous snapshot in the file, in milliseconds.
+ * Every file starts from scratch, so every file can be read by itself.
+ * 
+ * @author Yuga Gandikota
+ */
+final class BinaryFormat {
+
+	/* "LMSN"*/
+	static final int MAGIC = 0x4C4D534E;
+
+	static final byte VERSION = 1;
+
+	/* record defining a series*/
+	static final byte SERIES = 1;
+
+	/* record with the values of a snapshot*/
+	static final byte SNAPSHOT = 2;
+
+	private BinaryFormat() {
+	}
+
+	/* Writes an unsigned value 7 bits a byte, least significant first*/
+	static void writeVarLong(DataOutput aOut, long aValue) throws IOException {
+		while ((aValue & ~0x7FL) != 0) {
+			aOut.writeByte((int) ((aValue & 0x7F) | 0x80));
+			aValue >>>= 7;
+		}
+		aOut.writeByte((int) aValue);
+	}
+
+	static long readVarLong(DataInput aIn) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = aIn.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varlong");
+	}
+
+	/* Maps signed values to unsigned ones, small negative values stay small*/
+	static long zigZag(long aValue) {
+		return (aValue << 1) ^ (aValue >> 63);
+	}
+
+	static long unZigZag(long aValue) {
+		return (aValue >>> 1) ^ -(aValue & 1);
+	}
+}
@@ -0,0 +1,92 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes snapshots in the binary format described in <code>BinaryFormat</code>.
+ * 
+ * @author Yuga Gandikota
+ */
+final class BinarySnapshotWriter extends SnapshotWriter {
+
+	private final DataOutputStream out;
+
+	/* entries of the snapshot being written, written after the series they refer to*/
+	private final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+	private final DataOutputStream entries = new DataOutputStream(entryBytes);
+	private int entryCount;
+
+	/* id of every series defined so far, keyed by bean and attribute*/
+	private final Map<String, Integer> seriesIds = new HashMap<String, Integer>();
+
+	/* previous integral value of every series, by id*/
+	private long[] previous = new long[64];
+
+	private long previousTimestamp;
+	private long timestamp;
+
+	BinarySnapshotWriter(OutputStream aOut) throws IOException {
+		out = new DataOutputStream(aOut);
+		out.writeInt(BinaryFormat.MAGIC);
+		out.writeByte(BinaryFormat.VERSION);
+	}
+
+	void begin(long aTimestamp) {
+		timestamp = aTimestamp;
+		entryBytes.reset();
+		entryCount = 0;
+	}
+
+	void value(String aBean, String aAttribute, double aValue, String aUnit) throws IOException {
+		int id = seriesId(aBean, aAttribute, aUnit);
+		long integral = (long) aValue;
+		if (integral == aValue) {
+			BinaryFormat.writeVarLong(entries, (long) id << 1);
+			BinaryFormat.writeVarLong(entries, BinaryFormat.zigZag(integral - previous[id]));
+			previous[id] = integral;
+		}
+		else {
+			BinaryFormat.writeVarLong(entries, (long) id << 1 | 1);
+			entries.writeDouble(aValue);
+		}
+		entryCount++;
+	}
+
+	void end() throws IOException {
+		out.writeByte(BinaryFormat.SNAPSHOT);
+		BinaryFormat.writeVarLong(out, BinaryFormat.zigZag(timestamp - previousTimestamp));
+		BinaryFormat.writeVarLong(out, entryCount);
+		entryBytes.writeTo(out);
+		out.flush();
+		previousTimestamp = timestamp;
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/* Returns id of the series, defining it first if this is its first value in the file*/
+	private int seriesId(String aBean, String aAttribute, String aUnit) throws IOException {
+		String key = aBean + '\u0000' + aAttribute;
+		Integer id = seriesIds.get(key);
+		if (id == null) {
+			id = Integer.valueOf(seriesIds.size());
+			seriesIds.put(key, id);
+			if (id.intValue() == previous.length) {
+				previous = Arrays.copyOf(previous, previous.length * 2);
+			}
+			out.writeByte(BinaryFormat.SERIES);
+			BinaryFormat.writeVarLong(out, id.intValue());
+			out.writeUTF(aBean);
+			out.writeUTF(aAttribute);
+			out.writeUTF(aUnit == null ? "" : aUnit);
+		}
+		return id.intValue();
+	}
+}
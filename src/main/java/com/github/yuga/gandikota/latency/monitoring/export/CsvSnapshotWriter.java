@@ -0,0 +1,61 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a line of timestamp, bean, attribute, value and unit for every value, after a header line.
+ * Fields with commas or quotes are quoted.
+ * 
+ * @author Yuga Gandikota
+ */
+final class CsvSnapshotWriter extends SnapshotWriter {
+
+	static final String HEADER = "timestamp,bean,attribute,value,unit";
+
+	private final Writer out;
+
+	private String timestamp;
+
+	CsvSnapshotWriter(OutputStream aOut) throws IOException {
+		out = new BufferedWriter(new OutputStreamWriter(aOut, StandardCharsets.UTF_8));
+		out.write(HEADER);
+		out.write('\n');
+	}
+
+	void begin(long aTimestamp) {
+		timestamp = Long.toString(aTimestamp);
+	}
+
+	void value(String aBean, String aAttribute, double aValue, String aUnit) throws IOException {
+		out.write(timestamp);
+		out.write(',');
+		out.write(quote(aBean));
+		out.write(',');
+		out.write(quote(aAttribute));
+		out.write(',');
+		out.write(format(aValue));
+		out.write(',');
+		out.write(quote(aUnit == null ? "" : aUnit));
+		out.write('\n');
+	}
+
+	void end() throws IOException {
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private static String quote(String aField) {
+		if (aField.indexOf(',') < 0 && aField.indexOf('"') < 0 && aField.indexOf('\n') < 0) {
+			return aField;
+		}
+		return '"' + aField.replace("\"", "\"\"") + '"';
+	}
+}
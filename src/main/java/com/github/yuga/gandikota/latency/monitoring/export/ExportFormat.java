@@ -0,0 +1,44 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Formats the <code>SnapshotExporter</code> can write.
+ * 
+ * @author Yuga Gandikota
+ */
+public enum ExportFormat {
+	/** compact binary records with a name dictionary and delta encoded values, decoded by <code>SnapshotReader</code>*/
+	BINARY("lms"),
+	/** a line of timestamp, bean, attribute, value and unit for every value*/
+	CSV("csv"),
+	/** a JSON object with the values of a bean for every bean and snapshot*/
+	JSON_LINES("jsonl");
+	
+	private final String extension;
+	
+	private ExportFormat(String aExtension) {
+		extension = aExtension;
+	}
+	
+	/**
+	 * @return extension of the files written in this format.
+	 */
+	public String getExtension() {
+		return extension;
+	}
+	
+	/* Creates writer of this format, writing to the given stream*/
+	SnapshotWriter newWriter(OutputStream aOut) throws IOException {
+		switch (this) {
+		case CSV:
+			return new CsvSnapshotWriter(aOut);
+		case JSON_LINES:
+			return new JsonLinesSnapshotWriter(aOut);
+		case BINARY:
+		default:
+			return new BinarySnapshotWriter(aOut);
+		}
+	}
+}
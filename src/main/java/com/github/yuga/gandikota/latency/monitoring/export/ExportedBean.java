@@ -0,0 +1,19 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import com.github.yuga.gandikota.latency.monitoring.proxy.LatencyMonitoredProxy;
+
+/**
+ * Bean registered with an exporter, with the name it is exported under.
+ * 
+ * @author Yuga Gandikota
+ */
+final class ExportedBean {
+
+	final String name;
+	final LatencyMonitoredProxy proxy;
+
+	ExportedBean(String aName, LatencyMonitoredProxy aProxy) {
+		name = aName;
+		proxy = aProxy;
+	}
+}
@@ -0,0 +1,91 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a line with a JSON object for every bean of a snapshot:
+ * <pre>
+ * {"timestamp":1500000000000,"bean":"a:name=b","values":{"m()":{"value":12,"unit":"MILLISECONDS"}, ...}}
+ * </pre>
+ * Values that are not numbers in JSON, NaN and infinities, are written as null.
+ * 
+ * @author Yuga Gandikota
+ */
+final class JsonLinesSnapshotWriter extends SnapshotWriter {
+
+	private final Writer out;
+
+	private long timestamp;
+
+	/* bean of the line being written, null if none is*/
+	private String bean;
+
+	JsonLinesSnapshotWriter(OutputStream aOut) {
+		out = new BufferedWriter(new OutputStreamWriter(aOut, StandardCharsets.UTF_8));
+	}
+
+	void begin(long aTimestamp) {
+		timestamp = aTimestamp;
+		bean = null;
+	}
+
+	void value(String aBean, String aAttribute, double aValue, String aUnit) throws IOException {
+		if (!aBean.equals(bean)) {
+			endLine();
+			bean = aBean;
+			out.write("{\"timestamp\":");
+			out.write(Long.toString(timestamp));
+			out.write(",\"bean\":");
+			writeString(aBean);
+			out.write(",\"values\":{");
+		}
+		else {
+			out.write(',');
+		}
+		writeString(aAttribute);
+		out.write(":{\"value\":");
+		out.write(Double.isNaN(aValue) || Double.isInfinite(aValue) ? "null" : format(aValue));
+		out.write(",\"unit\":");
+		writeString(aUnit == null ? "" : aUnit);
+		out.write('}');
+	}
+
+	void end() throws IOException {
+		endLine();
+		bean = null;
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void endLine() throws IOException {
+		if (bean != null) {
+			out.write("}}\n");
+		}
+	}
+
+	private void writeString(String aValue) throws IOException {
+		out.write('"');
+		for (int i=0; i<aValue.length(); i++) {
+			char c = aValue.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			}
+			else if (c < 0x20) {
+				out.write(String.format("\\u%04x", (int) c));
+			}
+			else {
+				out.write(c);
+			}
+		}
+		out.write('"');
+	}
+}
@@ -0,0 +1,113 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencySnapshot;
+
+/**
+ * Merges latency snapshots collected from several nodes, e.g. with the <code>latencySnapshot</code> operation
+ * of every node's proxy, and prints the percentiles of the fleet as a whole. Percentiles cannot be averaged,
+ * the snapshots are merged bucket by bucket instead.
+ * <pre>
+ * java -cp ... com.github.yuga.gandikota.latency.monitoring.export.LatencySnapshotAggregator [-unit MILLISECONDS] [-out merged.bin] file...
+ * </pre>
+ *
+ * @author Yuga Gandikota
+ */
+public class LatencySnapshotAggregator {
+
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+	private LatencySnapshot merged;
+
+	private int files;
+
+	/**
+	 * Merges the snapshot in the given file into the aggregate.
+	 * @throws IOException if the file could not be read or does not hold a snapshot.
+	 * @throws IllegalArgumentException if the snapshot was recorded with a different histogram layout.
+	 */
+	public void add(File aFile) throws IOException {
+		LatencySnapshot snapshot;
+		try {
+			snapshot = LatencySnapshot.fromByteArray(Files.readAllBytes(aFile.toPath()));
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException(aFile + ": " + e.getMessage(), e);
+		}
+		if (merged == null) {
+			merged = snapshot;
+		}
+		else {
+			merged.merge(snapshot);
+		}
+		files++;
+	}
+
+	/* Snapshot merged so far, null if no file was added*/
+	public LatencySnapshot getMerged() {
+		return merged;
+	}
+
+	public int getFiles() {
+		return files;
+	}
+
+	/**
+	 * Merges the given snapshot files, prints the aggregate in the given unit (nanoseconds by default)
+	 * and writes the merged snapshot to the file following <code>-out</code>, if any.
+	 */
+	public static void main(String[] args) throws IOException {
+		TimeUnit unit = TimeUnit.NANOSECONDS;
+		File out = null;
+		int first = 0;
+		while (first + 1 < args.length && args[first].startsWith("-")) {
+			if ("-unit".equals(args[first])) {
+				unit = TimeUnit.valueOf(args[first + 1]);
+			}
+			else if ("-out".equals(args[first])) {
+				out = new File(args[first + 1]);
+			}
+			else {
+				break;
+			}
+			first += 2;
+		}
+		if (args.length == first) {
+			System.err.println("usage: LatencySnapshotAggregator [-unit timeUnit] [-out file] file...");
+			System.exit(1);
+		}
+		LatencySnapshotAggregator aggregator = new LatencySnapshotAggregator();
+		for (int i=first; i<args.length; i++) {
+			aggregator.add(new File(args[i]));
+		}
+		LatencySnapshot merged = aggregator.getMerged();
+		long[] values = merged.getValuesAtPercentiles(PERCENTILES);
+		System.out.println("files=" + aggregator.getFiles());
+		System.out.println("count=" + merged.getCount());
+		System.out.println("min=" + convert(merged.getMin(), unit));
+		System.out.println("max=" + convert(merged.getMax(), unit));
+		System.out.println("mean=" + convert(merged.getMean(), unit));
+		for (int i=0; i<PERCENTILES.length; i++) {
+			System.out.println("p" + String.valueOf(PERCENTILES[i]).replace(".0", "") + "=" + convert(values[i], unit));
+		}
+		if (out != null) {
+			OutputStream stream = new FileOutputStream(out);
+			try {
+				stream.write(merged.toByteArray());
+			}
+			finally {
+				stream.close();
+			}
+		}
+	}
+
+	private static double convert(long aNanos, TimeUnit aUnit) {
+		return (double) aNanos / aUnit.toNanos(1);
+	}
+}
@@ -0,0 +1,80 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the file mapped by <code>SharedStatsRegion</code>, version 1. All numbers are little endian.
+ * 
+ * <pre>
+ * header, HEADER_SIZE bytes
+ *   0  int     MAGIC, "LMSR"
+ *   4  int     VERSION
+ *   8  int     HEADER_SIZE
+ *  12  int     ENTRY_SIZE
+ *  16  int     capacity, number of entries the file has room for
+ *  20  int     entry count, entries below it are initialized, only ever grows
+ *  24  long    process id of the writer
+ *  32  long    time of the last update, milliseconds since the epoch
+ *  40  long    number of updates so far
+ *  48  reserved
+ * 
+ * entry i, ENTRY_SIZE bytes at HEADER_SIZE + i * ENTRY_SIZE
+ *   0  long    sequence, odd while the value is being written
+ *   8  double  value
+ *  16  short   length of the unit, in bytes
+ *  18  short   length of the name, in bytes
+ *  20  byte[]  unit, UTF-8, MAX_UNIT_BYTES bytes
+ *  52  byte[]  name, bean name + '/' + attribute name, UTF-8, MAX_NAME_BYTES bytes
+ * </pre>
+ * 
+ * Name and unit of an entry are written before the entry count is increased past it and never change.
+ * The value is written under a sequence lock: the writer makes the sequence odd, writes the value and 
+ * makes the sequence even again. A reader reads the sequence, the value and the sequence again and
+ * retries if the sequence was odd or has changed. Readers must not write to the file.
+ * 
+ * A reader that finds another magic, or another version, must not read the file.
+ * 
+ * @author Yuga Gandikota
+ */
+final class SharedStatsLayout {
+
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/* "LMSR"*/
+	static final int MAGIC = 0x524D534C;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	static final int ENTRY_SIZE = 256;
+
+	/* header fields*/
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int HEADER_SIZE_OFFSET = 8;
+	static final int ENTRY_SIZE_OFFSET = 12;
+	static final int CAPACITY_OFFSET = 16;
+	static final int ENTRY_COUNT_OFFSET = 20;
+	static final int PID_OFFSET = 24;
+	static final int UPDATE_TIME_OFFSET = 32;
+	static final int UPDATES_OFFSET = 40;
+
+	/* entry fields*/
+	static final int SEQUENCE_OFFSET = 0;
+	static final int VALUE_OFFSET = 8;
+	static final int UNIT_LENGTH_OFFSET = 16;
+	static final int NAME_LENGTH_OFFSET = 18;
+	static final int UNIT_OFFSET = 20;
+	static final int NAME_OFFSET = 52;
+	static final int MAX_UNIT_BYTES = NAME_OFFSET - UNIT_OFFSET;
+	static final int MAX_NAME_BYTES = ENTRY_SIZE - NAME_OFFSET;
+
+	/* separates bean and attribute names*/
+	static final char SEPARATOR = '/';
+
+	private SharedStatsLayout() {
+	}
+
+	/* Offset of the given entry in the file*/
+	static int entryOffset(int aIndex) {
+		return HEADER_SIZE + aIndex * ENTRY_SIZE;
+	}
+}
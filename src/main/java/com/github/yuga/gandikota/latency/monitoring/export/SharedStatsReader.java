@@ -0,0 +1,159 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Reads the file published by <code>SharedStatsRegion</code>, while it is being written, without JMX.
+ * The file is mapped, values are read from it in place.
+ * 
+ * <code>main</code> prints the values once, or every given number of milliseconds:
+ * <pre>
+ * java -cp ... com.github.yuga.gandikota.latency.monitoring.export.SharedStatsReader [-watch millis] pid|file
+ * </pre>
+ * 
+ * @author Yuga Gandikota
+ */
+public class SharedStatsReader {
+
+	/* attempts to read a value before giving up on the writer*/
+	private static final int MAX_ATTEMPTS = 1000;
+
+	private final MappedByteBuffer region;
+	private final int capacity;
+
+	/**
+	 * Maps the given file.
+	 * @param aFile file written by SharedStatsRegion.
+	 * @throws IOException if the file could not be read, is not a stats file or has another version.
+	 */
+	public SharedStatsReader(File aFile) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(aFile, "r");
+		try {
+			long size = raf.length();
+			if (size < SharedStatsLayout.HEADER_SIZE) {
+				throw new IOException(aFile + " is not a stats file");
+			}
+			region = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		finally {
+			raf.close();
+		}
+		region.order(SharedStatsLayout.ORDER);
+		if (region.getInt(SharedStatsLayout.MAGIC_OFFSET) != SharedStatsLayout.MAGIC) {
+			throw new IOException(aFile + " is not a stats file");
+		}
+		int version = region.getInt(SharedStatsLayout.VERSION_OFFSET);
+		if (version != SharedStatsLayout.VERSION
+				|| region.getInt(SharedStatsLayout.HEADER_SIZE_OFFSET) != SharedStatsLayout.HEADER_SIZE
+				|| region.getInt(SharedStatsLayout.ENTRY_SIZE_OFFSET) != SharedStatsLayout.ENTRY_SIZE) {
+			throw new IOException(aFile + " has unsupported version " + version);
+		}
+		capacity = region.getInt(SharedStatsLayout.CAPACITY_OFFSET);
+		if (SharedStatsLayout.entryOffset(capacity) > region.capacity()) {
+			throw new IOException(aFile + " is truncated");
+		}
+	}
+
+	/**
+	 * @return number of values in the file, it grows while the writer adds attributes.
+	 */
+	public int size() {
+		int count = region.getInt(SharedStatsLayout.ENTRY_COUNT_OFFSET);
+		//names of the entries below the count are written before it
+		SharedStatsRegion.fence();
+		return Math.min(count, capacity);
+	}
+
+	/**
+	 * @return process id of the writer.
+	 */
+	public long getProcessId() {
+		return region.getLong(SharedStatsLayout.PID_OFFSET);
+	}
+
+	/**
+	 * @return time of the last update, milliseconds since the epoch, 0 before the first.
+	 */
+	public long getUpdateTime() {
+		return region.getLong(SharedStatsLayout.UPDATE_TIME_OFFSET);
+	}
+
+	/**
+	 * @return name of the value, bean name and attribute name separated by '/'.
+	 */
+	public String getName(int aIndex) {
+		int offset = SharedStatsLayout.entryOffset(aIndex);
+		return readString(offset + SharedStatsLayout.NAME_OFFSET, region.getShort(offset + SharedStatsLayout.NAME_LENGTH_OFFSET), SharedStatsLayout.MAX_NAME_BYTES);
+	}
+
+	public String getUnit(int aIndex) {
+		int offset = SharedStatsLayout.entryOffset(aIndex);
+		return readString(offset + SharedStatsLayout.UNIT_OFFSET, region.getShort(offset + SharedStatsLayout.UNIT_LENGTH_OFFSET), SharedStatsLayout.MAX_UNIT_BYTES);
+	}
+
+	/**
+	 * @return value of the given index, never one half written.
+	 * @throws IllegalStateException if the value kept changing while it was read.
+	 */
+	public double getValue(int aIndex) {
+		int offset = SharedStatsLayout.entryOffset(aIndex);
+		for (int attempt=0; attempt<MAX_ATTEMPTS; attempt++) {
+			long before = region.getLong(offset + SharedStatsLayout.SEQUENCE_OFFSET);
+			SharedStatsRegion.fence();
+			double value = region.getDouble(offset + SharedStatsLayout.VALUE_OFFSET);
+			SharedStatsRegion.fence();
+			long after = region.getLong(offset + SharedStatsLayout.SEQUENCE_OFFSET);
+			if ((before & 1) == 0 && before == after) {
+				return value;
+			}
+			Thread.yield();
+		}
+		throw new IllegalStateException("value " + aIndex + " is being written");
+	}
+
+	private String readString(int aOffset, int aLength, int aMaxLength) {
+		byte[] bytes = new byte[Math.max(0, Math.min(aLength, aMaxLength))];
+		for (int i=0; i<bytes.length; i++) {
+			bytes[i] = region.get(aOffset + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Prints name, value and unit of every value of the file of the given process, or the given file.
+	 * With <code>-watch millis</code>, prints them again every given number of milliseconds.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		long watchMillis = 0;
+		int first = 0;
+		if (args.length > 1 && "-watch".equals(args[0])) {
+			watchMillis = Long.parseLong(args[1]);
+			first = 2;
+		}
+		if (args.length != first + 1) {
+			System.err.println("usage: SharedStatsReader [-watch millis] pid|file");
+			System.exit(1);
+		}
+		File file = new File(args[first]);
+		if (!file.exists() && args[first].matches("[0-9]+")) {
+			file = new File(System.getProperty("java.io.tmpdir") + File.separator + "latency-stats" + File.separator + args[first]);
+		}
+		SharedStatsReader reader = new SharedStatsReader(file);
+		do {
+			System.out.println("# pid " + reader.getProcessId() + ", updated " + new Date(reader.getUpdateTime()));
+			for (int i=0; i<reader.size(); i++) {
+				System.out.println(reader.getName(i) + "\t" + SnapshotWriter.format(reader.getValue(i)) + "\t" + reader.getUnit(i));
+			}
+			if (watchMillis > 0) {
+				Thread.sleep(watchMillis);
+			}
+		}
+		while (watchMillis > 0);
+	}
+}
@@ -0,0 +1,262 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.github.yuga.gandikota.latency.monitoring.proxy.LatencyMonitoredProxy;
+import com.github.yuga.gandikota.latency.monitoring.utils.MonitoringScheduler;
+
+/**
+ * Publishes all attributes of every registered bean to a memory mapped file, in the spirit of hsperfdata,
+ * so other processes can read live values without JMX. The layout is described in 
+ * <code>SharedStatsLayout</code>, <code>SharedStatsReader</code> reads it.
+ * 
+ * Values are copied into the file at a fixed interval, on the <code>MonitoringScheduler</code> thread,
+ * with the same reads a JMX client does. Calls being recorded never touch the file. Every value is
+ * written under its own sequence lock, so readers never see a value half written.
+ * 
+ * The file is <code>${java.io.tmpdir}/latency-stats/&lt;pid&gt;</code> unless set. It is created when
+ * the region is started and deleted when it is stopped or the JVM exits. Attributes that do not fit in
+ * the file, or whose names are too long, are left out.
+ * 
+ * Set it on <code>LatencyMonitoredProxyFactory</code>, which registers every proxy it creates and starts
+ * the region.
+ * 
+ * @author Yuga Gandikota
+ */
+public class SharedStatsRegion implements DisposableBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SharedStatsRegion.class);
+
+	/* written and read between the sequence and the value, so they are not reordered*/
+	private static volatile int fence;
+
+	private String path;
+	private int capacity = 4096;
+	private long intervalMillis = 1000;
+
+	/* beans to publish*/
+	private final CopyOnWriteArrayList<ExportedBean> beans = new CopyOnWriteArrayList<ExportedBean>();
+
+	/* publisher of the current file and its task, null unless started*/
+	private Publisher publisher;
+	private ScheduledFuture<?> task;
+
+	/** Path of the file, default ${java.io.tmpdir}/latency-stats/&lt;pid&gt;*/
+	public void setPath(String aPath) {
+		path = aPath;
+	}
+
+	/** Number of attributes the file has room for, default 4096*/
+	public void setCapacity(int aCapacity) {
+		capacity = aCapacity;
+	}
+
+	/** Interval between updates of the values, default 1000 milliseconds*/
+	public void setIntervalMillis(long aIntervalMillis) {
+		intervalMillis = aIntervalMillis;
+	}
+
+	/**
+	 * Adds a bean to the region, from the next update on.
+	 * @param aBeanName name of the bean in the region, usually its MBean name.
+	 * @param aProxy proxy of the bean.
+	 */
+	public void register(String aBeanName, LatencyMonitoredProxy aProxy) {
+		beans.add(new ExportedBean(aBeanName, aProxy));
+	}
+
+	/**
+	 * @return the file, null unless started.
+	 */
+	public synchronized File getFile() {
+		return publisher == null ? null : publisher.file;
+	}
+
+	/**
+	 * Creates the file and starts updating it. Does nothing if already started.
+	 * @throws IOException if the file could not be created.
+	 */
+	public synchronized void start() throws IOException {
+		if (task == null) {
+			if (intervalMillis <= 0) {
+				throw new IllegalArgumentException("intervalMillis must be positive: " + intervalMillis);
+			}
+			File file = new File(path != null ? path : System.getProperty("java.io.tmpdir") + File.separator + "latency-stats" + File.separator + processId());
+			publisher = new Publisher(file, create(file));
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Publishing stats every {}ms to {}", intervalMillis, file);
+			}
+			task = MonitoringScheduler.get().scheduleWithFixedDelay(publisher, 0, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops updating the file and deletes it.
+	 */
+	public synchronized void stop() {
+		if (task != null) {
+			task.cancel(false);
+			final File stopped = publisher.file;
+			task = null;
+			publisher = null;
+			MonitoringScheduler.get().execute(new Runnable() {
+				public void run() {
+					if (!stopped.delete() && stopped.exists()) {
+						LOGGER.warn("Could not delete {}", stopped);
+					}
+				}
+			});
+		}
+	}
+
+	/* Part of the DisposableBean interface, stops the region when the context is closed*/
+	public void destroy() {
+		stop();
+	}
+
+	/* Creates the file, maps it and writes its header*/
+	private MappedByteBuffer create(File aFile) throws IOException {
+		File parent = aFile.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("could not create directory " + parent);
+		}
+		int size = SharedStatsLayout.entryOffset(capacity);
+		RandomAccessFile raf = new RandomAccessFile(aFile, "rw");
+		try {
+			raf.setLength(0);
+			raf.setLength(size);
+			MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			mapped.order(SharedStatsLayout.ORDER);
+			mapped.putInt(SharedStatsLayout.VERSION_OFFSET, SharedStatsLayout.VERSION);
+			mapped.putInt(SharedStatsLayout.HEADER_SIZE_OFFSET, SharedStatsLayout.HEADER_SIZE);
+			mapped.putInt(SharedStatsLayout.ENTRY_SIZE_OFFSET, SharedStatsLayout.ENTRY_SIZE);
+			mapped.putInt(SharedStatsLayout.CAPACITY_OFFSET, capacity);
+			mapped.putInt(SharedStatsLayout.ENTRY_COUNT_OFFSET, 0);
+			mapped.putLong(SharedStatsLayout.PID_OFFSET, processId());
+			fence();
+			//readers check the magic first, it is written last
+			mapped.putInt(SharedStatsLayout.MAGIC_OFFSET, SharedStatsLayout.MAGIC);
+			aFile.deleteOnExit();
+			return mapped;
+		}
+		finally {
+			//the mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/* Keeps writes before it from being reordered with writes after it*/
+	static int fence() {
+		fence = 1;
+		return fence;
+	}
+
+	private static long processId() {
+		//name of the runtime is pid@host on the JVMs we know of
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		int at = name.indexOf('@');
+		try {
+			return Long.parseLong(at > 0 ? name.substring(0, at) : name);
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/* Copies values into one mapped file, only run by the scheduler thread*/
+	private final class Publisher implements Runnable {
+
+		final File file;
+		private final MappedByteBuffer region;
+
+		/* index of every entry initialized so far, -1 for attributes left out*/
+		private final Map<String, Integer> entries = new HashMap<String, Integer>();
+		private long updates;
+
+		Publisher(File aFile, MappedByteBuffer aRegion) {
+			file = aFile;
+			region = aRegion;
+		}
+
+		/* Copies the values of all beans into the file*/
+		public void run() {
+			try {
+				for (ExportedBean bean : beans) {
+					TabularData snapshot = bean.proxy.snapshot();
+					for (Object row : snapshot.values()) {
+						CompositeData data = (CompositeData) row;
+						int index = entryIndex(bean.name + SharedStatsLayout.SEPARATOR + data.get("attribute"), (String) data.get("unit"));
+						if (index >= 0) {
+							writeValue(SharedStatsLayout.entryOffset(index), ((Double) data.get("value")).doubleValue());
+						}
+					}
+				}
+				region.putLong(SharedStatsLayout.UPDATE_TIME_OFFSET, System.currentTimeMillis());
+				region.putLong(SharedStatsLayout.UPDATES_OFFSET, ++updates);
+			}
+			catch (RuntimeException e) {
+				LOGGER.error("Could not update {}", file, e);
+			}
+		}
+
+		/* Returns index of the entry of the named attribute, initializing it if needed. -1 if it does not fit.*/
+		private int entryIndex(String aName, String aUnit) {
+			Integer index = entries.get(aName);
+			if (index != null) {
+				return index.intValue();
+			}
+			byte[] name = aName.getBytes(StandardCharsets.UTF_8);
+			byte[] unit = (aUnit == null ? "" : aUnit).getBytes(StandardCharsets.UTF_8);
+			int count = region.getInt(SharedStatsLayout.ENTRY_COUNT_OFFSET);
+			if (count >= capacity || name.length > SharedStatsLayout.MAX_NAME_BYTES || unit.length > SharedStatsLayout.MAX_UNIT_BYTES) {
+				if (LOGGER.isWarnEnabled()) {
+					LOGGER.warn("Attribute left out of {}, the file is full or the name is too long. attribute:{}", file, aName);
+				}
+				entries.put(aName, Integer.valueOf(-1));
+				return -1;
+			}
+			int offset = SharedStatsLayout.entryOffset(count);
+			region.putShort(offset + SharedStatsLayout.UNIT_LENGTH_OFFSET, (short) unit.length);
+			region.putShort(offset + SharedStatsLayout.NAME_LENGTH_OFFSET, (short) name.length);
+			for (int i=0; i<unit.length; i++) {
+				region.put(offset + SharedStatsLayout.UNIT_OFFSET + i, unit[i]);
+			}
+			for (int i=0; i<name.length; i++) {
+				region.put(offset + SharedStatsLayout.NAME_OFFSET + i, name[i]);
+			}
+			fence();
+			region.putInt(SharedStatsLayout.ENTRY_COUNT_OFFSET, count + 1);
+			entries.put(aName, Integer.valueOf(count));
+			return count;
+		}
+
+		/* Writes the value of the entry at the given offset under its sequence lock*/
+		private void writeValue(int aOffset, double aValue) {
+			int sequenceOffset = aOffset + SharedStatsLayout.SEQUENCE_OFFSET;
+			long sequence = region.getLong(sequenceOffset);
+			region.putLong(sequenceOffset, sequence + 1);
+			fence();
+			region.putDouble(aOffset + SharedStatsLayout.VALUE_OFFSET, aValue);
+			fence();
+			region.putLong(sequenceOffset, sequence + 2);
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.github.yuga.gandikota.latency.monitoring.proxy.LatencyMonitoredProxy;
+import com.github.yuga.gandikota.latency.monitoring.utils.MonitoringScheduler;
+
+/**
+ * Takes a snapshot of all attributes of every registered bean at a fixed interval and appends it to a
+ * local file, in one of the <code>ExportFormat</code>s. Unlike polling over JMX, no interval is missed
+ * while no client is connected.
+ * 
+ * Snapshots are taken on the <code>MonitoringScheduler</code> thread, with the same reads a JMX client
+ * does. Calls being recorded never wait for the exporter.
+ * 
+ * The file is <code>directory/fileName.extension</code>. When it grows over <code>maxFileBytes</code>, 
+ * it is renamed to <code>fileName.1.extension</code>, older files are shifted up to <code>maxFiles</code>
+ * and the oldest is deleted. A file left by an earlier run is rolled over the same way at start.
+ * 
+ * Set it on <code>LatencyMonitoredProxyFactory</code>, which registers every proxy it creates and starts
+ * the exporter:
+ * <pre>
+ * &lt;bean class="com.github.yuga.gandikota.latency.monitoring.proxy.LatencyMonitoredProxyFactory"&gt;
+ *     &lt;property name="snapshotExporter"&gt;
+ *         &lt;bean class="com.github.yuga.gandikota.latency.monitoring.export.SnapshotExporter"&gt;
+ *             &lt;property name="directory" value="/var/log/app"/&gt;
+ *             &lt;property name="intervalSeconds" value="10"/&gt;
+ *         &lt;/bean&gt;
+ *     &lt;/property&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * Binary files are decoded with <code>SnapshotReader</code>.
+ * 
+ * @author Yuga Gandikota
+ */
+public class SnapshotExporter implements DisposableBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotExporter.class);
+
+	private String directory = ".";
+	private String fileName = "latency-snapshots";
+	private ExportFormat format = ExportFormat.BINARY;
+	private long intervalSeconds = 10;
+	private long maxFileBytes = 16 * 1024 * 1024;
+	private int maxFiles = 5;
+
+	/* beans to take snapshots of, with their names*/
+	private final CopyOnWriteArrayList<ExportedBean> beans = new CopyOnWriteArrayList<ExportedBean>();
+
+	/* task taking the snapshots, null unless started*/
+	private ScheduledFuture<?> task;
+
+	/* stream of the current file and the writer writing to it, only used by the exporting thread*/
+	private FileOutputStream file;
+	private SnapshotWriter writer;
+
+	/** Directory of the files, default the working directory*/
+	public void setDirectory(String aDirectory) {
+		directory = aDirectory;
+	}
+
+	/** Name of the files without extension, default latency-snapshots*/
+	public void setFileName(String aFileName) {
+		fileName = aFileName;
+	}
+
+	/** Format of the files, default BINARY*/
+	public void setFormat(ExportFormat aFormat) {
+		format = aFormat;
+	}
+
+	/** Interval between snapshots, default 10 seconds*/
+	public void setIntervalSeconds(long aIntervalSeconds) {
+		intervalSeconds = aIntervalSeconds;
+	}
+
+	/** Size after which the file is rolled over, default 16MB*/
+	public void setMaxFileBytes(long aMaxFileBytes) {
+		maxFileBytes = aMaxFileBytes;
+	}
+
+	/** Number of rolled over files kept, default 5*/
+	public void setMaxFiles(int aMaxFiles) {
+		maxFiles = aMaxFiles;
+	}
+
+	/**
+	 * Adds a bean to the snapshots, from the next snapshot on.
+	 * @param aBeanName name of the bean in the snapshots, usually its MBean name.
+	 * @param aProxy proxy of the bean.
+	 */
+	public void register(String aBeanName, LatencyMonitoredProxy aProxy) {
+		beans.add(new ExportedBean(aBeanName, aProxy));
+	}
+
+	/**
+	 * Starts taking snapshots, the first after one interval. Does nothing if already started.
+	 */
+	public synchronized void start() {
+		if (task == null) {
+			if (intervalSeconds <= 0) {
+				throw new IllegalArgumentException("intervalSeconds must be positive: " + intervalSeconds);
+			}
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Exporting snapshots every {}s to {}", intervalSeconds, currentFile());
+			}
+			task = MonitoringScheduler.get().scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					export();
+				}
+			}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Stops taking snapshots and closes the file. Snapshots already written stay in the file.
+	 */
+	public synchronized void stop() {
+		if (task != null) {
+			task.cancel(false);
+			task = null;
+			MonitoringScheduler.get().execute(new Runnable() {
+				public void run() {
+					closeFile();
+				}
+			});
+		}
+	}
+
+	/* Part of the DisposableBean interface, stops the exporter when the context is closed*/
+	public void destroy() {
+		stop();
+	}
+
+	/* Writes a snapshot of all beans. Errors are logged, the next snapshot opens the file again.*/
+	private void export() {
+		try {
+			if (writer == null) {
+				openFile();
+			}
+			writer.begin(System.currentTimeMillis());
+			for (ExportedBean bean : beans) {
+				TabularData snapshot = bean.proxy.snapshot();
+				for (Object row : snapshot.values()) {
+					CompositeData data = (CompositeData) row;
+					writer.value(bean.name, (String) data.get("attribute"), ((Double) data.get("value")).doubleValue(), (String) data.get("unit"));
+				}
+			}
+			writer.end();
+			if (file.getChannel().position() >= maxFileBytes) {
+				closeFile();
+			}
+		}
+		catch (Exception e) {
+			LOGGER.error("Could not export snapshot to {}", currentFile(), e);
+			closeFile();
+		}
+	}
+
+	/* Rolls over the file left by an earlier run or grown too large and opens a new one*/
+	private void openFile() throws IOException {
+		File current = currentFile();
+		if (current.exists()) {
+			rollOver();
+		}
+		File parent = current.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("could not create directory " + parent);
+		}
+		file = new FileOutputStream(current);
+		writer = format.newWriter(new BufferedOutputStream(file));
+	}
+
+	private void closeFile() {
+		SnapshotWriter closing = writer;
+		writer = null;
+		file = null;
+		if (closing != null) {
+			try {
+				closing.close();
+			}
+			catch (IOException e) {
+				LOGGER.error("Could not close {}", currentFile(), e);
+			}
+		}
+	}
+
+	/* Renames file.N-1 to file.N, ..., file to file.1, deleting file.maxFiles*/
+	private void rollOver() throws IOException {
+		File oldest = rolledFile(maxFiles);
+		if (maxFiles > 0 && oldest.exists() && !oldest.delete()) {
+			throw new IOException("could not delete " + oldest);
+		}
+		for (int i=maxFiles; i>=1; i--) {
+			File source = i == 1 ? currentFile() : rolledFile(i - 1);
+			if (source.exists() && !source.renameTo(rolledFile(i))) {
+				throw new IOException("could not rename " + source);
+			}
+		}
+	}
+
+	private File currentFile() {
+		return new File(directory, fileName + "." + format.getExtension());
+	}
+
+	private File rolledFile(int aIndex) {
+		return new File(directory, fileName + "." + aIndex + "." + format.getExtension());
+	}
+}
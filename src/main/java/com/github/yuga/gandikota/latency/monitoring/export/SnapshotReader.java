@@ -0,0 +1,220 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes files written by <code>SnapshotExporter</code> in the <code>BINARY</code> format.
+ * Snapshots are read one at a time with <code>next()</code>, the values of the snapshot read last
+ * are returned by the getters:
+ * <pre>
+ * SnapshotReader reader = new SnapshotReader(new FileInputStream(file));
+ * while (reader.next()) {
+ *     for (int i=0; i&lt;reader.size(); i++) {
+ *         ... reader.getTimestamp(), reader.getBean(i), reader.getAttribute(i), reader.getValue(i), reader.getUnit(i)
+ *     }
+ * }
+ * </pre>
+ * 
+ * <code>main</code> prints files as CSV, or JSON lines with <code>-json</code>:
+ * <pre>
+ * java -cp ... com.github.yuga.gandikota.latency.monitoring.export.SnapshotReader [-json] file...
+ * </pre>
+ * 
+ * @author Yuga Gandikota
+ */
+public class SnapshotReader implements Closeable {
+
+	private final DataInputStream in;
+
+	/* bean, attribute and unit of every series defined so far, by id*/
+	private final List<String[]> series = new ArrayList<String[]>();
+
+	/* previous integral value of every series, by id*/
+	private long[] previous = new long[64];
+
+	private long timestamp;
+
+	/* series and values of the snapshot read last*/
+	private int size;
+	private int[] ids = new int[64];
+	private double[] values = new double[64];
+
+	/**
+	 * @param aIn stream of a binary snapshot file, read from its start.
+	 * @throws IOException if the stream could not be read or is not a snapshot file.
+	 */
+	public SnapshotReader(InputStream aIn) throws IOException {
+		in = new DataInputStream(aIn instanceof BufferedInputStream ? aIn : new BufferedInputStream(aIn));
+		if (in.readInt() != BinaryFormat.MAGIC) {
+			throw new IOException("not a snapshot file");
+		}
+		byte version = in.readByte();
+		if (version != BinaryFormat.VERSION) {
+			throw new IOException("unsupported snapshot file version " + version);
+		}
+	}
+
+	/**
+	 * Reads the next snapshot.
+	 * @return false at the end of the stream.
+	 * @throws IOException if the stream could not be read or is malformed.
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			int type = in.read();
+			if (type < 0) {
+				return false;
+			}
+			if (type == BinaryFormat.SERIES) {
+				readSeries();
+			}
+			else if (type == BinaryFormat.SNAPSHOT) {
+				readSnapshot();
+				return true;
+			}
+			else {
+				throw new IOException("unknown record type " + type);
+			}
+		}
+	}
+
+	private void readSeries() throws IOException {
+		int id = (int) BinaryFormat.readVarLong(in);
+		if (id != series.size()) {
+			throw new IOException("series " + id + " out of order");
+		}
+		series.add(new String[] {in.readUTF(), in.readUTF(), in.readUTF()});
+		if (id == previous.length) {
+			previous = Arrays.copyOf(previous, previous.length * 2);
+		}
+	}
+
+	private void readSnapshot() throws IOException {
+		timestamp += BinaryFormat.unZigZag(BinaryFormat.readVarLong(in));
+		int count = (int) BinaryFormat.readVarLong(in);
+		if (count > ids.length) {
+			ids = new int[count];
+			values = new double[count];
+		}
+		for (int i=0; i<count; i++) {
+			long tagged = BinaryFormat.readVarLong(in);
+			int id = (int) (tagged >>> 1);
+			if (id >= series.size()) {
+				throw new IOException("undefined series " + id);
+			}
+			ids[i] = id;
+			if ((tagged & 1) == 0) {
+				previous[id] += BinaryFormat.unZigZag(BinaryFormat.readVarLong(in));
+				values[i] = previous[id];
+			}
+			else {
+				values[i] = in.readDouble();
+			}
+		}
+		size = count;
+	}
+
+	/**
+	 * @return time the snapshot read last was taken, in milliseconds since the epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return number of values of the snapshot read last.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public String getBean(int aIndex) {
+		return series.get(ids[aIndex])[0];
+	}
+
+	public String getAttribute(int aIndex) {
+		return series.get(ids[aIndex])[1];
+	}
+
+	public double getValue(int aIndex) {
+		return values[aIndex];
+	}
+
+	public String getUnit(int aIndex) {
+		return series.get(ids[aIndex])[2];
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/* Writes all snapshots of this reader with the given writer*/
+	void copyTo(SnapshotWriter aWriter) throws IOException {
+		while (next()) {
+			aWriter.begin(timestamp);
+			for (int i=0; i<size; i++) {
+				aWriter.value(getBean(i), getAttribute(i), values[i], getUnit(i));
+			}
+			aWriter.end();
+		}
+	}
+
+	/**
+	 * Prints the given binary snapshot files as CSV, or as JSON lines if the first argument is <code>-json</code>.
+	 */
+	public static void main(String[] args) throws IOException {
+		ExportFormat format = ExportFormat.CSV;
+		int first = 0;
+		if (args.length > 0 && "-json".equals(args[0])) {
+			format = ExportFormat.JSON_LINES;
+			first = 1;
+		}
+		if (args.length == first) {
+			System.err.println("usage: SnapshotReader [-json] file...");
+			System.exit(1);
+		}
+		OutputStream out = new NoCloseOutputStream(System.out);
+		for (int i=first; i<args.length; i++) {
+			SnapshotReader reader = new SnapshotReader(new FileInputStream(args[i]));
+			SnapshotWriter writer = format.newWriter(out);
+			try {
+				reader.copyTo(writer);
+			}
+			catch (EOFException e) {
+				//the exporter may be writing the last snapshot
+				System.err.println(args[i] + ": ends in a partial snapshot");
+			}
+			finally {
+				reader.close();
+				writer.close();
+			}
+		}
+		System.out.flush();
+	}
+
+	/* Leaves System.out open when a writer is closed*/
+	private static final class NoCloseOutputStream extends FilterOutputStream {
+		NoCloseOutputStream(OutputStream aOut) {
+			super(aOut);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
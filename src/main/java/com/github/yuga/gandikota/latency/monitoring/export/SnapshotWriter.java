@@ -0,0 +1,28 @@
+package com.github.yuga.gandikota.latency.monitoring.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes snapshots to a stream. A snapshot is written with <code>begin</code>, <code>value</code> for
+ * every value, in the order of the beans, and <code>end</code>.
+ * 
+ * @author Yuga Gandikota
+ */
+abstract class SnapshotWriter implements Closeable {
+
+	/* Starts a snapshot taken at the given time, in milliseconds since the epoch*/
+	abstract void begin(long aTimestamp) throws IOException;
+
+	/* Writes value of an attribute of a bean*/
+	abstract void value(String aBean, String aAttribute, double aValue, String aUnit) throws IOException;
+
+	/* Ends the snapshot and flushes it*/
+	abstract void end() throws IOException;
+
+	/* Formats integral values without a fraction*/
+	static String format(double aValue) {
+		long integral = (long) aValue;
+		return integral == aValue ? Long.toString(integral) : Double.toString(aValue);
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.yuga.gandikota.latency.monitoring.exception.LatencyMonitoringProxyException;
+
+/**
+ * Completion callback of a call that returned a CompletionStage. Records the latency of the call
+ * when the stage completes, as success or as failure, and ends the call for the in flight count.
+ * It is the only callback attached to the stage, and runs in the thread that completes it.
+ * The call is ended once, also if the stage failed to attach the callback and runs it nonetheless.
+ * 
+ * @author Yuga Gandikota
+ */
+final class AsyncCompletion implements BiConsumer<Object, Throwable> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncCompletion.class);
+
+	/* proxy that keeps the monitors*/
+	private final LatencyMonitoredProxy proxy;
+	
+	/* state of the method called*/
+	private final MonitoredMethod monitoredMethod;
+	
+	/* System.nanoTime() when the call started, MonitoredMethod.UNSAMPLED if it is not timed*/
+	private final long start;
+	
+	/* dimension of the call, null if it has none*/
+	private final Dimension dimension;
+	
+	/* 1 once the call is ended. Updated with ENDED, which adds no object per call*/
+	private volatile int ended;
+	
+	private static final AtomicIntegerFieldUpdater<AsyncCompletion> ENDED = AtomicIntegerFieldUpdater.newUpdater(AsyncCompletion.class, "ended");
+	
+	AsyncCompletion(LatencyMonitoredProxy aProxy, MonitoredMethod aMonitoredMethod, long aStart, Dimension aDimension) {
+		proxy = aProxy;
+		monitoredMethod = aMonitoredMethod;
+		start = aStart;
+		dimension = aDimension;
+	}
+
+	public void accept(Object aResult, Throwable aFailure) {
+		try {
+			if (dimension != null) {
+				proxy.recordDimension(monitoredMethod, dimension, start, aFailure != null);
+			}
+			if (aFailure == null) {
+				proxy.recordSuccess(monitoredMethod, start);
+			}
+			else {
+				//stages completed by other stages wrap the exception
+				Throwable failure = aFailure instanceof CompletionException && aFailure.getCause() != null ? aFailure.getCause() : aFailure;
+				proxy.recordFailure(monitoredMethod, start, failure);
+			}
+		}
+		catch (LatencyMonitoringProxyException e) {
+			LOGGER.error("failed to record completion. methodKey:{}", monitoredMethod.key, e);
+		}
+		finally {
+			end();
+		}
+	}
+	
+	/* Ends the call for the in flight count, if it is not ended yet*/
+	void end() {
+		if (ENDED.compareAndSet(this, 0, 1)) {
+			monitoredMethod.exit();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ImmutableDescriptor;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenMBeanAttributeInfo;
+import javax.management.openmbean.OpenMBeanAttributeInfoSupport;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+/**
+ * Names, values and units of attributes, read in one pass over the monitors of one or more methods.
+ * Values are Longs, or Doubles for rates. Every monitor is read once, so values of a method's attributes
+ * are from the same moment, as far as the monitor allows.
+ *
+ * Also builds the open type attribute infos, with units in their descriptors, and the TabularData
+ * returned by the <code>snapshot</code> operation.
+ *
+ * @author Yuga Gandikota
+ */
+final class AttributeValues {
+
+	/* unit of values that count calls*/
+	static final String CALLS = "calls";
+
+	/* unit of counts of attribute keys*/
+	static final String KEYS = "keys";
+
+	/* unit of call rates*/
+	static final String CALLS_PER_SECOND = "calls/second";
+
+	/* name of the row type and of its items*/
+	private static final String ROW_TYPE_NAME = "LatencySnapshotRow";
+	private static final String[] ROW_ITEMS = {"attribute", "value", "longValue", "unit"};
+
+	/* 
+	 * row of the snapshot: attribute name, value as a double, value as a long and unit. Values of Long 
+	 * attributes are exact in longValue only, it is null for rates.
+	 */
+	static final CompositeType ROW_TYPE;
+
+	/* snapshot of all attributes of a bean, indexed by attribute name*/
+	static final TabularType SNAPSHOT_TYPE;
+
+	static {
+		try {
+			ROW_TYPE = new CompositeType(ROW_TYPE_NAME, "value of an attribute", ROW_ITEMS,
+					new String[] {"attribute name", "value of the attribute", "exact value of a Long attribute, null for rates", "unit of the value"},
+					new OpenType<?>[] {SimpleType.STRING, SimpleType.DOUBLE, SimpleType.LONG, SimpleType.STRING});
+			SNAPSHOT_TYPE = new TabularType("LatencySnapshot", "values of all attributes", ROW_TYPE, new String[] {ROW_ITEMS[0]});
+		}
+		catch (OpenDataException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final List<String> names = new ArrayList<String>();
+	private final List<Number> values = new ArrayList<Number>();
+	private final List<String> units = new ArrayList<String>();
+
+	/* Adds value of an attribute*/
+	void add(String aName, long aValue, String aUnit) {
+		add(aName, Long.valueOf(aValue), aUnit);
+	}
+
+	/* Adds value of a rate attribute*/
+	void add(String aName, double aValue, String aUnit) {
+		add(aName, Double.valueOf(aValue), aUnit);
+	}
+
+	private void add(String aName, Number aValue, String aUnit) {
+		names.add(aName);
+		values.add(aValue);
+		units.add(aUnit);
+	}
+
+	/**
+	 * @return value of the named attribute, null if it was not added.
+	 */
+	Number get(String aName) {
+		int index = names.indexOf(aName);
+		return index < 0 ? null : values.get(index);
+	}
+
+	/* Adds an attribute info, typed after the value and with its unit in the descriptor, for every value*/
+	void collectAttributeInfos(List<OpenMBeanAttributeInfo> aInfos) {
+		for (int i=0; i<names.size(); i++) {
+			OpenType<?> type = values.get(i) instanceof Double ? SimpleType.DOUBLE : SimpleType.LONG;
+			aInfos.add(new OpenMBeanAttributeInfoSupport(names.get(i), names.get(i), type, true, false, false,
+					new ImmutableDescriptor("units=" + units.get(i))));
+		}
+	}
+
+	/* Returns all values as rows of attribute, value, longValue and unit*/
+	TabularData toTabularData() {
+		TabularDataSupport table = new TabularDataSupport(SNAPSHOT_TYPE, Math.max(16, names.size() * 4 / 3 + 1), 0.75f);
+		try {
+			for (int i=0; i<names.size(); i++) {
+				if (table.containsKey(new Object[] {names.get(i)})) {
+					continue;
+				}
+				Number value = values.get(i);
+				table.put(new CompositeDataSupport(ROW_TYPE, ROW_ITEMS, new Object[] {names.get(i), Double.valueOf(value.doubleValue()), 
+						value instanceof Long ? value : null, units.get(i)}));
+			}
+		}
+		catch (OpenDataException e) {
+			//items always match ROW_TYPE
+			throw new IllegalStateException(e);
+		}
+		return table;
+	}
+}
@@ -0,0 +1,47 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls from one monitored method to another, with their total and highest time in nanoseconds.
+ * An edge without methods stands for edges that did not fit in the CallGraph.
+ *
+ * @author Yuga Gandikota
+ */
+final class CallEdge {
+
+	/* caller and callee, bean name and attribute key separated by '/'*/
+	final String parent;
+	final String child;
+
+	/* caller and callee, null if the edge was dropped*/
+	final MonitoredMethod caller;
+	final MonitoredMethod callee;
+
+	final LongAdder calls = new LongAdder();
+	final LongAdder totalNanos = new LongAdder();
+	final AtomicLong maxNanos = new AtomicLong();
+
+	CallEdge(MonitoredMethod aCaller, String aParent, MonitoredMethod aCallee, String aChild) {
+		caller = aCaller;
+		parent = aParent;
+		callee = aCallee;
+		child = aChild;
+	}
+
+	/* true if this edge stands for edges that did not fit in the graph*/
+	boolean isDropped() {
+		return caller == null;
+	}
+
+	/* Adds a call that took the given time*/
+	void record(long aNanos) {
+		calls.increment();
+		totalNanos.add(aNanos);
+		long max = maxNanos.get();
+		while (aNanos > max && !maxNanos.compareAndSet(max, aNanos)) {
+			max = maxNanos.get();
+		}
+	}
+}
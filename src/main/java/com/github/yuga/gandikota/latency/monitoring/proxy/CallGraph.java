@@ -0,0 +1,165 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+/**
+ * Latency of calls between monitored methods of beans that keep self time, one edge per caller and
+ * callee, for all beans of the JVM. At most MAX_EDGES edges are kept, calls of further edges are only
+ * counted as dropped. Callers keep a shared dropped edge for those, so a full graph costs no lookup per call.
+ * Edges of keys evicted by a proxy are removed, the dropped edge is replaced then so callers try to add
+ * their edges again. Registered as an MBean by LatencyMonitoredProxyFactory, under OBJECT_NAME.
+ *
+ * @author Yuga Gandikota
+ * @see JMXLatencyMonitored#selfTime()
+ */
+public final class CallGraph implements CallGraphMBean {
+
+	/* name the graph is registered under*/
+	public static final String OBJECT_NAME = "com.github.yuga.gandikota.latency.monitoring:type=CallGraph";
+
+	/* most edges kept*/
+	public static final int MAX_EDGES = 4096;
+
+	private static final CallGraph INSTANCE = new CallGraph();
+
+	private static final String[] ITEMS = {"parent", "child", "calls", "totalNanos", "avgNanos", "maxNanos"};
+
+	private static final TabularType EDGES_TYPE;
+
+	static {
+		try {
+			CompositeType row = new CompositeType("CallEdge", "calls from one method to another", ITEMS,
+					new String[] {"calling bean/method", "called bean/method", "number of calls", "total time of the calls", 
+							"average time of the calls", "highest time of a call"},
+					new OpenType<?>[] {SimpleType.STRING, SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+			EDGES_TYPE = new TabularType("CallEdges", "calls between methods", row, new String[] {ITEMS[0], ITEMS[1]});
+		}
+		catch (OpenDataException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final ConcurrentLinkedQueue<CallEdge> edges = new ConcurrentLinkedQueue<CallEdge>();
+	private final AtomicInteger edgeCount = new AtomicInteger();
+	private final LongAdder droppedCalls = new LongAdder();
+
+	/* returned for edges that do not fit, replaced when edges are removed*/
+	private volatile CallEdge dropped = new CallEdge(null, null, null, null);
+
+	private CallGraph() {
+	}
+
+	/**
+	 * @return graph of all beans.
+	 */
+	public static CallGraph getInstance() {
+		return INSTANCE;
+	}
+
+	/* name the graph is registered under*/
+	static ObjectName getObjectName() throws MalformedObjectNameException {
+		return new ObjectName(OBJECT_NAME);
+	}
+
+	/**
+	 * Adds an edge, unless the graph is full. Callers keep the edge, so it is created once per caller and callee.
+	 * @return the edge, the dropped edge if the graph is full.
+	 */
+	CallEdge addEdge(MonitoredMethod aCaller, String aParent, MonitoredMethod aCallee, String aChild) {
+		if (edgeCount.incrementAndGet() > MAX_EDGES) {
+			edgeCount.decrementAndGet();
+			return dropped;
+		}
+		CallEdge edge = new CallEdge(aCaller, aParent, aCallee, aChild);
+		edges.add(edge);
+		return edge;
+	}
+
+	/* true if the edge was dropped before edges were last removed, the caller should try to add it again*/
+	boolean isStale(CallEdge aEdge) {
+		return aEdge.isDropped() && aEdge != dropped;
+	}
+
+	/* Counts a nested call of a dropped edge*/
+	void countDroppedCall() {
+		droppedCalls.increment();
+	}
+
+	/**
+	 * Removes the edges from and to the given methods, also from the callers that keep them.
+	 */
+	synchronized void removeEdges(Collection<MonitoredMethod> aMethods) {
+		int removed = 0;
+		for (Iterator<CallEdge> iterator = edges.iterator(); iterator.hasNext();) {
+			CallEdge edge = iterator.next();
+			if (aMethods.contains(edge.caller) || aMethods.contains(edge.callee)) {
+				iterator.remove();
+				edge.caller.removeEdge(edge);
+				removed++;
+			}
+		}
+		if (removed > 0) {
+			edgeCount.addAndGet(-removed);
+			dropped = new CallEdge(null, null, null, null);
+		}
+	}
+
+	public TabularData getEdges() {
+		//the same methods of several instances of a bean have an edge each, their calls are added up
+		Map<List<String>, long[]> sums = new LinkedHashMap<List<String>, long[]>();
+		for (CallEdge edge : edges) {
+			List<String> key = Arrays.asList(edge.parent, edge.child);
+			long[] sum = sums.get(key);
+			if (sum == null) {
+				sum = new long[3];
+				sums.put(key, sum);
+			}
+			sum[0] += edge.calls.sum();
+			sum[1] += edge.totalNanos.sum();
+			sum[2] = Math.max(sum[2], edge.maxNanos.get());
+		}
+		TabularDataSupport table = new TabularDataSupport(EDGES_TYPE);
+		try {
+			for (Entry<List<String>, long[]> entry : sums.entrySet()) {
+				long[] sum = entry.getValue();
+				long calls = sum[0];
+				long total = sum[1];
+				table.put(new CompositeDataSupport(EDGES_TYPE.getRowType(), ITEMS, new Object[] {entry.getKey().get(0), entry.getKey().get(1), 
+						Long.valueOf(calls), Long.valueOf(total), Long.valueOf(calls == 0 ? 0 : total / calls), Long.valueOf(sum[2])}));
+			}
+		}
+		catch (OpenDataException e) {
+			//items always match the row type
+			throw new IllegalStateException(e);
+		}
+		return table;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount.get();
+	}
+
+	public long getDroppedCalls() {
+		return droppedCalls.sum();
+	}
+}
@@ -0,0 +1,26 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Management interface of CallGraph.
+ *
+ * @author Yuga Gandikota
+ */
+public interface CallGraphMBean {
+
+	/**
+	 * @return a row of parent, child, calls, totalNanos, avgNanos and maxNanos for every edge.
+	 */
+	TabularData getEdges();
+
+	/**
+	 * @return number of edges kept, edges of evicted keys are removed.
+	 */
+	int getEdgeCount();
+
+	/**
+	 * @return number of nested calls not recorded because the graph was full.
+	 */
+	long getDroppedCalls();
+}
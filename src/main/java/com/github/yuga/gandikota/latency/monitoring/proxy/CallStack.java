@@ -0,0 +1,109 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+/**
+ * Timed calls of beans that keep self time, currently executing on a thread, innermost last. Each frame
+ * adds up the time spent in calls nested in it, so the self time of a call is its time less the time of
+ * its nested calls. Every nested call is also added to the edge from its caller in the CallGraph.
+ *
+ * Frames deeper than MAX_DEPTH are counted but not kept, their calls are not subtracted from their caller.
+ * Calls are popped when they return to the thread, also those that return a CompletionStage. Calls that
+ * fail in the proxy before their outcome is recorded are discarded, so no frame is left on pooled threads.
+ *
+ * @author Yuga Gandikota
+ */
+final class CallStack {
+
+	/* most frames kept per thread*/
+	static final int MAX_DEPTH = 64;
+
+	private static final ThreadLocal<CallStack> STACKS = new ThreadLocal<CallStack>() {
+		@Override
+		protected CallStack initialValue() {
+			return new CallStack();
+		}
+	};
+
+	private final MonitoredMethod[] methods = new MonitoredMethod[MAX_DEPTH];
+	private final String[] beans = new String[MAX_DEPTH];
+	private final long[] starts = new long[MAX_DEPTH];
+
+	/* time spent in nested calls of every frame*/
+	private final long[] nestedNanos = new long[MAX_DEPTH];
+
+	/* number of calls on the stack, also those deeper than MAX_DEPTH*/
+	private int depth;
+
+	private CallStack() {
+	}
+
+	/* Call stack of the current thread*/
+	static CallStack get() {
+		return STACKS.get();
+	}
+
+	/* Pushes a call that started at the given time*/
+	void push(MonitoredMethod aMonitoredMethod, String aBean, long aStart) {
+		if (depth < MAX_DEPTH) {
+			methods[depth] = aMonitoredMethod;
+			beans[depth] = aBean;
+			starts[depth] = aStart;
+			nestedNanos[depth] = 0;
+		}
+		depth++;
+	}
+
+	/**
+	 * Pops the given call, adding its time to its caller.
+	 * @return self time of the call, -1 if it was not kept or is not on the stack.
+	 */
+	long pop(MonitoredMethod aMonitoredMethod, long aStart) {
+		if (depth > MAX_DEPTH) {
+			depth--;
+			return -1;
+		}
+		//a call that is not on top was left by a failure of the proxy, frames above it are dropped
+		int frame = depth - 1;
+		while (frame >= 0 && (methods[frame] != aMonitoredMethod || starts[frame] != aStart)) {
+			frame--;
+		}
+		if (frame < 0) {
+			return -1;
+		}
+		long elapsed = System.nanoTime() - aStart;
+		long self = elapsed - nestedNanos[frame];
+		if (frame > 0) {
+			nestedNanos[frame - 1] += elapsed;
+			CallEdge edge = methods[frame - 1].getEdge(aMonitoredMethod, beans[frame - 1], beans[frame]);
+			if (edge.isDropped()) {
+				CallGraph.getInstance().countDroppedCall();
+			}
+			else {
+				edge.record(elapsed);
+			}
+		}
+		methods[frame] = null;
+		beans[frame] = null;
+		depth = frame;
+		return self < 0 ? 0 : self;
+	}
+
+	/* Pops the given call without adding its time anywhere, if it is still on the stack*/
+	void discard(MonitoredMethod aMonitoredMethod, long aStart) {
+		if (depth > MAX_DEPTH) {
+			depth--;
+			return;
+		}
+		int frame = depth - 1;
+		while (frame >= 0 && (methods[frame] != aMonitoredMethod || starts[frame] != aStart)) {
+			frame--;
+		}
+		if (frame < 0) {
+			return;
+		}
+		for (int i=frame; i<depth; i++) {
+			methods[i] = null;
+			beans[i] = null;
+		}
+		depth = frame;
+	}
+}
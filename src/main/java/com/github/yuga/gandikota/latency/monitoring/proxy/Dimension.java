@@ -0,0 +1,70 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencyMonitor;
+
+/**
+ * Calls of a method with one value of the dimension returned by the DimensionExtractor of the bean,
+ * with a monitor of their own. Returned by the <code>dimensions</code> operation as a row of attribute
+ * key, dimension value, invocations, errors, average latency of successful calls and its unit.
+ *
+ * @author Yuga Gandikota
+ */
+final class Dimension {
+
+	/* dimension value of calls that exceed maxDimensions*/
+	static final String OTHER = "other";
+
+	private static final String[] ITEMS = {"attribute", "dimension", "invocations", "errors", "average", "unit"};
+
+	/* rows of all dimensions of all methods, indexed by attribute key and dimension value*/
+	static final TabularType TABLE_TYPE;
+
+	static {
+		try {
+			CompositeType row = new CompositeType("LatencyDimension", "calls of a method with a dimension value", ITEMS,
+					new String[] {"attribute key of the method", "dimension value", "number of calls", "number of failed calls", 
+							"average latency of successful calls", "unit of the latency"},
+					new OpenType<?>[] {SimpleType.STRING, SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.STRING});
+			TABLE_TYPE = new TabularType("LatencyDimensions", "latency of methods by dimension value", row, new String[] {ITEMS[0], ITEMS[1]});
+		}
+		catch (OpenDataException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/* value returned by the extractor*/
+	final String value;
+
+	/* monitor that samples of successful calls are added to*/
+	final LatencyMonitor monitor;
+
+	final LongAdder calls = new LongAdder();
+	final LongAdder errors = new LongAdder();
+
+	Dimension(String aValue, LatencyMonitor aMonitor) {
+		value = aValue;
+		monitor = aMonitor;
+	}
+
+	/* Adds a row for this dimension of the given method*/
+	void collectRow(MonitoredMethod aMonitoredMethod, TabularDataSupport aTable) {
+		try {
+			aTable.put(new CompositeDataSupport(TABLE_TYPE.getRowType(), ITEMS, new Object[] {aMonitoredMethod.key, value, 
+					Long.valueOf(calls.sum()), Long.valueOf(errors.sum()), Long.valueOf(monitor.getAverage()), aMonitoredMethod.settings.units.toString()}));
+		}
+		catch (OpenDataException e) {
+			//items always match the row type
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.CompletionStage;
+
+import com.github.yuga.gandikota.latency.monitoring.exception.LatencyMonitoringProxyException;
+
+/**
+ * Records calls of one method, for proxies generated by ProxyClassGenerator. A generated method
+ * calls <code>start()</code>, then the bean, then <code>succeeded()</code> or <code>failed()</code>.
+ * Methods that may return a CompletionStage call <code>returned()</code> instead of <code>succeeded()</code>.
+ * 
+ * This class is public only because generated proxies are defined in a class loader of their own,
+ * it is not meant to be used by applications.
+ * 
+ * @author Yuga Gandikota
+ */
+public final class InvocationRecorder {
+
+	/* proxy that keeps the monitors*/
+	private final LatencyMonitoredProxy proxy;
+	
+	/* state of the method recorded*/
+	private final MonitoredMethod monitoredMethod;
+	
+	InvocationRecorder(LatencyMonitoredProxy aProxy, MonitoredMethod aMonitoredMethod) {
+		proxy = aProxy;
+		monitoredMethod = aMonitoredMethod;
+	}
+	
+	/**
+	 * Counts a call that starts.
+	 * @return start time of the call, to be passed to succeeded() or failed(). Not a time if the call is not sampled.
+	 */
+	public long start() {
+		return proxy.enter(monitoredMethod);
+	}
+	
+	/**
+	 * Records a call that returned.
+	 * @param aStart value returned by start().
+	 */
+	public void succeeded(long aStart) throws LatencyMonitoringProxyException {
+		try {
+			proxy.returned(monitoredMethod, aStart);
+			proxy.recordSuccess(monitoredMethod, aStart);
+		} finally {
+			monitoredMethod.exit();
+		}
+	}
+	
+	/**
+	 * Records a call that returned a value which may be a CompletionStage. Stages are recorded when
+	 * they complete, anything else as a call that returned. The call is ended if its stage can not be observed.
+	 * @param aStart value returned by start().
+	 * @param aResult value returned by the bean.
+	 */
+	public void returned(long aStart, Object aResult) throws LatencyMonitoringProxyException {
+		if (aResult instanceof CompletionStage) {
+			boolean observed = false;
+			try {
+				proxy.returned(monitoredMethod, aStart);
+				observed = true;
+				//ends the call itself if it fails
+				proxy.recordOnCompletion(monitoredMethod, aStart, (CompletionStage<?>) aResult, null);
+			} finally {
+				if (!observed) {
+					monitoredMethod.exit();
+				}
+			}
+		}
+		else {
+			succeeded(aStart);
+		}
+	}
+	
+	/**
+	 * Records a call that threw.
+	 * @param aStart value returned by start().
+	 * @param aFailure exception thrown by the bean.
+	 */
+	public void failed(long aStart, Throwable aFailure) throws LatencyMonitoringProxyException {
+		try {
+			proxy.returned(monitoredMethod, aStart);
+			proxy.recordFailure(monitoredMethod, aStart, aFailure);
+		} finally {
+			monitoredMethod.exit();
+		}
+	}
+}
@@ -7,6 +7,8 @@ import java.lang.annotation.ElementType;
 import java.util.concurrent.TimeUnit;
 
 import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DefaultAttributeNamingStrategy;
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DimensionExtractor;
+import com.github.yuga.gandikota.latency.monitoring.utils.HistogramLatencyMonitorFactory;
 
 /**
  * Annotation to be used to mark an implementation to be proxy'd and exposed as an MBean  
@@ -14,10 +16,12 @@ import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DefaultAttribut
  * <pre>
  * @JMXMonitored(beanName="TestInterface1:name=TestImpl1", //name used for MBean
  * 				types={TestInterface1.class},     		   //array of interfaces to build proxy for.		
- * 				addAllMonitorsAtStartup=true,              //if true, adds latency monitors for all the methods at startup.
+ * 				addAllMonitorsAtStartup=true,              //if true, adds attributes for all the methods at startup.
  * 				sampleSize=100, 						   //number of samples to use to compute running avg., default 100
  * 				units=TimeUnit.MILLISECONDS,			   //time units to be used, default TimeUnit.MILLISECONDS	
- * 				namingStrategyClass=MyCustomAttributeNamingStrategy.class) //default DefaultAttributeNamingStrategy.class 	 	
+ * 				namingStrategyClass=MyCustomAttributeNamingStrategy.class, //default DefaultAttributeNamingStrategy.class 	 	
+ * 				monitorKind=MonitorKind.HISTOGRAM,         //kind of monitor to use, default MonitorKind.DEFAULT
+ * 				engine=ProxyEngine.GENERATED)              //how the proxy is implemented, default ProxyEngine.DEFAULT
  * public class TestImpl1 implements TestInterface1{
  * ...
  * }
@@ -33,7 +37,7 @@ public @interface JMXLatencyMonitored {
 	/* name used while registering MBean with the MBean server*/
 	String beanName();
 	
-	/* array of Interfaces that proxy has to be created for*/
+	/* array of Interfaces that proxy has to be created for. With ProxyEngine.GENERATED, one of them can be a class.*/
 	Class<?>[] types();
 	
 	/**
@@ -44,6 +48,7 @@ public @interface JMXLatencyMonitored {
 	 * will not show up in the client interface. If that method is invoked after the client 
 	 * is connected, it does not show up in the client automatically. You will have to 
 	 * re-connect to refresh the attribute list.
+	 * Either way, the samples of a method are allocated on its first call.
 	 */
 	boolean addAllMonitorsAtStartup() default true;
 	
@@ -53,4 +58,112 @@ public @interface JMXLatencyMonitored {
 	/* time units to be used */
 	TimeUnit units() default TimeUnit.MILLISECONDS;
 	Class<?> namingStrategyClass() default DefaultAttributeNamingStrategy.class;
+	
+	/**
+	 * Kind of monitor to keep for every method. Default uses the LatencyMonitorFactory set
+	 * with system property, if any. <code>HISTOGRAM</code> adds count, min, max and percentile 
+	 * attributes next to the average. <code>WINDOWED</code> adds count, average and max attributes 
+	 * over the last 1, 5 and 15 minutes. <code>EWMA</code> keeps an exponentially weighted moving 
+	 * average in a few longs per method. <code>OFF_HEAP</code> keeps the samples of a running average
+	 * outside the heap, in the shared OffHeapSlab, and falls back to BUFFER once the slab is full.
+	 */
+	MonitorKind monitorKind() default MonitorKind.DEFAULT;
+	
+	/**
+	 * Number of stripes every monitor records into. With more than one stripe, threads record into
+	 * separate monitors, picked by thread. Averages are added up from the stripes, statistics such as
+	 * percentiles are read from the stripes merged. This removes contention between threads calling the
+	 * same method, at the cost of memory and slower reads. Every stripe keeps sampleSize samples, the 
+	 * average is that of the last samples of every stripe, also of stripes no thread records into any more.
+	 * Use 0 for one stripe per available processor. Default is 1, not striped.
+	 */
+	int stripes() default 1;
+	
+	/* Precision of histograms, in significant decimal digits (0-5). Used by MonitorKind.HISTOGRAM */
+	int histogramSignificantDigits() default HistogramLatencyMonitorFactory.DEFAULT_SIGNIFICANT_DIGITS;
+	
+	/* Largest latency, in nanoseconds, tracked by histograms with full precision. Used by MonitorKind.HISTOGRAM */
+	long histogramHighestTrackableNanos() default HistogramLatencyMonitorFactory.DEFAULT_HIGHEST_TRACKABLE_NANOS;
+	
+	/**
+	 * Weight of every new sample in the moving average, between 0 and 1. Used by MonitorKind.EWMA.
+	 * Default 0 derives it from sampleSize as 2 / (sampleSize + 1). For a half-life of n samples
+	 * use 1 - 2^(-1/n).
+	 */
+	double ewmaAlpha() default 0.0d;
+	
+	/**
+	 * Number of samples kept in a forward decaying reservoir, to add percentile attributes biased
+	 * towards recent samples. Used by MonitorKind.EWMA. Default 0 does not keep percentiles.
+	 */
+	int ewmaReservoirSize() default 0;
+	
+	/**
+	 * How the proxy is implemented. <code>REFLECTIVE</code> uses java.lang.reflect.Proxy and Method.invoke.
+	 * <code>GENERATED</code> generates a class that calls the bean directly, which avoids reflection
+	 * and the argument array of every call, and can also extend a public, non final class with a 
+	 * constructor without arguments. Default uses the engine set on LatencyMonitoredProxyFactory.
+	 */
+	ProxyEngine engine() default ProxyEngine.DEFAULT;
+	
+	/**
+	 * Time only 1 in sampleRate calls of every method, picked at random. Calls that are not sampled skip
+	 * System.nanoTime() and the monitor update, but are still counted, so invocations and errors stay
+	 * exact, and callsPerSecond is measured from the last sampled call or attribute read of the window. Counts kept by HISTOGRAM, WINDOWED and EWMA monitors are scaled by the rate.
+	 * Default is 1, every call is timed.
+	 */
+	int sampleRate() default 1;
+	
+	/**
+	 * Adapt the sample rate of every method, once per second, to time at most this many calls per second.
+	 * The rate never goes below sampleRate. Current rate is exposed as the <code>sampleInterval</code>
+	 * attribute. Default 0 keeps the rate fixed.
+	 */
+	int maxSamplesPerSecond() default 0;
+	
+	/**
+	 * Most attribute keys kept for a bean whose namingStrategyClass implements DynamicAttributeNamingStrategy.
+	 * When a new key would exceed it, the keys recorded least recently are evicted and their counts, and 
+	 * their samples if the monitors are mergeable, are added to the <code>other</code> key. The number of 
+	 * keys evicted is exposed as <code>other.evicted</code>. Default 1000, 0 for no limit.
+	 */
+	int maxMonitors() default 1000;
+	
+	/**
+	 * Class implementing DimensionExtractor, which breaks down the latency of every method by a property 
+	 * of the call such as the tenant. Latency per dimension value is returned by the <code>dimensions</code>
+	 * operation. Default DimensionExtractor.class, no dimensions. Needs the REFLECTIVE engine.
+	 */
+	Class<?> dimensionExtractorClass() default DimensionExtractor.class;
+	
+	/* Most dimension values kept per method, calls with further values are recorded under "other". Default 16.*/
+	int maxDimensions() default 16;
+	
+	/**
+	 * Latency threshold of every method, in units, checked every few seconds by a background evaluator.
+	 * When the value of the sloStatistic attribute of a method stays above it for sloEvaluations checks,
+	 * an AttributeChangeNotification reports the breach. When it stays below 90% of the threshold as long,
+	 * another one reports the recovery. Notifications of a method are sent at most once a minute.
+	 * Default 0, no threshold. Methods can set their own with JMXLatencyMonitoredMethod.
+	 */
+	long sloThreshold() default 0;
+	
+	/**
+	 * Statistic compared with sloThreshold, such as p99 or max1m, empty for the average. Pick one that 
+	 * covers recent calls: the average of a BUFFER monitor, the statistics of WINDOWED monitors and the
+	 * percentiles of EWMA monitors do, those of HISTOGRAM monitors cover all calls since the start.
+	 * A statistic the monitor does not keep is logged with a warning and its threshold is not evaluated.
+	 */
+	String sloStatistic() default "";
+	
+	/* Number of checks in a row needed to report a breach or a recovery, see sloThreshold. Default 3.*/
+	int sloEvaluations() default 3;
+	
+	/**
+	 * Keeps the self time of every method, its latency less the time spent in calls to monitored methods 
+	 * of beans that also keep self time, exposed as <code>key.self</code>. Calls between such beans are 
+	 * added up per caller and callee in the CallGraph MBean. Only timed calls are tracked, when calls are
+	 * sampled the unsampled nested calls count as self time of their caller. Default false.
+	 */
+	boolean selfTime() default false;
 }
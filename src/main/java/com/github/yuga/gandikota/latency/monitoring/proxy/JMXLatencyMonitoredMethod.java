@@ -0,0 +1,57 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Overrides the settings of <code>JMXLatencyMonitored</code> for one method. Put it on the method of 
+ * the interface, or class, listed in <code>types</code>. Settings left at their default are taken from
+ * the bean. It is read once, when the proxy is created.
+ *
+ * <pre>
+ * public interface Catalog {
+ *     &#64;JMXLatencyMonitoredMethod(units=MethodUnits.MICROSECONDS, monitorKind=MonitorKind.HISTOGRAM)
+ *     Item lookup(String id);
+ * 
+ *     &#64;JMXLatencyMonitoredMethod(units=MethodUnits.SECONDS, sampleSize=10)
+ *     void reindex();
+ * 
+ *     &#64;JMXLatencyMonitoredMethod(exclude=true)
+ *     boolean isOpen();
+ * }
+ * </pre>
+ * 
+ * If several methods share an attribute name, the settings of the first method resolved are used.
+ *
+ * @author Yuga Gandikota
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface JMXLatencyMonitoredMethod {
+
+	/* Kind of monitor, DEFAULT uses the kind of the bean*/
+	MonitorKind monitorKind() default MonitorKind.DEFAULT;
+
+	/* Sample size of the monitor, 0 uses the sample size of the bean*/
+	int sampleSize() default 0;
+
+	/* Time units of latency values, BEAN uses the units of the bean*/
+	MethodUnits units() default MethodUnits.BEAN;
+
+	/* Time 1 in sampleRate calls, 0 uses the sample rate of the bean*/
+	int sampleRate() default 0;
+
+	/* Latency threshold of the method, see JMXLatencyMonitored#sloThreshold(). 0 uses the threshold of the bean, -1 for none*/
+	long sloThreshold() default 0;
+
+	/* Statistic compared with the threshold, empty uses the statistic of the bean*/
+	String sloStatistic() default "";
+
+	/**
+	 * If true, the method is passed to the bean without being counted or timed and has no attributes.
+	 * Default false.
+	 */
+	boolean exclude() default false;
+}
@@ -1,12 +1,22 @@
 package com.github.yuga.gandikota.latency.monitoring.proxy;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.Attribute;
 import javax.management.AttributeChangeNotification;
@@ -15,8 +25,6 @@ import javax.management.AttributeNotFoundException;
 import javax.management.DynamicMBean;
 import javax.management.ImmutableDescriptor;
 import javax.management.InvalidAttributeValueException;
-import javax.management.MBeanAttributeInfo;
-import javax.management.MBeanConstructorInfo;
 import javax.management.MBeanException;
 import javax.management.MBeanInfo;
 import javax.management.MBeanNotificationInfo;
@@ -25,6 +33,17 @@ import javax.management.MalformedObjectNameException;
 import javax.management.Notification;
 import javax.management.NotificationBroadcasterSupport;
 import javax.management.ReflectionException;
+import javax.management.openmbean.ArrayType;
+import javax.management.openmbean.OpenMBeanAttributeInfo;
+import javax.management.openmbean.OpenMBeanConstructorInfo;
+import javax.management.openmbean.OpenMBeanInfoSupport;
+import javax.management.openmbean.OpenMBeanOperationInfo;
+import javax.management.openmbean.OpenMBeanOperationInfoSupport;
+import javax.management.openmbean.OpenMBeanParameterInfo;
+import javax.management.openmbean.OpenMBeanParameterInfoSupport;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,9 +51,23 @@ import org.springframework.jmx.export.MBeanExportException;
 
 import com.github.yuga.gandikota.latency.monitoring.exception.LatencyMonitoringProxyException;
 import com.github.yuga.gandikota.latency.monitoring.proxy.naming.AttributeNamingStrategy;
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DimensionExtractor;
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DynamicAttributeNamingStrategy;
+import com.github.yuga.gandikota.latency.monitoring.utils.EwmaLatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.HistogramLatencyMonitorFactory;
 import com.github.yuga.gandikota.latency.monitoring.utils.LatencyMonitor;
 import com.github.yuga.gandikota.latency.monitoring.utils.LatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencyStatistics;
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencySnapshot;
+import com.github.yuga.gandikota.latency.monitoring.utils.MergeableLatencyMonitor;
+import com.github.yuga.gandikota.latency.monitoring.utils.MonitoringScheduler;
+import com.github.yuga.gandikota.latency.monitoring.utils.OffHeapLatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.ReleasableLatencyMonitor;
 import com.github.yuga.gandikota.latency.monitoring.utils.SimpleLatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.SnapshotLatencyMonitor;
+import com.github.yuga.gandikota.latency.monitoring.utils.StripedLatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.TimeWindowedLatencyMonitorFactory;
+import com.github.yuga.gandikota.latency.monitoring.utils.WeightedLatencyMonitor;
 
 /**
  * Creates proxy that maintains latency information and exposes itself as a MBean.
@@ -58,21 +91,90 @@ public class LatencyMonitoredProxy
 	/* Proxy implementation created */
 	private Object proxy;
 	
-	/* HashMap of latency monitors */
-	private ConcurrentHashMap<String, LatencyMonitor> monitors = new ConcurrentHashMap<String, LatencyMonitor>();
+	/* Per attribute state, holding the latency monitors, keyed by the attribute name created by the naming strategy */
+	private ConcurrentHashMap<String, MonitoredMethod> monitoredMethods = new ConcurrentHashMap<String, MonitoredMethod>();
+	
+	/* Declared interface methods resolved at construction. Never modified after the constructor.*/
+	private Map<Method, MonitoredMethod> declaredMethods = new HashMap<Method, MonitoredMethod>();
+	
+	/* 
+	 * Identity keyed lookup used on every invocation. The JDK proxy passes the same Method instance
+	 * for every call of a given method, so after the first call of each method this is the only lookup done.
+	 * Copy on write, never modified after it is published.
+	 */
+	private volatile IdentityHashMap<Method, MonitoredMethod> methodTable = new IdentityHashMap<Method, MonitoredMethod>();
 	
 	/* Sequence used while sending MBean change notifications  */
-	private int notificationSequence = 1;
+	private final AtomicLong notificationSequence = new AtomicLong();
+	
+	/* Changes of the attributes within this delay are sent in a single notification */
+	private static final long NOTIFICATION_DELAY_MILLIS = 100;
+	
+	/* Set while a change notification is scheduled and not yet sent */
+	private final AtomicBoolean notificationPending = new AtomicBoolean();
+	
+	/* Incremented every time an attribute is added, MBeanInfo built at an older version is stale */
+	private final AtomicLong attributesVersion = new AtomicLong();
+	
+	/* MBeanInfo built last, with the attributes version it was built at */
+	private volatile CachedMBeanInfo cachedMBeanInfo;
+	
+	/* name of the operation that returns all attribute values, see snapshot()*/
+	private static final String SNAPSHOT_OPERATION = "snapshot";
+	
+	/* name of the operation that returns latency by dimension value, see dimensions()*/
+	private static final String DIMENSIONS_OPERATION = "dimensions";
+	
+	/* name of the operation that returns the serialized distribution of a method, see latencySnapshot()*/
+	private static final String LATENCY_SNAPSHOT_OPERATION = "latencySnapshot";
+	
+	/* return type of the latencySnapshot operation*/
+	private static final ArrayType<byte[]> BYTES_TYPE = ArrayType.getPrimitiveArrayType(byte[].class);
+	
+	/* Failures of a method are logged at most once per interval, the others are counted and summarized*/
+	private static final long FAILURE_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
 	
 	/* Naming strategy being used for making attribute names*/
 	private AttributeNamingStrategy namingStrategy;
 
+	/* true if the naming strategy is run on every invocation, see DynamicAttributeNamingStrategy*/
+	private boolean dynamicNaming;
+
+	/* extractor of the dimension of every call, null if calls are not broken down*/
+	private DimensionExtractor dimensionExtractor;
+
+	/* fraction of the keys evicted at once when maxMonitors is reached, so eviction is not done for every new key*/
+	private static final int EVICTION_DIVISOR = 8;
+
+	/* key that evicted keys are added to, null until the first eviction*/
+	private MonitoredMethod overflow;
+
+	/* true if self times and the edges between nested calls are kept, see CallStack*/
+	private boolean selfTime;
+
 	/* Annotation setting used at source*/
 	private JMXLatencyMonitored annotation;
 
-	private String timeUnitSufix = "";
+	/* monitor settings of the bean, methods may override them with JMXLatencyMonitoredMethod*/
+	private MonitorSettings beanSettings;
+
+	/* resolved state of methods excluded with JMXLatencyMonitoredMethod, they are not monitored*/
+	private static final MonitoredMethod EXCLUDED = new MonitoredMethod("excluded", 
+			new MonitorSettings(MonitorKind.DEFAULT, 1, TimeUnit.MILLISECONDS, 1, 0, 0, "", 1));
+
+	/* set once the proxy is registered with SloEvaluator, with its first key that has a threshold*/
+	private final AtomicBoolean thresholdsEvaluated = new AtomicBoolean();
+
+	/* sloStatistic values found not to be statistics of the monitor, warned about once*/
+	private final Set<String> invalidSloStatistics = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	private LatencyMonitorFactory latencyMonitorFactory;
+
+	/* empty monitors published for methods not called yet, by settings. Used while the proxy is created only*/
+	private final Map<MonitorSettings, LatencyMonitor> placeholders = new HashMap<MonitorSettings, LatencyMonitor>();
+
+	/* factories of monitor kinds selected by methods that differ from the kind of the bean*/
+	private final ConcurrentHashMap<MonitorKind, LatencyMonitorFactory> kindFactories = new ConcurrentHashMap<MonitorKind, LatencyMonitorFactory>();
 	
 
 	/**
@@ -93,53 +195,140 @@ public class LatencyMonitoredProxy
 	 * @throws MalformedObjectNameException
 	 */
 	protected LatencyMonitoredProxy(Object aBean, JMXLatencyMonitored aAnnotation) 
+	throws LatencyMonitoringProxyException {
+		this(aBean, aAnnotation, ProxyEngine.REFLECTIVE);
+	}
+
+	/**
+	 * Constructs LatencyMonitoredProxy instance with the given engine, unless the annotation selects one.
+	 * 
+	 * @param aBean source bean that we are going to create proxy for.
+	 * @param aAnnotation annotation configuration as declared on the source.
+	 * @param aDefaultEngine engine used if the annotation does not select one.
+	 * @throws LatencyMonitoringProxyException
+	 */
+	protected LatencyMonitoredProxy(Object aBean, JMXLatencyMonitored aAnnotation, ProxyEngine aDefaultEngine) 
 	throws LatencyMonitoringProxyException {
 		
 		annotation = aAnnotation;
 		source = aBean;
+		beanSettings = MonitorSettings.of(aAnnotation);
+		selfTime = aAnnotation.selfTime();
 		
-		Class<?>[] aBeanTypes = annotation.types();
-		
-		try {
-			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("Using naming strategy class:{} for bean:{}", annotation.namingStrategyClass().getName(), annotation.beanName());
-			}			
-			Constructor<?> cons = annotation.namingStrategyClass().getConstructor();
-			namingStrategy = (AttributeNamingStrategy) cons.newInstance();
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Using naming strategy class:{} for bean:{}", annotation.namingStrategyClass().getName(), annotation.beanName());
 		}
-		catch (Exception e) {
-			throw new LatencyMonitoringProxyException(e.getMessage(), e);
+		namingStrategy = SharedInstances.get(annotation.namingStrategyClass(), AttributeNamingStrategy.class);
+		dynamicNaming = namingStrategy instanceof DynamicAttributeNamingStrategy;
+		if (annotation.dimensionExtractorClass() != DimensionExtractor.class) {
+			dimensionExtractor = SharedInstances.get(annotation.dimensionExtractorClass(), DimensionExtractor.class);
 		}
 		
+		if (annotation.addAllMonitorsAtStartup() && LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Adding monitors at startup. bean:{}", annotation.beanName());
+		}
+		
+		ProxyEngine engine = annotation.engine() == ProxyEngine.DEFAULT ? aDefaultEngine : annotation.engine();
+		if (dynamicNaming && engine == ProxyEngine.GENERATED) {
+			//generated classes record every method under a single key
+			requireInterfaces("dynamic naming strategy:" + annotation.namingStrategyClass().getName());
+			LOGGER.warn("Dynamic naming strategy needs the REFLECTIVE proxy engine, using it. bean:{}", annotation.beanName());
+			engine = ProxyEngine.REFLECTIVE;
+		}
+		if (dimensionExtractor != null && engine == ProxyEngine.GENERATED) {
+			//generated classes do not pass the arguments to the recorder
+			requireInterfaces("dimension extractor:" + annotation.dimensionExtractorClass().getName());
+			LOGGER.warn("Dimension extractor needs the REFLECTIVE proxy engine, using it. bean:{}", annotation.beanName());
+			engine = ProxyEngine.REFLECTIVE;
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Using proxy engine:{} for bean:{}", engine, annotation.beanName());
+		}
+		if (engine == ProxyEngine.GENERATED) {
+			proxy = createGeneratedProxy();
+		}
+		else {
+			proxy = createReflectiveProxy();
+		}
+		placeholders.clear();
+	}
+	
+	/* 
+	 * Checks that the types can be proxied by the REFLECTIVE engine, which the given feature needs. 
+	 * Classes can be proxied by the GENERATED engine only.
+	 */
+	private void requireInterfaces(String aFeature) throws LatencyMonitoringProxyException {
+		for (Class<?> type : annotation.types()) {
+			if (!type.isInterface()) {
+				throw new LatencyMonitoringProxyException("the " + aFeature + " needs the REFLECTIVE proxy engine, which can not proxy class:" 
+						+ type.getName() + ". Monitor interfaces only, or remove it. bean:" + annotation.beanName(), null);
+			}
+		}
+	}
+	
+	/* Creates java.lang.reflect.Proxy of the interfaces, invoking this handler*/
+	private Object createReflectiveProxy() throws LatencyMonitoringProxyException {
 		Object result = java.lang.reflect.Proxy.newProxyInstance(
-				aBean.getClass().getClassLoader(), 
-				aBeanTypes,
+				source.getClass().getClassLoader(), 
+				annotation.types(),
 				this);
 		
-		if (annotation.addAllMonitorsAtStartup() ) {
+		//attribute names are resolved once here, so invocations don't have to run the naming strategy.
+		for (Class<?> iface : annotation.types()) {
 			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("Adding monitors at startup. bean:{}", annotation.beanName());
+				LOGGER.debug("Resolving attribute names for all methods. bean:{}, class:{}", annotation.beanName(), iface.getName());
 			}
-			
-			for (Class<?> iface : aBeanTypes) {
-				if (LOGGER.isDebugEnabled()) {
-					LOGGER.debug("Adding monitors for all methods. bean:{}, class:{}", annotation.beanName(), iface.getName());
-				}
-				//look at all the methods as part of the interface
-				Method[] allMethods = iface.getDeclaredMethods();
-				for(Method method : allMethods) {
-					String key  = createKey(source, annotation.types(), iface, method);
-					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug("Adding monitor. key:{}, method:{}", key, method.toString());
-					}
-					monitors.putIfAbsent(key,  newLatencyMonitor(annotation.sampleSize(), annotation.units()));
-				}
+			//look at all the methods as part of the interface
+			Method[] allMethods = iface.getDeclaredMethods();
+			for(Method method : allMethods) {
+				declaredMethods.put(method, addMethod(iface, method));
 			}
 		}
-			
-		proxy = result;
-		
-		timeUnitSufix = " " +annotation.units().toString();
+		return result;
+	}
+	
+	/* Generates a class that calls the bean directly, with a recorder for every method*/
+	private Object createGeneratedProxy() throws LatencyMonitoringProxyException {
+		ProxyClassGenerator generator = new ProxyClassGenerator(annotation.types());
+		List<Method> methods = generator.getMethods();
+		InvocationRecorder[] recorders = new InvocationRecorder[methods.size()];
+		for (int i=0; i<recorders.length; i++) {
+			MonitoredMethod monitoredMethod = addMethod(generator.getType(i), methods.get(i));
+			declaredMethods.put(methods.get(i), monitoredMethod);
+			//excluded methods get no recorder and call the bean directly
+			recorders[i] = monitoredMethod == EXCLUDED ? null : new InvocationRecorder(this, monitoredMethod);
+		}
+		return generator.newInstance(source, recorders);
+	}
+	
+	/* 
+	 * Resolves the attribute key of a proxied method, publishing its attributes if monitors are added at 
+	 * startup. The monitor itself is allocated on the first sample. Returns EXCLUDED for methods that are 
+	 * not monitored.
+	 */
+	private MonitoredMethod addMethod(Class<?> aType, Method aMethod) 
+	throws LatencyMonitoringProxyException {
+		if (MonitorSettings.isExcluded(aMethod)) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Method excluded from monitoring. bean:{}, method:{}", annotation.beanName(), aMethod.toString());
+			}
+			return EXCLUDED;
+		}
+		String key  = createKey(source, annotation.types(), aType, aMethod);
+		MonitoredMethod monitoredMethod = getMonitoredMethod(key, MonitorSettings.of(beanSettings, aMethod));
+		if (annotation.addAllMonitorsAtStartup() && monitoredMethod.monitor == null && monitoredMethod.placeholder == null) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Adding monitor. key:{}, method:{}", key, aMethod.toString());
+			}
+			LatencyMonitor placeholder = placeholders.get(monitoredMethod.settings);
+			if (placeholder == null) {
+				placeholder = newLatencyMonitor(monitoredMethod.settings);
+				placeholders.put(monitoredMethod.settings, placeholder);
+			}
+			monitoredMethod.placeholder = placeholder;
+			checkSloStatistic(monitoredMethod, placeholder);
+		}
+		return monitoredMethod;
 	}
 	
 	/* Method to create key given the details. In turn uses the naming strategy implementation to create key */
@@ -147,35 +336,236 @@ public class LatencyMonitoredProxy
 		return namingStrategy.getAttributeName(aSource, aAllTypes, aType, aMethod);
 	}
 
-	/* Gets current monitor allocted for the given key, if there is nothing allocated yet, it will allocate new monitor */
-	private LatencyMonitor getMonitor(String aKey) 
+	/* 
+	 * Returns the state kept for the given attribute key, creating it with the given settings if this is
+	 * the first time the key is seen
+	 */
+	private MonitoredMethod getMonitoredMethod(String aKey, MonitorSettings aSettings) {
+		MonitoredMethod monitoredMethod = monitoredMethods.get(aKey);
+		if (monitoredMethod == null) {
+			monitoredMethod = new MonitoredMethod(aKey, aSettings);
+			MonitoredMethod existing = monitoredMethods.putIfAbsent(aKey, monitoredMethod);
+			if (existing != null) {
+				monitoredMethod = existing;
+			}
+			else if (monitoredMethod.slo != null && thresholdsEvaluated.compareAndSet(false, true)) {
+				SloEvaluator.register(this);
+			}
+		}
+		return monitoredMethod;
+	}
+	
+	/* 
+	 * Resolves the given method to its state. Only the identity lookup is done once a method has been
+	 * invoked before, the naming strategy is run at most once for methods not declared in types().
+	 */
+	private MonitoredMethod resolve(Method aMethod) {
+		MonitoredMethod monitoredMethod = methodTable.get(aMethod);
+		if (monitoredMethod == null) {
+			monitoredMethod = resolveNew(aMethod);
+		}
+		return monitoredMethod;
+	}
+	
+	/* 
+	 * Resolves the given method to the state of the key the naming strategy returns for this call.
+	 * Lock free unless the key is new.
+	 */
+	private MonitoredMethod resolveDynamic(Method aMethod, MonitorSettings aSettings) 
+	throws LatencyMonitoringProxyException {
+		String key = createKey(source, annotation.types(), aMethod.getDeclaringClass(), aMethod);
+		MonitoredMethod monitoredMethod = monitoredMethods.get(key);
+		if (monitoredMethod == null) {
+			monitoredMethod = addDynamicKey(key, aSettings);
+		}
+		monitoredMethod.recorded();
+		return monitoredMethod;
+	}
+	
+	/* Adds state of a key returned by a dynamic naming strategy, evicting keys if maxMonitors is reached */
+	private synchronized MonitoredMethod addDynamicKey(String aKey, MonitorSettings aSettings) 
+	throws LatencyMonitoringProxyException {
+		MonitoredMethod monitoredMethod = monitoredMethods.get(aKey);
+		if (monitoredMethod == null) {
+			int keys = monitoredMethods.size() - (overflow == null ? 0 : 1);
+			if (annotation.maxMonitors() > 0 && keys >= annotation.maxMonitors()) {
+				evictLeastRecentlyRecorded();
+			}
+			monitoredMethod = getMonitoredMethod(aKey, aSettings);
+		}
+		return monitoredMethod;
+	}
+	
+	/* Evicts the keys recorded least recently into the overflow key */
+	private void evictLeastRecentlyRecorded() 
+	throws LatencyMonitoringProxyException {
+		List<MonitoredMethod> candidates = new ArrayList<MonitoredMethod>(monitoredMethods.size());
+		for (MonitoredMethod monitoredMethod : monitoredMethods.values()) {
+			if (monitoredMethod != overflow) {
+				candidates.add(monitoredMethod);
+			}
+		}
+		Collections.sort(candidates, new Comparator<MonitoredMethod>() {
+			public int compare(MonitoredMethod a, MonitoredMethod b) {
+				//nanoTime values are compared by their difference
+				long difference = a.lastRecordedNanos - b.lastRecordedNanos;
+				return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+			}
+		});
+		if (overflow == null) {
+			overflow = new MonitoredMethod(MonitoredMethod.OVERFLOW_KEY, beanSettings, true);
+			monitoredMethods.put(overflow.key, overflow);
+		}
+		int count = Math.max(1, candidates.size() / EVICTION_DIVISOR);
+		for (int i=0; i<count; i++) {
+			MonitoredMethod evicted = candidates.get(i);
+			monitoredMethods.remove(evicted.key);
+			absorb(evicted);
+		}
+		if (selfTime) {
+			//edges of evicted keys would keep their place in the graph
+			CallGraph.getInstance().removeEdges(new HashSet<MonitoredMethod>(candidates.subList(0, count)));
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Evicted keys recorded least recently. bean:{}, evicted:{}", annotation.beanName(), count);
+		}
+		attributesChanged();
+	}
+	
+	/* 
+	 * Adds counts and samples of an evicted key to the overflow key. Samples are added if monitors are mergeable. 
+	 * Monitors of the evicted key, also those of its dimensions, are released afterwards.
+	 */
+	private void absorb(MonitoredMethod aEvicted) 
+	throws LatencyMonitoringProxyException {
+		for (MonitoredMethod.Slot slot : MonitoredMethod.Slot.values()) {
+			LatencyMonitor monitor = aEvicted.get(slot);
+			if (monitor != null) {
+				LatencyMonitor target = getMonitor(overflow, slot);
+				if (monitor instanceof MergeableLatencyMonitor) {
+					((MergeableLatencyMonitor) monitor).mergeInto(target);
+				}
+				release(monitor);
+			}
+		}
+		ConcurrentHashMap<String, Dimension> dimensions = aEvicted.dimensions;
+		if (dimensions != null) {
+			for (Dimension dimension : dimensions.values()) {
+				release(dimension.monitor);
+			}
+		}
+		Dimension otherDimension = aEvicted.otherDimension;
+		if (otherDimension != null) {
+			release(otherDimension.monitor);
+		}
+		overflow.absorb(aEvicted);
+	}
+	
+	/* Gives back memory of a dropped monitor that is not reclaimed by the garbage collector, like slab regions*/
+	private static void release(LatencyMonitor aMonitor) {
+		if (aMonitor instanceof ReleasableLatencyMonitor) {
+			((ReleasableLatencyMonitor) aMonitor).release();
+		}
+	}
+	
+	/* Slow path of resolve(), invoked once for every Method instance passed to the proxy */
+	private synchronized MonitoredMethod resolveNew(Method aMethod) {
+		MonitoredMethod monitoredMethod = methodTable.get(aMethod);
+		if (monitoredMethod == null) {
+			monitoredMethod = declaredMethods.get(aMethod);
+			if (monitoredMethod == null) {
+				//inherited interface methods and the methods of java.lang.Object
+				monitoredMethod = MonitorSettings.isExcluded(aMethod) ? EXCLUDED 
+						: getMonitoredMethod(createKey(source, annotation.types(), aMethod.getDeclaringClass(), aMethod), MonitorSettings.of(beanSettings, aMethod));
+			}
+			IdentityHashMap<Method, MonitoredMethod> table = new IdentityHashMap<Method, MonitoredMethod>(methodTable);
+			table.put(aMethod, monitoredMethod);
+			methodTable = table;
+		}
+		return monitoredMethod;
+	}
+
+	/* 
+	 * Returns monitor in the given slot of the given method, allocating it on first use. Attributes of monitors 
+	 * added at startup are published already through their placeholder, every other monitor adds attributes.
+	 */
+	private LatencyMonitor getMonitor(MonitoredMethod aMonitoredMethod, MonitoredMethod.Slot aSlot) 
 	throws LatencyMonitoringProxyException {
-		
-		LatencyMonitor monitor = monitors.get(aKey);
+		LatencyMonitor monitor = aMonitoredMethod.get(aSlot);
 		if (monitor == null) {
-			monitor = newLatencyMonitor(annotation.sampleSize(), annotation.units());
-			LatencyMonitor existing = monitors.putIfAbsent(aKey, monitor);
-			if ((existing != monitor) && (existing != null)) {
-				monitor = existing;
-				if ( ! annotation.addAllMonitorsAtStartup()) {
-					sendNotification(aKey, monitor);
+			boolean created = false;
+			synchronized (aMonitoredMethod) {
+				monitor = aMonitoredMethod.get(aSlot);
+				if (monitor == null) {
+					monitor = newLatencyMonitor(aMonitoredMethod.settings);
+					aMonitoredMethod.set(aSlot, monitor);
+					created = true;
 				}
 			}
+			if (created && aSlot == MonitoredMethod.Slot.SUCCESS) {
+				checkSloStatistic(aMonitoredMethod, monitor);
+			}
+			if (created && (aSlot != MonitoredMethod.Slot.SUCCESS || aMonitoredMethod.placeholder == null)) {
+				attributesChanged();
+			}
 		}
 		return monitor;
 	}
 	
+	/* 
+	 * Drops the latency threshold of the given key if its sloStatistic is not one of the statistics of the monitor, 
+	 * which would never have a value. Warns once per statistic.
+	 */
+	private void checkSloStatistic(MonitoredMethod aMonitoredMethod, LatencyMonitor aMonitor) {
+		String statistic = aMonitoredMethod.settings.sloStatistic;
+		if (aMonitoredMethod.slo == null || statistic.length() == 0) {
+			return;
+		}
+		if (aMonitor instanceof LatencyStatistics) {
+			for (String name : ((LatencyStatistics) aMonitor).getStatisticNames()) {
+				if (name.equals(statistic)) {
+					return;
+				}
+			}
+		}
+		aMonitoredMethod.slo = null;
+		if (invalidSloStatistics.add(statistic)) {
+			LOGGER.warn("sloStatistic:{} is not a statistic of monitor:{}, its threshold is not evaluated. bean:{}, key:{}", 
+					statistic, aMonitor.getClass().getName(), annotation.beanName(), aMonitoredMethod.key);
+		}
+	}
+	
 	/* create a new instance of LatencyMonitor using the LatencyMonitorFactory*/
 	protected LatencyMonitor newLatencyMonitor(int sampleSize, TimeUnit units) 
 	throws LatencyMonitoringProxyException {
 		return getLatencyMonitorFactory().createLatencyMonitor(sampleSize, units);
 	}
 
+	/* Creates monitor with the given settings, with the factory of the bean unless a method selects another kind*/
+	private LatencyMonitor newLatencyMonitor(MonitorSettings aSettings) 
+	throws LatencyMonitoringProxyException {
+		if (aSettings.kind == annotation.monitorKind()) {
+			return newLatencyMonitor(aSettings.sampleSize, aSettings.units);
+		}
+		LatencyMonitorFactory factory = kindFactories.get(aSettings.kind);
+		if (factory == null) {
+			factory = stripe(createLatencyMonitorFactory(aSettings.kind));
+			LatencyMonitorFactory existing = kindFactories.putIfAbsent(aSettings.kind, factory);
+			if (existing != null) {
+				factory = existing;
+			}
+		}
+		return factory.createLatencyMonitor(aSettings.sampleSize, aSettings.units);
+	}
+
 	/**
 	 * Returns LatencyMonitorFactory instance that was previously created. 
-	 * If none was created, will check for property <pre>com.github.yuga.gandikota.latency.monitoring.proxy.LatencyMonitorFactory<pre>
+	 * If none was created and the annotation selects a <code>MonitorKind</code> other than <code>DEFAULT</code>,
+	 * it will instantiate the factory for that kind.
+	 * Otherwise, will check for property <pre>com.github.yuga.gandikota.latency.monitoring.proxy.LatencyMonitorFactory<pre>
 	 * If the property is set, it will instantiate LatencyMonitorFactory instance based on the value of the property.
 	 * If the property is not set, it will use the default factory implementation <code>SimpleLatencyMonitorFactory</code>
+	 * If the annotation asks for more than one stripe, the factory is wrapped in <code>StripedLatencyMonitorFactory</code>.
 	 * @return
 	 * @throws LatencyMonitoringProxyException if LatencyMonitorFactory could not be instantiated.
 	 * @see LatencyMonitorFactory
@@ -186,36 +576,132 @@ public class LatencyMonitoredProxy
 	{
 		
 		if (latencyMonitorFactory == null) {
-			String lmFactoryImplClassName = System.getProperty(LatencyMonitorFactory.LATENCY_MONITOR_FACTORY_PROPERTY_NAME);
-			if (lmFactoryImplClassName != null && !lmFactoryImplClassName.isEmpty()) {
-				if (LOGGER.isInfoEnabled()) {
-					LOGGER.info("Found property '{}' set to '{}'", LatencyMonitorFactory.LATENCY_MONITOR_FACTORY_PROPERTY_NAME, lmFactoryImplClassName);
-				}
-				try {
-					Class<LatencyMonitorFactory> factoryClass = (Class<LatencyMonitorFactory>) Class.forName(lmFactoryImplClassName);
-					Constructor<?> cons = factoryClass.getConstructor();
-					latencyMonitorFactory = (LatencyMonitorFactory) cons.newInstance();
-				} 
-				catch (Exception e) {
-					throw new LatencyMonitoringProxyException(e.getMessage(), e);
-				}
+			LatencyMonitorFactory factory;
+			if (annotation.monitorKind() != MonitorKind.DEFAULT) {
+				factory = createLatencyMonitorFactory(annotation.monitorKind());
 			}
 			else {
-				latencyMonitorFactory = new SimpleLatencyMonitorFactory();
+				factory = createConfiguredLatencyMonitorFactory();
 			}
+			
+			latencyMonitorFactory = stripe(factory);
 		}
 		return latencyMonitorFactory;
 	}
+
+	/* Wraps the factory in StripedLatencyMonitorFactory if the annotation asks for more than one stripe*/
+	private LatencyMonitorFactory stripe(LatencyMonitorFactory aFactory) {
+		if (annotation.stripes() == 1) {
+			return aFactory;
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Using striped monitors. bean:{}, stripes:{}", annotation.beanName(), annotation.stripes());
+		}
+		return new StripedLatencyMonitorFactory(aFactory, annotation.stripes());
+	}
 	
+	/* Creates factory set with system property, SimpleLatencyMonitorFactory if the property is not set.*/
+	private LatencyMonitorFactory createConfiguredLatencyMonitorFactory() 
+	throws LatencyMonitoringProxyException {
+		String lmFactoryImplClassName = System.getProperty(LatencyMonitorFactory.LATENCY_MONITOR_FACTORY_PROPERTY_NAME);
+		if (lmFactoryImplClassName != null && !lmFactoryImplClassName.isEmpty()) {
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("Found property '{}' set to '{}'", LatencyMonitorFactory.LATENCY_MONITOR_FACTORY_PROPERTY_NAME, lmFactoryImplClassName);
+			}
+			return SharedInstances.get(lmFactoryImplClassName, LatencyMonitorFactory.class);
+		}
+		return new SimpleLatencyMonitorFactory();
+	}
+
+	/* Creates factory for the given kind of monitor, configured by the annotation.*/
+	private LatencyMonitorFactory createLatencyMonitorFactory(MonitorKind aKind) {
+		switch (aKind) {
+		case HISTOGRAM:
+			return new HistogramLatencyMonitorFactory(annotation.histogramHighestTrackableNanos(), annotation.histogramSignificantDigits());
+		case WINDOWED:
+			return new TimeWindowedLatencyMonitorFactory();
+		case EWMA:
+			return new EwmaLatencyMonitorFactory(annotation.ewmaAlpha(), annotation.ewmaReservoirSize());
+		case OFF_HEAP:
+			return new OffHeapLatencyMonitorFactory();
+		case BUFFER:
+		default:
+			return new SimpleLatencyMonitorFactory();
+		}
+	}
+
+	/* 
+	 * Invalidates the MBeanInfo and schedules a change notification, unless one is scheduled already.
+	 * All changes until the notification is sent are sent with it, the calling thread never builds the
+	 * MBeanInfo nor sends the notification.
+	 */
+	private void attributesChanged() {
+		attributesVersion.incrementAndGet();
+		if (notificationPending.compareAndSet(false, true)) {
+			MonitoringScheduler.get().schedule(new Runnable() {
+				public void run() {
+					notificationPending.set(false);
+					sendNotification();
+				}
+			}, NOTIFICATION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
 
 	/* Sends change notification to notify clients of changes. */
-	private void sendNotification(String aKey, LatencyMonitor aMonitor) {
-		notificationSequence++;
-		Notification n = new Notification(MBEAN_INFO_CHANGED_EVENT, source.getClass().getName(), notificationSequence );
-		n.setUserData(getMBeanInfo());
+	private void sendNotification() {
+		long sequence = notificationSequence.incrementAndGet();
+		try {
+			Notification n = new Notification(MBEAN_INFO_CHANGED_EVENT, source.getClass().getName(), sequence);
+			n.setUserData(getMBeanInfo());
+			sendNotification(n);
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("{} :: Sending notification {}, seq:{}",annotation.beanName(), n.getMessage(), sequence);
+			}
+		}
+		catch (RuntimeException e) {
+			LOGGER.error("Could not send notification. bean:{}, seq:{}", annotation.beanName(), sequence, e);
+		}
+	}
+
+	/* 
+	 * Checks the latency thresholds of all keys that have one, sending a notification for every breach 
+	 * and recovery. Invoked by SloEvaluator.
+	 */
+	void evaluateThresholds(long aNowNanos) {
+		for (MonitoredMethod monitoredMethod : monitoredMethods.values()) {
+			SloState slo = monitoredMethod.slo;
+			if (slo == null) {
+				continue;
+			}
+			AttributeValues values = new AttributeValues();
+			monitoredMethod.collectValues(values);
+			Number value = values.get(slo.attribute);
+			if (value == null) {
+				//no call recorded yet
+				continue;
+			}
+			int change = slo.evaluate(value.doubleValue(), aNowNanos);
+			if (change != SloState.UNCHANGED) {
+				sendThresholdNotification(slo, value, monitoredMethod.settings.units);
+			}
+		}
+	}
+
+	/* Sends notification of a breach or recovery of the latency threshold of an attribute*/
+	private void sendThresholdNotification(SloState aSlo, Number aValue, TimeUnit aUnits) {
+		String state = aSlo.isBreached() ? "breached" : "recovered";
+		String message = aSlo.attribute + " " + state + " threshold " + aSlo.threshold + " " + aUnits + ", value:" + aValue;
+		AttributeChangeNotification n = new AttributeChangeNotification(source.getClass().getName(), 
+				notificationSequence.incrementAndGet(), System.currentTimeMillis(), message, 
+				aSlo.attribute, aValue.getClass().getName(), 
+				aValue instanceof Double ? (Number) Double.valueOf(aSlo.threshold) : Long.valueOf(aSlo.threshold), aValue);
+		n.setUserData(state);
 		sendNotification(n);
-		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("{} :: Sending notification {}, seq:{}",annotation.beanName(), n.getMessage(), notificationSequence);
+		if (aSlo.isBreached()) {
+			LOGGER.warn("{} :: {}", annotation.beanName(), message);
+		}
+		else if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("{} :: {}", annotation.beanName(), message);
 		}
 	}
 
@@ -223,23 +709,93 @@ public class LatencyMonitoredProxy
 	 * Returns latency value given attribute name. 
 	 * @param aAttributeName
 	 * @param suppressNotFoundException if false, throws AttributeNotFoundException if the attribute does not exist.
-	 * @return latency value of the given attribute(method)
+	 * @return latency value of the given attribute(method), a Long or a Double. null if the attribute does not
+	 *         exist and suppressNotFoundException is set.
 	 * @throws AttributeNotFoundException if the attribute does not exists and suppressNotFoundException is set to false.
 	 */
-	protected String getLatencyValue(String aAttributeName, boolean suppressNotFoundException) 
+	protected Object getLatencyValue(String aAttributeName, boolean suppressNotFoundException) 
 	throws AttributeNotFoundException {
-		LatencyMonitor monitor = monitors.get(aAttributeName);
-		String result = "";
-		if (monitor != null) {
-			result = monitor.getAverage() + timeUnitSufix;
+		MonitoredMethod monitoredMethod = findMonitoredMethod(aAttributeName);
+		Object result = null;
+		if (monitoredMethod != null) {
+			AttributeValues values = new AttributeValues();
+			monitoredMethod.collectValues(values);
+			result = values.get(aAttributeName);
 		}
-		else {
-			if (!suppressNotFoundException) {
-				throw new AttributeNotFoundException(aAttributeName+" is not a valid attribute");
-			}
+		
+		if (result == null && !suppressNotFoundException) {
+			throw new AttributeNotFoundException(aAttributeName+" is not a valid attribute");
 		}
 		return result;		
 	}
+	
+	/* Returns the method the attribute belongs to, null if there is none. */
+	private MonitoredMethod findMonitoredMethod(String aAttributeName) {
+		//attribute names start with the key of their method, followed by '.' and the name of the value
+		MonitoredMethod monitoredMethod = monitoredMethods.get(aAttributeName);
+		int separator = aAttributeName.length();
+		while (monitoredMethod == null && (separator = aAttributeName.lastIndexOf('.', separator - 1)) > 0) {
+			monitoredMethod = monitoredMethods.get(aAttributeName.substring(0, separator));
+		}
+		return monitoredMethod;
+	}
+	
+	/**
+	 * Reads all attributes of this bean in one pass, every monitor once, and returns them as rows of 
+	 * attribute name, value, longValue and unit. longValue holds the exact value of Long attributes,
+	 * value holds every value as a double. Exposed as the <code>snapshot</code> operation.
+	 * 
+	 * @return values of all attributes.
+	 */
+	public TabularData snapshot() {
+		AttributeValues values = new AttributeValues();
+		for (MonitoredMethod monitoredMethod : monitoredMethods.values()) {
+			monitoredMethod.collectValues(values);
+		}
+		return values.toTabularData();
+	}
+
+	/**
+	 * Returns the latency of every method by dimension value, as rows of attribute key, dimension value,
+	 * invocations, errors, average latency and unit. Exposed as the <code>dimensions</code> operation.
+	 * Empty unless the bean has a DimensionExtractor.
+	 * 
+	 * @return latency by dimension value.
+	 */
+	public TabularData dimensions() {
+		TabularDataSupport table = new TabularDataSupport(Dimension.TABLE_TYPE);
+		for (MonitoredMethod monitoredMethod : monitoredMethods.values()) {
+			monitoredMethod.collectDimensions(table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the distribution of the latency of successful calls of a method, as the binary form of a 
+	 * LatencySnapshot in nanoseconds. Snapshots of the same method on several nodes can be merged into
+	 * exact fleet wide percentiles, see LatencySnapshotAggregator. Exposed as the <code>latencySnapshot</code> 
+	 * operation.
+	 * 
+	 * @param aKey attribute key of the method.
+	 * @return serialized LatencySnapshot, null if the method has no samples yet or its monitor does not 
+	 *         implement SnapshotLatencyMonitor.
+	 * @throws IllegalArgumentException if the key is not the key of a method of this bean.
+	 */
+	public byte[] latencySnapshot(String aKey) {
+		MonitoredMethod monitoredMethod = aKey == null ? null : monitoredMethods.get(aKey);
+		if (monitoredMethod == null) {
+			throw new IllegalArgumentException(aKey + " is not an attribute key");
+		}
+		LatencyMonitor monitor = monitoredMethod.monitor;
+		if (monitor == null) {
+			monitor = monitoredMethod.placeholder;
+		}
+		if (!(monitor instanceof SnapshotLatencyMonitor)) {
+			return null;
+		}
+		LatencySnapshot snapshot = ((SnapshotLatencyMonitor) monitor).getSnapshot();
+		return snapshot == null ? null : snapshot.toByteArray();
+	}
 
 	/**
 	 * Returns source implementation that we are building proxy for.
@@ -274,61 +830,115 @@ public class LatencyMonitoredProxy
 	 * Part of the DynamicMBean interface. Returns value of the given attribute name.
 	 * 
 	 * @param aAttributeNames array of attribute names to return values of.
-	 * @return AttributeList with values of the given attribute names.
+	 * @return AttributeList with values of the given attribute names. Attributes that do not exist are left out.
 	 */
 	public AttributeList getAttributes(String[] aAttributeNames) {
+		//attributes of the same method are read together, every monitor once.
+		Map<MonitoredMethod, AttributeValues> read = new IdentityHashMap<MonitoredMethod, AttributeValues>();
 		AttributeList attrList = new AttributeList();
 		for(String attributeName : aAttributeNames) {
-			String value = "";
-			try {
-				value = getLatencyValue(attributeName, /*suppresNotFoundExeption*/true);
-			} catch (AttributeNotFoundException e) {
+			MonitoredMethod monitoredMethod = findMonitoredMethod(attributeName);
+			if (monitoredMethod == null) {
+				continue;
+			}
+			AttributeValues values = read.get(monitoredMethod);
+			if (values == null) {
+				values = new AttributeValues();
+				monitoredMethod.collectValues(values);
+				read.put(monitoredMethod, values);
+			}
+			Object value = values.get(attributeName);
+			if (value != null) {
+				attrList.add(new Attribute(attributeName, value));
 			}
-			Attribute attr = new Attribute(attributeName, value);
-			attrList.add(attr);
 		}
 		return attrList;
 	}
 
 	/**
 	 * Part of the DynamicMBean interface. Returns necessary details of this MBean in the form of MBeanInfo. 
-	 * .
+	 * The MBeanInfo is built again only after attributes were added.
 	 * @return MBeanInfo with details about this MBean. 
 	 */
 	public MBeanInfo getMBeanInfo() {
-		MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[monitors.size()];
-		int i = 0;
-		for(Entry<String, LatencyMonitor> entry : monitors.entrySet()) {
-			//Object o = monitors.get(entry.key);
-			if (entry.getValue() != null) {
-				MBeanAttributeInfo attr = new MBeanAttributeInfo(entry.getKey(), String.class.getName(), 
-																entry.getKey(), true, false, false);
-				attrs[i] = attr;
-				i++;
-			}
+		long version = attributesVersion.get();
+		CachedMBeanInfo cached = cachedMBeanInfo;
+		if (cached == null || cached.version != version) {
+			//built at the version read before, a change while building leaves it stale and it is built again 
+			cached = new CachedMBeanInfo(version, buildMBeanInfo());
+			cachedMBeanInfo = cached;
 		}
+		return cached.info;
+	}
 
-		return new MBeanInfo(annotation.beanName(), annotation.beanName(), 
+	/* Builds MBeanInfo with an attribute for every value of the monitors created so far*/
+	private MBeanInfo buildMBeanInfo() {
+		AttributeValues values = new AttributeValues();
+		for(MonitoredMethod monitoredMethod : monitoredMethods.values()) {
+			monitoredMethod.collectValues(values);
+		}
+		List<OpenMBeanAttributeInfo> attrList = new ArrayList<OpenMBeanAttributeInfo>();
+		values.collectAttributeInfos(attrList);
+		OpenMBeanAttributeInfo[] attrs = attrList.toArray(new OpenMBeanAttributeInfo[attrList.size()]);
+		List<OpenMBeanOperationInfo> operations = new ArrayList<OpenMBeanOperationInfo>();
+		operations.add(new OpenMBeanOperationInfoSupport(
+				SNAPSHOT_OPERATION,
+				"Values of all attributes, read in one pass, as rows of attribute, value and unit",
+				new OpenMBeanParameterInfo[]{},
+				AttributeValues.SNAPSHOT_TYPE,
+				MBeanOperationInfo.INFO));
+		operations.add(new OpenMBeanOperationInfoSupport(
+				LATENCY_SNAPSHOT_OPERATION,
+				"Distribution of the latency of a method, in nanoseconds, as a serialized LatencySnapshot that can be merged with those of other nodes",
+				new OpenMBeanParameterInfo[]{
+						new OpenMBeanParameterInfoSupport("attribute", "attribute key of the method", SimpleType.STRING)},
+				BYTES_TYPE,
+				MBeanOperationInfo.INFO));
+		if (dimensionExtractor != null) {
+			operations.add(new OpenMBeanOperationInfoSupport(
+					DIMENSIONS_OPERATION,
+					"Latency of every method by dimension value, as rows of attribute, dimension, invocations, errors, average and unit",
+					new OpenMBeanParameterInfo[]{},
+					Dimension.TABLE_TYPE,
+					MBeanOperationInfo.INFO));
+		}
+
+		return new OpenMBeanInfoSupport(annotation.beanName(), annotation.beanName(), 
 									attrs, 
-									new MBeanConstructorInfo[]{},
-									new MBeanOperationInfo[]{},
+									new OpenMBeanConstructorInfo[]{},
+									operations.toArray(new OpenMBeanOperationInfo[operations.size()]),
 									new MBeanNotificationInfo[]{
 											new MBeanNotificationInfo(
 												new String[] { AttributeChangeNotification.ATTRIBUTE_CHANGE },
 												AttributeChangeNotification.class.getName(),
-												"This notification is emitted when any attribute changes"
+												"This notification is emitted when a latency threshold is breached or recovers, see sloThreshold"
 											),
 											new MBeanNotificationInfo(
-												new String[] { "jmx.mbean.info.changed" },
+												new String[] { MBEAN_INFO_CHANGED_EVENT },
 												Notification.class.getName(),
 												"This notification is emitted to signal a JMX client to refresh the mbean info"
 											)},
 									new ImmutableDescriptor("immutableInfo=false", "infoTimeout=10000"));
 	}
 
-	/* We don't have to support any actions thru JMX.*/
+	/* Supports the snapshot, dimensions and latencySnapshot operations only, see snapshot(), dimensions() and latencySnapshot().*/
 	public Object invoke(String actionName, Object[] params, String[] signature)
 			throws MBeanException, ReflectionException {
+		if (SNAPSHOT_OPERATION.equals(actionName) && (params == null || params.length == 0)) {
+			return snapshot();
+		}
+		if (DIMENSIONS_OPERATION.equals(actionName) && (params == null || params.length == 0)) {
+			return dimensions();
+		}
+		if (LATENCY_SNAPSHOT_OPERATION.equals(actionName) && params != null && params.length == 1 
+				&& (params[0] == null || params[0] instanceof String)) {
+			try {
+				return latencySnapshot((String) params[0]);
+			}
+			catch (IllegalArgumentException e) {
+				throw new MBeanException(e, e.getMessage());
+			}
+		}
         throw new ReflectionException(new NoSuchMethodException(
                 actionName + " is not supported"));
 	}
@@ -347,38 +957,258 @@ public class LatencyMonitoredProxy
 
 	/**
 	 * Method invoked every time any of the methods in the proxy are invoked by the client.
+	 * Latency of successful and failed calls is recorded separately, calls and concurrent
+	 * calls are counted for both. Calls that return a CompletionStage are recorded when the
+	 * stage completes, see recordOnCompletion(). If calls are sampled, calls that are not
+	 * sampled are counted but not timed.
 	 */
 	public Object invoke(Object proxy, Method method, Object[] args)
 			throws Throwable {
 
-		Object result;
-		long start = -1L;
-		boolean success = false;
+		MonitoredMethod monitoredMethod = resolve(method);
+		if (monitoredMethod == EXCLUDED) {
+			return invokeUnmonitored(method, args);
+		}
+		if (dynamicNaming) {
+			monitoredMethod = resolveDynamic(method, monitoredMethod.settings);
+		}
+		//before the call, which may modify the arguments
+		Dimension dimension = dimensionExtractor == null ? null : resolveDimension(monitoredMethod, method, args);
+		long start = enter(monitoredMethod);
+		boolean completed = true;
+		boolean popped = false;
 		try {
-			start = System.nanoTime();
-			result = method.invoke(source, args);
-			success = true;
+			Object result = method.invoke(source, args);
+			popped = true;
+			returned(monitoredMethod, start);
+			if (result instanceof CompletionStage) {
+				//the completion ends the call from here on, also if it fails to be attached
+				completed = false;
+				recordOnCompletion(monitoredMethod, start, (CompletionStage<?>) result, dimension);
+			}
+			else {
+				if (dimension != null) {
+					recordDimension(monitoredMethod, dimension, start, false);
+				}
+				recordSuccess(monitoredMethod, start);
+			}
+			return result;
 		} catch (InvocationTargetException e) {
 			Throwable target = e.getTargetException();
+			popped = true;
+			returned(monitoredMethod, start);
+			if (dimension != null) {
+				recordDimension(monitoredMethod, dimension, start, true);
+			}
+			recordFailure(monitoredMethod, start, target);
 			if (target != null) {
-				LOGGER.error("invocation exception: " + e.getTargetException());
 				throw target;
 			}
 			else {
 				throw new RuntimeException("unexpected invocation exception: " + e.getMessage(), e);
 			}
 		} finally {
-			if (success) {
-				long end = System.nanoTime();
-				String key = createKey(source, annotation.types(), method.getDeclaringClass(), method);
-				LatencyMonitor monitor = getMonitor(key);
-				long duration = end - start;
-				monitor.addSample(duration);
+			if (!popped) {
+				//the bean was not called, e.g. the arguments did not match
+				discard(monitoredMethod, start);
+			}
+			if (completed) {
+				monitoredMethod.exit();
+			}
+		}
+	}
+	
+	/* Counts a call that starts, and pushes it on the call stack of the thread if it is timed and the bean keeps self time*/
+	long enter(MonitoredMethod aMonitoredMethod) {
+		long start = aMonitoredMethod.enter();
+		if (selfTime && start != MonitoredMethod.UNSAMPLED) {
+			CallStack.get().push(aMonitoredMethod, annotation.beanName(), start);
+		}
+		return start;
+	}
+	
+	/* 
+	 * Pops a call that returned to the thread from its call stack and adds its self time. Calls returning a
+	 * CompletionStage are popped when they return, their nested calls on other threads are not subtracted.
+	 */
+	void returned(MonitoredMethod aMonitoredMethod, long aStart) 
+	throws LatencyMonitoringProxyException {
+		if (selfTime && aStart != MonitoredMethod.UNSAMPLED) {
+			long self = CallStack.get().pop(aMonitoredMethod, aStart);
+			if (self >= 0) {
+				addSample(getMonitor(aMonitoredMethod, MonitoredMethod.Slot.SELF), self, aMonitoredMethod.getSampleWeight());
+			}
+		}
+	}
+	
+	/* Pops a call whose outcome is not recorded from the call stack of the thread, without adding its time*/
+	private void discard(MonitoredMethod aMonitoredMethod, long aStart) {
+		if (selfTime && aStart != MonitoredMethod.UNSAMPLED) {
+			CallStack.get().discard(aMonitoredMethod, aStart);
+		}
+	}
+	
+	/* Passes a call of an excluded method to the bean*/
+	private Object invokeUnmonitored(Method aMethod, Object[] aArgs) 
+	throws Throwable {
+		try {
+			return aMethod.invoke(source, aArgs);
+		} catch (InvocationTargetException e) {
+			Throwable target = e.getTargetException();
+			throw target != null ? target : new RuntimeException("unexpected invocation exception: " + e.getMessage(), e);
+		}
+	}
+	
+	/* 
+	 * Records the call when the stage it returned completes, with a single callback and without blocking. 
+	 * The call stays in flight until then, or is ended here if the stage fails to attach the callback. 
+	 * Futures that are not CompletionStages can not be observed without blocking, calls returning them 
+	 * are recorded when they return.
+	 */
+	void recordOnCompletion(MonitoredMethod aMonitoredMethod, long aStart, CompletionStage<?> aStage, Dimension aDimension) {
+		AsyncCompletion completion = new AsyncCompletion(this, aMonitoredMethod, aStart, aDimension);
+		try {
+			aStage.whenComplete(completion);
+		}
+		catch (Throwable e) {
+			completion.end();
+			throw e;
+		}
+	}
+	
+	/* 
+	 * Returns the dimension of a call, from the values known to the method without allocating, or adds it.
+	 * Extractors that throw are logged at debug level and the call is not broken down.
+	 */
+	private Dimension resolveDimension(MonitoredMethod aMonitoredMethod, Method aMethod, Object[] aArgs) 
+	throws LatencyMonitoringProxyException {
+		String value;
+		try {
+			value = dimensionExtractor.getDimension(aMethod, aArgs);
+		}
+		catch (RuntimeException e) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Dimension extractor failed. bean:{}, methodKey:{}", annotation.beanName(), aMonitoredMethod.key, e);
+			}
+			return null;
+		}
+		if (value == null) {
+			return null;
+		}
+		Dimension dimension = aMonitoredMethod.getDimension(value);
+		if (dimension == null) {
+			//once maxDimensions is reached new values are recorded under other, without locking
+			dimension = aMonitoredMethod.otherDimension;
+			if (dimension == null) {
+				dimension = addDimension(aMonitoredMethod, value);
+			}
+		}
+		return dimension;
+	}
+	
+	/* Slow path of resolveDimension(), adds a dimension value unless the method has maxDimensions already */
+	private Dimension addDimension(MonitoredMethod aMonitoredMethod, String aValue) 
+	throws LatencyMonitoringProxyException {
+		synchronized (aMonitoredMethod) {
+			ConcurrentHashMap<String, Dimension> known = aMonitoredMethod.dimensions;
+			if (known == null) {
+				aMonitoredMethod.dimensions = known = new ConcurrentHashMap<String, Dimension>();
+			}
+			Dimension dimension = known.get(aValue);
+			if (dimension == null) {
+				dimension = aMonitoredMethod.otherDimension;
+			}
+			if (dimension == null) {
+				boolean full = known.size() >= annotation.maxDimensions();
+				dimension = new Dimension(full ? Dimension.OTHER : aValue, newLatencyMonitor(aMonitoredMethod.settings));
+				if (full) {
+					aMonitoredMethod.otherDimension = dimension;
+				}
+				else {
+					known.put(aValue, dimension);
+				}
 				if (LOGGER.isDebugEnabled()) {
-					LOGGER.debug("Adding new time sample. bean:{}, methodKey:{}, time:{}", annotation.beanName(), key, duration);
+					LOGGER.debug("Added dimension. bean:{}, methodKey:{}, dimension:{}", annotation.beanName(), aMonitoredMethod.key, dimension.value);
 				}
 			}
+			return dimension;
+		}
+	}
+	
+	/* Counts a call with a dimension, and adds its sample unless it failed or was not sampled*/
+	void recordDimension(MonitoredMethod aMonitoredMethod, Dimension aDimension, long aStart, boolean aFailed) {
+		aDimension.calls.increment();
+		if (aFailed) {
+			aDimension.errors.increment();
+		}
+		else if (aStart != MonitoredMethod.UNSAMPLED) {
+			addSample(aDimension.monitor, System.nanoTime() - aStart, aMonitoredMethod.getSampleWeight());
+		}
+	}
+	
+	/* Adds sample of a successful call that started at the given time, unless it was not sampled*/
+	void recordSuccess(MonitoredMethod aMonitoredMethod, long aStart) 
+	throws LatencyMonitoringProxyException {
+		if (aStart == MonitoredMethod.UNSAMPLED) {
+			return;
+		}
+		long duration = System.nanoTime() - aStart;
+		addSample(getMonitor(aMonitoredMethod, MonitoredMethod.Slot.SUCCESS), duration, aMonitoredMethod.getSampleWeight());
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Adding new time sample. bean:{}, methodKey:{}, time:{}", annotation.beanName(), aMonitoredMethod.key, duration);
+		}
+	}
+	
+	/* 
+	 * Adds sample of a failed call that started at the given time, unless it was not sampled. The failure
+	 * monitor is created by the first sampled failure, unsampled failures are only counted. Counts the
+	 * exception and logs it if no failure of the method was logged recently.
+	 */
+	void recordFailure(MonitoredMethod aMonitoredMethod, long aStart, Throwable aFailure) 
+	throws LatencyMonitoringProxyException {
+		long duration = -1L;
+		if (aStart != MonitoredMethod.UNSAMPLED) {
+			duration = System.nanoTime() - aStart;
+			addSample(getMonitor(aMonitoredMethod, MonitoredMethod.Slot.FAILURE), duration, aMonitoredMethod.getSampleWeight());
+		}
+		Class<?> type = aFailure == null ? Throwable.class : aFailure.getClass();
+		if (aMonitoredMethod.countException(type)) {
+			attributesChanged();
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Adding new failure time sample. bean:{}, methodKey:{}, time:{}, exception:{}", annotation.beanName(), aMonitoredMethod.key, duration, type.getName());
+		}
+		
+		long now = System.nanoTime();
+		long next = aMonitoredMethod.nextFailureLogNanos.get();
+		if (now - next >= 0 && aMonitoredMethod.nextFailureLogNanos.compareAndSet(next, now + FAILURE_LOG_INTERVAL_NANOS)) {
+			long unlogged = aMonitoredMethod.unloggedFailures.getAndSet(0);
+			LOGGER.error("invocation exception. bean:{}, methodKey:{}, failures not logged since last logged:{}, total failures:{}", 
+					annotation.beanName(), aMonitoredMethod.key, unlogged, aMonitoredMethod.failures.get(), aFailure);
+		}
+		else {
+			aMonitoredMethod.unloggedFailures.incrementAndGet();
+		}
+	}
+	
+	/* Adds sample standing for aWeight calls, monitors that do not keep counts ignore the weight*/
+	private static void addSample(LatencyMonitor aMonitor, long aDuration, int aWeight) {
+		if (aWeight > 1 && aMonitor instanceof WeightedLatencyMonitor) {
+			((WeightedLatencyMonitor) aMonitor).addSample(aDuration, aWeight);
+		}
+		else {
+			aMonitor.addSample(aDuration);
+		}
+	}
+
+	/* MBeanInfo and the attributes version it was built at*/
+	private static final class CachedMBeanInfo {
+		final long version;
+		final MBeanInfo info;
+
+		CachedMBeanInfo(long aVersion, MBeanInfo aInfo) {
+			version = aVersion;
+			info = aInfo;
 		}
-		return result;
 	}
 }
@@ -1,5 +1,10 @@
 package com.github.yuga.gandikota.latency.monitoring.proxy;
 
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import javax.management.ObjectName;
 
 import org.slf4j.Logger;
@@ -9,19 +14,29 @@ import org.springframework.beans.factory.BeanInitializationException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.jmx.export.MBeanExporter;
 import org.springframework.stereotype.Component;
 
+import com.github.yuga.gandikota.latency.monitoring.export.SharedStatsRegion;
+import com.github.yuga.gandikota.latency.monitoring.export.SnapshotExporter;
+import com.github.yuga.gandikota.latency.monitoring.utils.MonitoringScheduler;
+
 /**
  * Class that implements necessary call backs required for integration into to Spring framework to 
  * create proxy, and register with MBean server.
  * 
+ * With backgroundRegistration set, MBeans are registered in batches on the MonitoringScheduler thread
+ * once the context is refreshed, instead of one at a time while beans are created.
+ * 
  * @author Yuga Gandikota
  */
 @Component
 public class LatencyMonitoredProxyFactory 
 implements 
 	ApplicationContextAware,
+	ApplicationListener<ContextRefreshedEvent>,
 	BeanPostProcessor {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(LatencyMonitoredProxy.class);
@@ -29,6 +44,80 @@ implements
 	/* ApplicationContext that will be passed by Spring framework*/
 	private ApplicationContext applicationContext;
 
+	/* engine used for beans whose annotation does not select one*/
+	private ProxyEngine proxyEngine = ProxyEngine.REFLECTIVE;
+
+	/* exporter every proxy is registered with, null if snapshots are not exported*/
+	private SnapshotExporter snapshotExporter;
+
+	/* memory mapped file every proxy is published to, null if none*/
+	private SharedStatsRegion sharedStatsRegion;
+
+	/* exporter MBeans are registered with, looked up with the first proxy*/
+	private MBeanExporter exporter;
+
+	/* true if MBeans are registered on the scheduler thread, see setBackgroundRegistration()*/
+	private boolean backgroundRegistration;
+
+	/* delay of a batch after its first MBean, so MBeans created together are registered together*/
+	private static final long REGISTRATION_DELAY_MILLIS = 100;
+
+	/* MBeans waiting to be registered in the background*/
+	private final ConcurrentLinkedQueue<PendingRegistration> pendingRegistrations = new ConcurrentLinkedQueue<PendingRegistration>();
+
+	/* set once the context is refreshed, MBeans are queued until then*/
+	private volatile boolean refreshed;
+
+	/* set while a batch is scheduled and not yet registered*/
+	private final AtomicBoolean registrationScheduled = new AtomicBoolean();
+
+	/**
+	 * Sets the engine used for beans whose annotation does not select one. Default is REFLECTIVE.
+	 * 
+	 * @param aProxyEngine engine to use, DEFAULT is the same as REFLECTIVE.
+	 */
+	public void setProxyEngine(ProxyEngine aProxyEngine) {
+		proxyEngine = aProxyEngine == ProxyEngine.DEFAULT ? ProxyEngine.REFLECTIVE : aProxyEngine;
+	}
+
+	/**
+	 * Registers MBeans in batches on the MonitoringScheduler thread, once the context is refreshed, so 
+	 * registration does not delay the creation of beans. Proxies are usable right away, their MBeans 
+	 * appear shortly after the context is refreshed. Registration failures are logged and do not fail 
+	 * the context. Default false, MBeans are registered as beans are created.
+	 * 
+	 * @param aBackgroundRegistration true to register in the background.
+	 */
+	public void setBackgroundRegistration(boolean aBackgroundRegistration) {
+		backgroundRegistration = aBackgroundRegistration;
+	}
+
+	/**
+	 * Sets exporter that writes snapshots of every proxy created to a local file, and starts it.
+	 * 
+	 * @param aSnapshotExporter exporter to register proxies with.
+	 */
+	public void setSnapshotExporter(SnapshotExporter aSnapshotExporter) {
+		snapshotExporter = aSnapshotExporter;
+		snapshotExporter.start();
+	}
+
+	/**
+	 * Sets memory mapped file that every proxy created is published to, and starts it.
+	 * 
+	 * @param aSharedStatsRegion region to register proxies with.
+	 * @throws BeanInitializationException if the file could not be created.
+	 */
+	public void setSharedStatsRegion(SharedStatsRegion aSharedStatsRegion) {
+		sharedStatsRegion = aSharedStatsRegion;
+		try {
+			sharedStatsRegion.start();
+		}
+		catch (IOException e) {
+			throw new BeanInitializationException(e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Callback method part of the BeanPostProcessor interface. Returns the same bean instance as is.
 	 * 
@@ -62,13 +151,18 @@ implements
 				if (LOGGER.isInfoEnabled()) {
 					LOGGER.info("creating proxy for beanName:{}, JMXName:{}'"+beanName, annotation.beanName());
 				}
-				LatencyMonitoredProxy proxy = new LatencyMonitoredProxy(bean, annotation);
+				LatencyMonitoredProxy proxy = new LatencyMonitoredProxy(bean, annotation, proxyEngine);
 				result = proxy.getProxy();
 				
-				MBeanExporter exporter = (MBeanExporter) applicationContext.getBean(MBeanExporter.class);
-				exporter.registerManagedResource(proxy, new ObjectName(annotation.beanName()));
-				if (LOGGER.isInfoEnabled()) {
-					LOGGER.info("registered MBean for beanName:'"+beanName);
+				register(new PendingRegistration(proxy, new ObjectName(annotation.beanName()), false));
+				if (annotation.selfTime()) {
+					register(new PendingRegistration(CallGraph.getInstance(), CallGraph.getObjectName(), true));
+				}
+				if (snapshotExporter != null) {
+					snapshotExporter.register(annotation.beanName(), proxy);
+				}
+				if (sharedStatsRegion != null) {
+					sharedStatsRegion.register(annotation.beanName(), proxy);
 				}
 			}
 			catch (Exception e) {
@@ -79,6 +173,94 @@ implements
 		return result;
 	}
 
+	/* Registers the MBean now, or queues it if MBeans are registered in the background*/
+	private void register(PendingRegistration aRegistration) {
+		if (exporter == null) {
+			exporter = (MBeanExporter) applicationContext.getBean(MBeanExporter.class);
+		}
+		if (!backgroundRegistration) {
+			aRegistration.register(exporter);
+			return;
+		}
+		pendingRegistrations.add(aRegistration);
+		if (refreshed) {
+			scheduleRegistration();
+		}
+	}
+
+	/* Schedules registration of the queued MBeans, unless it is scheduled already*/
+	private void scheduleRegistration() {
+		if (registrationScheduled.compareAndSet(false, true)) {
+			MonitoringScheduler.get().schedule(new Runnable() {
+				public void run() {
+					registrationScheduled.set(false);
+					registerPending();
+				}
+			}, REGISTRATION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/* Registers all queued MBeans, on the scheduler thread*/
+	private void registerPending() {
+		int count = 0;
+		PendingRegistration registration;
+		while ((registration = pendingRegistrations.poll()) != null) {
+			try {
+				registration.register(exporter);
+				count++;
+			}
+			catch (RuntimeException e) {
+				LOGGER.error("Could not register MBean. name:{}", registration.name, e);
+			}
+		}
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("registered {} MBeans in the background", count);
+		}
+	}
+
+	/**
+	 * Callback method part of the ApplicationListener interface. Starts registering MBeans queued while
+	 * the context was created, if MBeans are registered in the background.
+	 * 
+	 * @param event event published by Spring framework.
+	 */
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		refreshed = true;
+		if (!pendingRegistrations.isEmpty()) {
+			scheduleRegistration();
+		}
+	}
+
+	/* MBean to register with its name*/
+	private static final class PendingRegistration {
+		final Object mbean;
+		final ObjectName name;
+
+		/* true for MBeans shared by all beans, registered once per MBean server*/
+		final boolean shared;
+
+		PendingRegistration(Object aMBean, ObjectName aName, boolean aShared) {
+			mbean = aMBean;
+			name = aName;
+			shared = aShared;
+		}
+
+		void register(MBeanExporter aExporter) {
+			if (shared) {
+				synchronized (mbean) {
+					if (!aExporter.getServer().isRegistered(name)) {
+						aExporter.registerManagedResource(mbean, name);
+					}
+				}
+				return;
+			}
+			aExporter.registerManagedResource(mbean, name);
+			if (LOGGER.isInfoEnabled()) {
+				LOGGER.info("registered MBean:{}", name);
+			}
+		}
+	}
+
 	/**
 	 * Callback method part of the ApplicationContextAware interface. 
 	 * Used to get (and save) ApplicationContext from spring.
@@ -0,0 +1,36 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time units of the latency values of one method. BEAN uses the units of the bean, the other values
+ * are those of TimeUnit.
+ * 
+ * @author Yuga Gandikota
+ * @see JMXLatencyMonitoredMethod#units()
+ */
+public enum MethodUnits {
+	
+	/* units of the bean, JMXLatencyMonitored#units()*/
+	BEAN(null),
+	
+	NANOSECONDS(TimeUnit.NANOSECONDS),
+	MICROSECONDS(TimeUnit.MICROSECONDS),
+	MILLISECONDS(TimeUnit.MILLISECONDS),
+	SECONDS(TimeUnit.SECONDS),
+	MINUTES(TimeUnit.MINUTES),
+	HOURS(TimeUnit.HOURS),
+	DAYS(TimeUnit.DAYS);
+	
+	/* same unit of TimeUnit, null for BEAN*/
+	private final TimeUnit timeUnit;
+	
+	private MethodUnits(TimeUnit aTimeUnit) {
+		timeUnit = aTimeUnit;
+	}
+	
+	/* TimeUnit of the method, the given units of the bean for BEAN*/
+	TimeUnit toTimeUnit(TimeUnit aBeanUnits) {
+		return timeUnit == null ? aBeanUnits : timeUnit;
+	}
+}
@@ -0,0 +1,28 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+/**
+ * Kind of LatencyMonitor used for the methods of a bean.
+ * 
+ * @author Yuga Gandikota
+ * @see JMXLatencyMonitored#monitorKind()
+ */
+public enum MonitorKind {
+	
+	/* LatencyMonitorFactory set with system property, SimpleLatencyMonitorFactory if the property is not set.*/
+	DEFAULT,
+	
+	/* running average of the last sampleSize samples, SimpleLatencyMonitor*/
+	BUFFER,
+	
+	/* percentiles, min, max and count of all samples, HistogramLatencyMonitor*/
+	HISTOGRAM,
+	
+	/* count, average and max over the last 1, 5 and 15 minutes, TimeWindowedLatencyMonitor*/
+	WINDOWED,
+	
+	/* exponentially weighted moving average in constant memory, EwmaLatencyMonitor*/
+	EWMA,
+	
+	/* running average of the last sampleSize samples kept outside the heap, in the shared OffHeapSlab. OffHeapLatencyMonitor*/
+	OFF_HEAP
+}
@@ -0,0 +1,92 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the monitors of an attribute key: those of the bean, overridden by the
+ * <code>JMXLatencyMonitoredMethod</code> annotation of the method, if it has one. Settings with the 
+ * same values are equal, also those of methods annotated with the same values.
+ *
+ * @author Yuga Gandikota
+ */
+final class MonitorSettings {
+
+	final MonitorKind kind;
+	final int sampleSize;
+	final TimeUnit units;
+	final int sampleRate;
+	final int maxSamplesPerSecond;
+
+	/* latency threshold, 0 or less for none, the statistic compared with it and the checks needed to change state*/
+	final long sloThreshold;
+	final String sloStatistic;
+	final int sloEvaluations;
+
+	MonitorSettings(MonitorKind aKind, int aSampleSize, TimeUnit aUnits, int aSampleRate, int aMaxSamplesPerSecond,
+			long aSloThreshold, String aSloStatistic, int aSloEvaluations) {
+		kind = aKind;
+		sampleSize = aSampleSize;
+		units = aUnits;
+		sampleRate = aSampleRate;
+		maxSamplesPerSecond = aMaxSamplesPerSecond;
+		sloThreshold = aSloThreshold;
+		sloStatistic = aSloStatistic;
+		sloEvaluations = aSloEvaluations;
+	}
+
+	/* Settings of the bean*/
+	static MonitorSettings of(JMXLatencyMonitored aBean) {
+		return new MonitorSettings(aBean.monitorKind(), aBean.sampleSize(), aBean.units(), aBean.sampleRate(), aBean.maxSamplesPerSecond(),
+				aBean.sloThreshold(), aBean.sloStatistic(), aBean.sloEvaluations());
+	}
+
+	/* Settings of the method, the bean settings if it is not annotated*/
+	static MonitorSettings of(MonitorSettings aBean, Method aMethod) {
+		JMXLatencyMonitoredMethod method = aMethod.getAnnotation(JMXLatencyMonitoredMethod.class);
+		if (method == null) {
+			return aBean;
+		}
+		return new MonitorSettings(
+				method.monitorKind() == MonitorKind.DEFAULT ? aBean.kind : method.monitorKind(),
+				method.sampleSize() > 0 ? method.sampleSize() : aBean.sampleSize,
+				method.units().toTimeUnit(aBean.units),
+				method.sampleRate() > 0 ? method.sampleRate() : aBean.sampleRate,
+				aBean.maxSamplesPerSecond,
+				method.sloThreshold() != 0 ? method.sloThreshold() : aBean.sloThreshold,
+				method.sloStatistic().length() > 0 ? method.sloStatistic() : aBean.sloStatistic,
+				aBean.sloEvaluations);
+	}
+
+	@Override
+	public boolean equals(Object aOther) {
+		if (this == aOther) {
+			return true;
+		}
+		if (!(aOther instanceof MonitorSettings)) {
+			return false;
+		}
+		MonitorSettings other = (MonitorSettings) aOther;
+		return kind == other.kind && sampleSize == other.sampleSize && units == other.units && sampleRate == other.sampleRate
+				&& maxSamplesPerSecond == other.maxSamplesPerSecond && sloThreshold == other.sloThreshold
+				&& sloStatistic.equals(other.sloStatistic) && sloEvaluations == other.sloEvaluations;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = kind.hashCode();
+		hash = 31 * hash + sampleSize;
+		hash = 31 * hash + units.hashCode();
+		hash = 31 * hash + sampleRate;
+		hash = 31 * hash + maxSamplesPerSecond;
+		hash = 31 * hash + (int) (sloThreshold ^ (sloThreshold >>> 32));
+		hash = 31 * hash + sloStatistic.hashCode();
+		return 31 * hash + sloEvaluations;
+	}
+
+	/* true if calls of the method are not monitored*/
+	static boolean isExcluded(Method aMethod) {
+		JMXLatencyMonitoredMethod method = aMethod.getAnnotation(JMXLatencyMonitoredMethod.class);
+		return method != null && method.exclude();
+	}
+}
@@ -0,0 +1,423 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.openmbean.TabularDataSupport;
+
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencyMonitor;
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencyStatistics;
+import com.github.yuga.gandikota.latency.monitoring.utils.RateMeter;
+import com.github.yuga.gandikota.latency.monitoring.utils.Sampler;
+import com.github.yuga.gandikota.latency.monitoring.utils.StripedLatencyMonitor;
+
+/**
+ * Per attribute state kept by the proxy. An instance is created once for every attribute key
+ * produced by the naming strategy and every proxied <code>Method</code> is resolved to its
+ * instance only once, so the invocation path does not have to build or hash attribute names.
+ *
+ * Exposes the following attributes, named after the key. Latencies are Longs in the configured time 
+ * unit, counts are Longs and rates Doubles:
+ * <ul>
+ * <li><code>key</code> average latency of successful calls, and <code>key.statistic</code> for every
+ *     statistic of the monitor, if it implements LatencyStatistics</li>
+ * <li><code>key.failed</code> average latency of timed failed calls, and <code>key.failed.statistic</code></li>
+ * <li><code>key.self</code> average latency less the time spent in nested monitored calls, and <code>key.self.statistic</code>,
+ *     if the bean keeps self time</li>
+ * <li><code>key.errors</code> number of failed calls, and <code>key.errors.ExceptionClassName</code> per exception type</li>
+ * <li><code>key.invocations</code> number of calls, <code>key.callsPerSecond</code> calls per second over the last 10 seconds</li>
+ * <li><code>key.inFlight</code> and <code>key.peakInFlight</code> current and highest number of concurrent calls</li>
+ * <li><code>key.sampleInterval</code> number of calls every latency sample stands for, if calls are sampled</li>
+ * <li><code>other.evicted</code> number of keys evicted into the overflow key, see absorb()</li>
+ * </ul>
+ * Failure attributes are added with the first failure.
+ *
+ * @author Yuga Gandikota
+ */
+class MonitoredMethod {
+
+	static final String FAILED = "failed";
+
+	static final String ERRORS = "errors";
+
+	static final String INVOCATIONS = "invocations";
+
+	static final String CALLS_PER_SECOND = "callsPerSecond";
+
+	static final String IN_FLIGHT = "inFlight";
+
+	static final String PEAK_IN_FLIGHT = "peakInFlight";
+
+	static final String SAMPLE_INTERVAL = "sampleInterval";
+
+	static final String EVICTED = "evicted";
+
+	static final String SELF = "self";
+
+	/* key that evicted keys are added to*/
+	static final String OVERFLOW_KEY = "other";
+
+	/* monitors of a key that are allocated on first use, see get(Slot) and set(Slot, LatencyMonitor)*/
+	enum Slot {
+		/* samples of successful calls*/
+		SUCCESS,
+		/* samples of failed calls*/
+		FAILURE,
+		/* self times*/
+		SELF
+	}
+
+	/* resolution of lastRecordedNanos, so it is not written on every call*/
+	private static final long RECORDED_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/* start time of calls that are not sampled*/
+	static final long UNSAMPLED = Long.MIN_VALUE;
+
+	/* exception types counted separately, others are counted as Throwable*/
+	private static final int MAX_EXCEPTION_TYPES = 32;
+
+	/* attribute name as created by the naming strategy*/
+	final String key;
+
+	/* settings the monitors of this key are created with*/
+	final MonitorSettings settings;
+
+	/* unit of latency values*/
+	private final String timeUnit;
+
+	/* monitor that samples of successful calls are added to. null until the first sample if monitors are added lazily.*/
+	volatile LatencyMonitor monitor;
+
+	/* 
+	 * empty monitor read until the first sample if monitors are added at startup, so the attributes are 
+	 * published before the monitor is allocated. Shared by the methods of a bean with the same settings.
+	 */
+	volatile LatencyMonitor placeholder;
+
+	/* monitor that samples of failed calls are added to. null until the first failure.*/
+	volatile LatencyMonitor failureMonitor;
+
+	/* monitor that self times of calls are added to. null until the first sample, or if the bean does not keep self time.*/
+	volatile LatencyMonitor selfMonitor;
+
+	/* edges to the methods called by this one, by called method. null until the first nested call.*/
+	private volatile ConcurrentHashMap<MonitoredMethod, CallEdge> edges;
+
+	/* calls by dimension value, null until the first call with a dimension. Added to by the proxy only.*/
+	volatile ConcurrentHashMap<String, Dimension> dimensions;
+
+	/* calls with dimension values beyond maxDimensions, null until the first one*/
+	volatile Dimension otherDimension;
+
+	/* breach state of the latency threshold, null if there is none or if its statistic is not kept by the monitor*/
+	volatile SloState slo;
+
+	/* decides which calls are timed, null if all of them are*/
+	private final Sampler sampler;
+
+	/* number and rate of calls, successful or not*/
+	final RateMeter calls = new RateMeter();
+
+	/* number of calls currently executing*/
+	final AtomicLong inFlight = new AtomicLong();
+
+	/* highest number of calls executing at the same time*/
+	final AtomicLong peakInFlight = new AtomicLong();
+
+	/* number of failed calls*/
+	final AtomicLong failures = new AtomicLong();
+
+	/* number of failures per exception type*/
+	private final ConcurrentHashMap<Class<?>, AtomicLong> exceptionCounts = new ConcurrentHashMap<Class<?>, AtomicLong>();
+
+	/* time after which the next failure may be logged*/
+	final AtomicLong nextFailureLogNanos = new AtomicLong(System.nanoTime());
+
+	/* failures not logged since the last one that was*/
+	final AtomicLong unloggedFailures = new AtomicLong();
+
+	/* time of the last call, kept for keys that may be evicted only*/
+	volatile long lastRecordedNanos = System.nanoTime();
+
+	/* number of keys evicted into this one and their calls, null unless this is the overflow key*/
+	private final AtomicLong evicted;
+	private final AtomicLong evictedCalls;
+
+	/**
+	 * @param aKey attribute name.
+	 * @param aSettings settings of the monitors and of sampling.
+	 */
+	MonitoredMethod(String aKey, MonitorSettings aSettings) {
+		this(aKey, aSettings, false);
+	}
+
+	/**
+	 * @param aOverflow true for the key evicted keys are added to.
+	 */
+	MonitoredMethod(String aKey, MonitorSettings aSettings, boolean aOverflow) {
+		key = aKey;
+		settings = aSettings;
+		evicted = aOverflow ? new AtomicLong() : null;
+		evictedCalls = aOverflow ? new AtomicLong() : null;
+		timeUnit = aSettings.units.toString();
+		sampler = aSettings.sampleRate <= 1 && aSettings.maxSamplesPerSecond <= 0 ? null : new Sampler(Math.max(aSettings.sampleRate, 1), aSettings.maxSamplesPerSecond);
+		slo = aSettings.sloThreshold <= 0 ? null : new SloState(
+				aSettings.sloStatistic.length() == 0 ? aKey : aKey + "." + aSettings.sloStatistic, aSettings.sloThreshold, aSettings.sloEvaluations);
+	}
+
+	/**
+	 * Counts a call that starts executing, and decides whether it is timed.
+	 * @return start time of the call, UNSAMPLED if the call is not timed.
+	 */
+	long enter() {
+		long start;
+		if (sampler == null || sampler.sample()) {
+			start = System.nanoTime();
+			calls.mark(start);
+			if (sampler != null) {
+				sampler.sampled(start);
+			}
+		}
+		else {
+			start = UNSAMPLED;
+			calls.mark();
+		}
+		long current = inFlight.incrementAndGet();
+		long peak = peakInFlight.get();
+		while (current > peak && !peakInFlight.compareAndSet(peak, current)) {
+			peak = peakInFlight.get();
+		}
+		return start;
+	}
+
+	/* Number of calls a sample taken now stands for*/
+	int getSampleWeight() {
+		return sampler == null ? 1 : sampler.getInterval();
+	}
+
+	/* Counts a call that finished executing*/
+	void exit() {
+		inFlight.decrementAndGet();
+	}
+
+	/* Notes that a call was recorded now, at most once per RECORDED_RESOLUTION_NANOS*/
+	void recorded() {
+		long now = System.nanoTime();
+		if (now - lastRecordedNanos >= RECORDED_RESOLUTION_NANOS) {
+			lastRecordedNanos = now;
+		}
+	}
+
+	/**
+	 * Returns the dimension with the given value, without allocating.
+	 * @return the dimension, null if no call had the value yet.
+	 */
+	Dimension getDimension(String aValue) {
+		ConcurrentHashMap<String, Dimension> known = dimensions;
+		return known == null ? null : known.get(aValue);
+	}
+
+	/* Adds a row for every dimension of this method*/
+	void collectDimensions(TabularDataSupport aTable) {
+		ConcurrentHashMap<String, Dimension> known = dimensions;
+		if (known != null) {
+			for (Dimension dimension : known.values()) {
+				dimension.collectRow(this, aTable);
+			}
+		}
+		Dimension other = otherDimension;
+		if (other != null && !aTable.containsKey(new Object[] {key, other.value})) {
+			other.collectRow(this, aTable);
+		}
+	}
+
+	/**
+	 * Returns the edge from this method to a method it called, adding it to the CallGraph on the first call.
+	 * The dropped edge of a full graph is kept as well, until the graph removes edges.
+	 * @param aChild called method.
+	 * @param aBean bean name of this method.
+	 * @param aChildBean bean name of the called method.
+	 * @return the edge, the dropped edge if the graph is full.
+	 */
+	CallEdge getEdge(MonitoredMethod aChild, String aBean, String aChildBean) {
+		ConcurrentHashMap<MonitoredMethod, CallEdge> children = edges;
+		if (children == null) {
+			synchronized (this) {
+				children = edges;
+				if (children == null) {
+					edges = children = new ConcurrentHashMap<MonitoredMethod, CallEdge>(4);
+				}
+			}
+		}
+		CallGraph graph = CallGraph.getInstance();
+		CallEdge edge = children.get(aChild);
+		if (edge == null || graph.isStale(edge)) {
+			synchronized (children) {
+				edge = children.get(aChild);
+				if (edge == null || graph.isStale(edge)) {
+					edge = graph.addEdge(this, aBean + "/" + key, aChild, aChildBean + "/" + aChild.key);
+					children.put(aChild, edge);
+				}
+			}
+		}
+		return edge;
+	}
+
+	/* Drops an edge removed from the CallGraph*/
+	void removeEdge(CallEdge aEdge) {
+		ConcurrentHashMap<MonitoredMethod, CallEdge> children = edges;
+		if (children != null) {
+			children.remove(aEdge.callee, aEdge);
+		}
+	}
+
+	/**
+	 * Adds the calls, failures and exception counts of an evicted key to this overflow key. Samples are
+	 * merged by the proxy, which creates the monitors. Calls still recording to the evicted key when it
+	 * is absorbed are lost.
+	 */
+	void absorb(MonitoredMethod aEvicted) {
+		evicted.incrementAndGet();
+		evictedCalls.addAndGet(aEvicted.calls.getCount());
+		failures.addAndGet(aEvicted.failures.get());
+		for (Entry<Class<?>, AtomicLong> entry : aEvicted.exceptionCounts.entrySet()) {
+			AtomicLong count = exceptionCounts.get(entry.getKey());
+			if (count == null) {
+				Class<?> type = exceptionCounts.size() < MAX_EXCEPTION_TYPES ? entry.getKey() : Throwable.class;
+				AtomicLong existing = exceptionCounts.putIfAbsent(type, count = new AtomicLong());
+				if (existing != null) {
+					count = existing;
+				}
+			}
+			count.addAndGet(entry.getValue().get());
+		}
+	}
+
+	/**
+	 * Counts a failure with the given exception type.
+	 * @return true if this is the first failure counted for the type.
+	 */
+	boolean countException(Class<?> aType) {
+		failures.incrementAndGet();
+		AtomicLong count = exceptionCounts.get(aType);
+		if (count == null) {
+			Class<?> type = exceptionCounts.size() < MAX_EXCEPTION_TYPES ? aType : Throwable.class;
+			AtomicLong existing = exceptionCounts.putIfAbsent(type, count = new AtomicLong());
+			if (existing != null) {
+				count = existing;
+			}
+			else {
+				count.incrementAndGet();
+				return true;
+			}
+		}
+		count.incrementAndGet();
+		return false;
+	}
+
+	/* Monitor in the given slot, null if it is not allocated yet*/
+	LatencyMonitor get(Slot aSlot) {
+		switch (aSlot) {
+		case FAILURE:
+			return failureMonitor;
+		case SELF:
+			return selfMonitor;
+		case SUCCESS:
+		default:
+			return monitor;
+		}
+	}
+
+	/* Sets the monitor of the given slot. Called by the proxy, holding the lock of this instance*/
+	void set(Slot aSlot, LatencyMonitor aMonitor) {
+		switch (aSlot) {
+		case FAILURE:
+			failureMonitor = aMonitor;
+			break;
+		case SELF:
+			selfMonitor = aMonitor;
+			break;
+		case SUCCESS:
+		default:
+			monitor = aMonitor;
+		}
+	}
+
+	/**
+	 * Adds values of all the attributes of this method. Every monitor is read once.
+	 * @param aValues values to add to.
+	 */
+	void collectValues(AttributeValues aValues) {
+		LatencyMonitor success = monitor;
+		if (success == null) {
+			success = placeholder;
+		}
+		if (success != null) {
+			success = read(success);
+			aValues.add(key, success.getAverage(), timeUnit);
+			collectStatistics(key, success, aValues);
+		}
+		LatencyMonitor failure = failureMonitor;
+		//unsampled failures are counted without a monitor
+		boolean failed = failure != null || !exceptionCounts.isEmpty();
+		if (success != null || failed || evicted != null) {
+			long invocations = calls.getCount() + (evictedCalls == null ? 0 : evictedCalls.get());
+			aValues.add(key + "." + INVOCATIONS, invocations, AttributeValues.CALLS);
+			aValues.add(key + "." + CALLS_PER_SECOND, calls.getRate(), AttributeValues.CALLS_PER_SECOND);
+			aValues.add(key + "." + IN_FLIGHT, inFlight.get(), AttributeValues.CALLS);
+			aValues.add(key + "." + PEAK_IN_FLIGHT, peakInFlight.get(), AttributeValues.CALLS);
+			if (sampler != null) {
+				aValues.add(key + "." + SAMPLE_INTERVAL, sampler.getInterval(), AttributeValues.CALLS);
+			}
+		}
+		LatencyMonitor self = selfMonitor;
+		if (self != null) {
+			self = read(self);
+			String selfKey = key + "." + SELF;
+			aValues.add(selfKey, self.getAverage(), timeUnit);
+			collectStatistics(selfKey, self, aValues);
+		}
+		if (evicted != null) {
+			aValues.add(key + "." + EVICTED, evicted.get(), AttributeValues.KEYS);
+		}
+		if (failure != null) {
+			failure = read(failure);
+			String failedKey = key + "." + FAILED;
+			aValues.add(failedKey, failure.getAverage(), timeUnit);
+			collectStatistics(failedKey, failure, aValues);
+		}
+		if (failed) {
+			String errors = key + "." + ERRORS;
+			aValues.add(errors, failures.get(), AttributeValues.CALLS);
+			for (Entry<Class<?>, AtomicLong> entry : exceptionCounts.entrySet()) {
+				aValues.add(errors + "." + entry.getKey().getName(), entry.getValue().get(), AttributeValues.CALLS);
+			}
+		}
+	}
+
+	/* 
+	 * Monitor to read the average and the statistics from. Striped monitors that keep statistics are merged once, 
+	 * so both are of the same moment, the others are read without merging.
+	 */
+	private static LatencyMonitor read(LatencyMonitor aMonitor) {
+		if (aMonitor instanceof StripedLatencyMonitor && ((StripedLatencyMonitor) aMonitor).getStatisticNames().length > 0) {
+			return ((StripedLatencyMonitor) aMonitor).read();
+		}
+		return aMonitor;
+	}
+
+	/* Adds statistics of the monitor, if it keeps any, read with a single call*/
+	private static void collectStatistics(String aPrefix, LatencyMonitor aMonitor, AttributeValues aValues) {
+		if (aMonitor instanceof LatencyStatistics) {
+			LatencyStatistics statistics = (LatencyStatistics) aMonitor;
+			String[] names = statistics.getStatisticNames();
+			long[] values = statistics.getStatistics();
+			for (int i=0; i<names.length; i++) {
+				TimeUnit unit = statistics.getStatisticUnit(i);
+				aValues.add(aPrefix + "." + names[i], values[i], unit == null ? AttributeValues.CALLS : unit.toString());
+			}
+		}
+	}
+}
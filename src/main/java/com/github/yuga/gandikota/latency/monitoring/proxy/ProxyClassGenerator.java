@@ -0,0 +1,419 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import com.github.yuga.gandikota.latency.monitoring.exception.LatencyMonitoringProxyException;
+
+/**
+ * Generates the proxy class of a bean for ProxyEngine.GENERATED. Every proxied method of the generated
+ * class is equivalent to:
+ * <pre>
+ * public long compute(long value) {
+ *     InvocationRecorder recorder = this.r3;
+ *     long start = recorder.start();
+ *     long result;
+ *     try {
+ *         result = this.t0.compute(value);
+ *     } catch (Throwable t) {
+ *         recorder.failed(start, t);
+ *         throw t;
+ *     }
+ *     recorder.succeeded(start);
+ *     return result;
+ * }
+ * </pre>
+ * The bean is called directly, with no argument array, no reflection and no exception wrapping, so
+ * the JIT can inline through the proxy. Methods whose return type may hold a CompletionStage call 
+ * <code>recorder.returned(start, result)</code> instead, which records the call when the stage completes.
+ * Methods without a recorder, excluded from monitoring, only call the bean.
+ *
+ * Types can be interfaces and at most one class. The class is extended, so it has to be public, not
+ * final and have a public or protected constructor without arguments, which is run once for the proxy.
+ * Its public methods are proxied, except final ones, which run on the proxy instance itself.
+ * All types have to be public, since the class is defined in a class loader of its own.
+ * <code>equals</code>, <code>hashCode</code> and <code>toString</code> are passed to the bean without
+ * being monitored, unless a class type declares them.
+ *
+ * @author Yuga Gandikota
+ */
+final class ProxyClassGenerator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProxyClassGenerator.class);
+
+	/* package generated classes are defined in*/
+	private static final String GENERATED_PACKAGE = "com.github.yuga.gandikota.latency.monitoring.proxy.generated.";
+
+	private static final String RECORDER = Type.getInternalName(InvocationRecorder.class);
+
+	private static final String OBJECT = Type.getInternalName(Object.class);
+
+	/* number of classes generated, to make names unique*/
+	private static final AtomicInteger GENERATED_COUNT = new AtomicInteger();
+
+	/* Object methods passed to the bean*/
+	private static final String[][] OBJECT_METHODS = {
+		{"equals", "(Ljava/lang/Object;)Z"},
+		{"hashCode", "()I"},
+		{"toString", "()Ljava/lang/String;"}};
+
+	/* types proxied*/
+	private final Class<?>[] types;
+
+	/* class extended, Object if all types are interfaces*/
+	private Class<?> superclass = Object.class;
+
+	/* methods proxied, in the order of their recorders, with the index of the type they are called on*/
+	private final List<Method> methods = new ArrayList<Method>();
+	private final List<Integer> methodTypes = new ArrayList<Integer>();
+
+	/**
+	 * Collects the methods to be proxied.
+	 * @param aTypes interfaces and at most one class to be proxied.
+	 * @throws LatencyMonitoringProxyException if one of the types can not be proxied.
+	 */
+	ProxyClassGenerator(Class<?>[] aTypes) throws LatencyMonitoringProxyException {
+		types = aTypes.clone();
+
+		Map<String, Method> signatures = new LinkedHashMap<String, Method>();
+		for (int i=0; i<types.length; i++) {
+			Class<?> type = types[i];
+			if (!Modifier.isPublic(type.getModifiers())) {
+				throw new LatencyMonitoringProxyException("generated proxies need public types, found:" + type.getName(), null);
+			}
+			if (!type.isInterface()) {
+				checkSuperclass(type);
+				superclass = type;
+			}
+			for (Method method : type.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()
+						|| method.getDeclaringClass() == Object.class) {
+					continue;
+				}
+				if (Modifier.isFinal(method.getModifiers())) {
+					LOGGER.warn("final method can not be monitored and runs on the proxy instance. method:{}", method);
+					continue;
+				}
+				String signature = method.getName() + Type.getMethodDescriptor(method);
+				if (!signatures.containsKey(signature)) {
+					signatures.put(signature, method);
+					methods.add(method);
+					methodTypes.add(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return methods proxied. Recorders passed to newInstance() are in the same order.
+	 */
+	List<Method> getMethods() {
+		return methods;
+	}
+
+	/**
+	 * @return type in which the method at the given index was found.
+	 */
+	Class<?> getType(int aIndex) {
+		return types[methodTypes.get(aIndex)];
+	}
+
+	/**
+	 * Generates the proxy class and creates its instance.
+	 * @param aTarget bean the proxy calls, instance of all types.
+	 * @param aRecorders recorders of the methods returned by getMethods(), in the same order. null for
+	 *        methods that are not monitored.
+	 * @return proxy of the bean.
+	 */
+	Object newInstance(Object aTarget, InvocationRecorder[] aRecorders) throws LatencyMonitoringProxyException {
+		for (Class<?> type : types) {
+			if (!type.isInstance(aTarget)) {
+				throw new LatencyMonitoringProxyException("bean:" + aTarget.getClass().getName() + " is not an instance of:" + type.getName(), null);
+			}
+		}
+
+		String name = GENERATED_PACKAGE + aTarget.getClass().getSimpleName() + "$$LatencyMonitored$$" + GENERATED_COUNT.incrementAndGet();
+		byte[] bytes = generate(name.replace('.', '/'), aRecorders);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Generated proxy class:{}, methods:{}, bytes:{}", name, methods.size(), bytes.length);
+		}
+		try {
+			Class<?> proxyClass = new GeneratedClassLoader(aTarget.getClass().getClassLoader()).define(name, bytes);
+			return proxyClass.getConstructor(Object.class, InvocationRecorder[].class).newInstance(aTarget, aRecorders);
+		}
+		catch (Exception e) {
+			throw new LatencyMonitoringProxyException("failed to create generated proxy of:" + aTarget.getClass().getName(), e);
+		}
+		catch (LinkageError e) {
+			throw new LatencyMonitoringProxyException("failed to create generated proxy of:" + aTarget.getClass().getName(), e);
+		}
+	}
+
+	/* Checks that the class can be extended from another package*/
+	private void checkSuperclass(Class<?> aType) throws LatencyMonitoringProxyException {
+		if (superclass != Object.class) {
+			throw new LatencyMonitoringProxyException("only one class can be proxied, found:" + superclass.getName() + " and " + aType.getName(), null);
+		}
+		if (Modifier.isFinal(aType.getModifiers())) {
+			throw new LatencyMonitoringProxyException("final class can not be proxied:" + aType.getName(), null);
+		}
+		try {
+			Constructor<?> constructor = aType.getDeclaredConstructor();
+			if (!Modifier.isPublic(constructor.getModifiers()) && !Modifier.isProtected(constructor.getModifiers())) {
+				throw new LatencyMonitoringProxyException("constructor without arguments has to be public or protected:" + aType.getName(), null);
+			}
+		}
+		catch (NoSuchMethodException e) {
+			throw new LatencyMonitoringProxyException("class without a constructor without arguments can not be proxied:" + aType.getName(), e);
+		}
+	}
+
+	/* Generates the class file*/
+	private byte[] generate(String aInternalName, InvocationRecorder[] aRecorders) {
+		String[] interfaces = new String[types.length - (superclass == Object.class ? 0 : 1)];
+		int next = 0;
+		for (Class<?> type : types) {
+			if (type.isInterface()) {
+				interfaces[next++] = Type.getInternalName(type);
+			}
+		}
+
+		//Java 5 class files do not need stack map frames, maxs are computed by the writer.
+		ClassWriter cw = new ClassWriter(true);
+		cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, aInternalName, null,
+				Type.getInternalName(superclass), interfaces);
+
+		cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "target", "Ljava/lang/Object;", null, null).visitEnd();
+		for (int i=0; i<types.length; i++) {
+			cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "t" + i, Type.getDescriptor(types[i]), null, null).visitEnd();
+		}
+		for (int i=0; i<methods.size(); i++) {
+			cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "r" + i, "L" + RECORDER + ";", null, null).visitEnd();
+		}
+
+		generateConstructor(cw, aInternalName);
+		for (int i=0; i<methods.size(); i++) {
+			if (aRecorders[i] != null) {
+				generateMethod(cw, aInternalName, i);
+			}
+			else {
+				generateUnmonitoredMethod(cw, aInternalName, i);
+			}
+		}
+		for (String[] objectMethod : OBJECT_METHODS) {
+			if (!isProxied(objectMethod[0], objectMethod[1])) {
+				generateObjectMethod(cw, aInternalName, objectMethod[0], objectMethod[1]);
+			}
+		}
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/* Constructor(Object target, InvocationRecorder[] recorders) that sets all fields*/
+	private void generateConstructor(ClassWriter cw, String aInternalName) {
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(Ljava/lang/Object;[L" + RECORDER + ";)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(superclass), "<init>", "()V");
+
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitFieldInsn(Opcodes.PUTFIELD, aInternalName, "target", "Ljava/lang/Object;");
+		for (int i=0; i<types.length; i++) {
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitVarInsn(Opcodes.ALOAD, 1);
+			mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(types[i]));
+			mv.visitFieldInsn(Opcodes.PUTFIELD, aInternalName, "t" + i, Type.getDescriptor(types[i]));
+		}
+		for (int i=0; i<methods.size(); i++) {
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitVarInsn(Opcodes.ALOAD, 2);
+			mv.visitLdcInsn(Integer.valueOf(i));
+			mv.visitInsn(Opcodes.AALOAD);
+			mv.visitFieldInsn(Opcodes.PUTFIELD, aInternalName, "r" + i, "L" + RECORDER + ";");
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/* Monitored method, see the class comment*/
+	private void generateMethod(ClassWriter cw, String aInternalName, int aIndex) {
+		Method method = methods.get(aIndex);
+		int typeIndex = methodTypes.get(aIndex);
+		Class<?> type = types[typeIndex];
+		String descriptor = Type.getMethodDescriptor(method);
+		Type[] arguments = Type.getArgumentTypes(method);
+		Type returnType = Type.getReturnType(method);
+
+		Class<?>[] exceptionTypes = method.getExceptionTypes();
+		String[] exceptions = new String[exceptionTypes.length];
+		for (int i=0; i<exceptionTypes.length; i++) {
+			exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+		}
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), descriptor, null, exceptions);
+		mv.visitCode();
+
+		//locals: this, arguments, recorder, start (2 slots), result or exception
+		int argumentSlots = 1;
+		for (Type argument : arguments) {
+			argumentSlots += argument.getSize();
+		}
+		int recorderSlot = argumentSlots;
+		int startSlot = recorderSlot + 1;
+		int resultSlot = startSlot + 2;
+
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, aInternalName, "r" + aIndex, "L" + RECORDER + ";");
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitVarInsn(Opcodes.ASTORE, recorderSlot);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER, "start", "()J");
+		mv.visitVarInsn(Opcodes.LSTORE, startSlot);
+
+		Label tryStart = new Label();
+		Label tryEnd = new Label();
+		Label handler = new Label();
+		mv.visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Throwable");
+
+		mv.visitLabel(tryStart);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, aInternalName, "t" + typeIndex, Type.getDescriptor(type));
+		int slot = 1;
+		for (Type argument : arguments) {
+			mv.visitVarInsn(argument.getOpcode(Opcodes.ILOAD), slot);
+			slot += argument.getSize();
+		}
+		mv.visitMethodInsn(type.isInterface() ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL,
+				Type.getInternalName(type), method.getName(), descriptor);
+		mv.visitLabel(tryEnd);
+
+		if (returnType.getSort() != Type.VOID) {
+			mv.visitVarInsn(returnType.getOpcode(Opcodes.ISTORE), resultSlot);
+		}
+		mv.visitVarInsn(Opcodes.ALOAD, recorderSlot);
+		mv.visitVarInsn(Opcodes.LLOAD, startSlot);
+		if (mayReturnStage(method.getReturnType())) {
+			mv.visitVarInsn(Opcodes.ALOAD, resultSlot);
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER, "returned", "(JLjava/lang/Object;)V");
+		}
+		else {
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER, "succeeded", "(J)V");
+		}
+		if (returnType.getSort() != Type.VOID) {
+			mv.visitVarInsn(returnType.getOpcode(Opcodes.ILOAD), resultSlot);
+		}
+		mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+		mv.visitLabel(handler);
+		mv.visitVarInsn(Opcodes.ASTORE, resultSlot);
+		mv.visitVarInsn(Opcodes.ALOAD, recorderSlot);
+		mv.visitVarInsn(Opcodes.LLOAD, startSlot);
+		mv.visitVarInsn(Opcodes.ALOAD, resultSlot);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER, "failed", "(JLjava/lang/Throwable;)V");
+		mv.visitVarInsn(Opcodes.ALOAD, resultSlot);
+		mv.visitInsn(Opcodes.ATHROW);
+
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/* Method passed to the bean without being monitored*/
+	private void generateUnmonitoredMethod(ClassWriter cw, String aInternalName, int aIndex) {
+		Method method = methods.get(aIndex);
+		int typeIndex = methodTypes.get(aIndex);
+		Class<?> type = types[typeIndex];
+		String descriptor = Type.getMethodDescriptor(method);
+
+		Class<?>[] exceptionTypes = method.getExceptionTypes();
+		String[] exceptions = new String[exceptionTypes.length];
+		for (int i=0; i<exceptionTypes.length; i++) {
+			exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+		}
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), descriptor, null, exceptions);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, aInternalName, "t" + typeIndex, Type.getDescriptor(type));
+		int slot = 1;
+		for (Type argument : Type.getArgumentTypes(method)) {
+			mv.visitVarInsn(argument.getOpcode(Opcodes.ILOAD), slot);
+			slot += argument.getSize();
+		}
+		mv.visitMethodInsn(type.isInterface() ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL,
+				Type.getInternalName(type), method.getName(), descriptor);
+		mv.visitInsn(Type.getReturnType(method).getOpcode(Opcodes.IRETURN));
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/* Object method passed to the bean without being monitored*/
+	private void generateObjectMethod(ClassWriter cw, String aInternalName, String aName, String aDescriptor) {
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, aName, aDescriptor, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, aInternalName, "target", "Ljava/lang/Object;");
+		int slot = 1;
+		for (Type argument : Type.getArgumentTypes(aDescriptor)) {
+			mv.visitVarInsn(argument.getOpcode(Opcodes.ILOAD), slot);
+			slot += argument.getSize();
+		}
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OBJECT, aName, aDescriptor);
+		mv.visitInsn(Type.getReturnType(aDescriptor).getOpcode(Opcodes.IRETURN));
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/* true if values of the return type can be CompletionStages: Object, Future, CompletableFuture...*/
+	private static boolean mayReturnStage(Class<?> aReturnType) {
+		return !aReturnType.isPrimitive() 
+				&& (CompletionStage.class.isAssignableFrom(aReturnType) || aReturnType.isAssignableFrom(CompletableFuture.class));
+	}
+
+	/* true if a method with the given name and descriptor is one of the monitored methods*/
+	private boolean isProxied(String aName, String aDescriptor) {
+		for (Method method : methods) {
+			if (method.getName().equals(aName) && Type.getMethodDescriptor(method).equals(aDescriptor)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Class loader of a generated class. Types proxied are loaded from the loader of the bean, classes
+	 * of this library from the loader of this library, in case the bean's loader does not see them.
+	 */
+	private static final class GeneratedClassLoader extends ClassLoader {
+
+		GeneratedClassLoader(ClassLoader aParent) {
+			super(aParent);
+		}
+
+		Class<?> define(String aName, byte[] aBytes) {
+			return defineClass(aName, aBytes, 0, aBytes.length, ProxyClassGenerator.class.getProtectionDomain());
+		}
+
+		@Override
+		protected Class<?> findClass(String aName) throws ClassNotFoundException {
+			return ProxyClassGenerator.class.getClassLoader().loadClass(aName);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+/**
+ * How the proxy of a bean is implemented.
+ * 
+ * @author Yuga Gandikota
+ * @see JMXLatencyMonitored#engine()
+ * @see LatencyMonitoredProxyFactory#setProxyEngine(ProxyEngine)
+ */
+public enum ProxyEngine {
+	
+	/* engine set on LatencyMonitoredProxyFactory, REFLECTIVE if none is set.*/
+	DEFAULT,
+	
+	/* java.lang.reflect.Proxy calling the bean with Method.invoke. Interfaces only.*/
+	REFLECTIVE,
+	
+	/* class generated for the bean that calls it directly. Interfaces and public, non final classes.*/
+	GENERATED
+}
@@ -0,0 +1,81 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.yuga.gandikota.latency.monitoring.exception.LatencyMonitoringProxyException;
+import com.github.yuga.gandikota.latency.monitoring.utils.SharedInstance;
+
+/**
+ * Instances of naming strategies, dimension extractors and monitor factories. Classes marked with 
+ * <code>SharedInstance</code>, which are stateless and thread safe, are created once and shared by all 
+ * proxies, so beans do not each look up and run a constructor reflectively. Other classes are created
+ * for every proxy, as they may keep state of their bean. Classes are loaded by name once.
+ *
+ * @author Yuga Gandikota
+ */
+final class SharedInstances {
+
+	private static final ConcurrentHashMap<Class<?>, Object> INSTANCES = new ConcurrentHashMap<Class<?>, Object>();
+
+	private static final ConcurrentHashMap<String, Class<?>> CLASSES = new ConcurrentHashMap<String, Class<?>>();
+
+	private SharedInstances() {
+	}
+
+	/**
+	 * Returns an instance of the given class, created with its public constructor without arguments. The
+	 * instance is created on first use and shared if the class is marked with SharedInstance, a new one otherwise.
+	 * @throws LatencyMonitoringProxyException if the class can not be instantiated or is not of the expected type.
+	 */
+	static <T> T get(Class<?> aClass, Class<T> aType) 
+	throws LatencyMonitoringProxyException {
+		if (!aClass.isAnnotationPresent(SharedInstance.class)) {
+			return cast(newInstance(aClass), aType);
+		}
+		Object instance = INSTANCES.get(aClass);
+		if (instance == null) {
+			instance = newInstance(aClass);
+			Object existing = INSTANCES.putIfAbsent(aClass, instance);
+			if (existing != null) {
+				instance = existing;
+			}
+		}
+		return cast(instance, aType);
+	}
+
+	private static Object newInstance(Class<?> aClass) 
+	throws LatencyMonitoringProxyException {
+		try {
+			return aClass.getConstructor().newInstance();
+		}
+		catch (Exception e) {
+			throw new LatencyMonitoringProxyException(e.getMessage(), e);
+		}
+	}
+
+	private static <T> T cast(Object aInstance, Class<T> aType) 
+	throws LatencyMonitoringProxyException {
+		if (!aType.isInstance(aInstance)) {
+			throw new LatencyMonitoringProxyException(aInstance.getClass().getName() + " is not a " + aType.getName(), null);
+		}
+		return aType.cast(aInstance);
+	}
+
+	/**
+	 * Returns an instance of the named class, see get(Class, Class).
+	 */
+	static <T> T get(String aClassName, Class<T> aType) 
+	throws LatencyMonitoringProxyException {
+		Class<?> type = CLASSES.get(aClassName);
+		if (type == null) {
+			try {
+				type = Class.forName(aClassName);
+			}
+			catch (ClassNotFoundException e) {
+				throw new LatencyMonitoringProxyException(e.getMessage(), e);
+			}
+			CLASSES.putIfAbsent(aClassName, type);
+		}
+		return get(type, aType);
+	}
+}
@@ -0,0 +1,67 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.yuga.gandikota.latency.monitoring.utils.MonitoringScheduler;
+
+/**
+ * Evaluates the latency thresholds of all proxies, every EVALUATION_INTERVAL_SECONDS, on the
+ * MonitoringScheduler thread. Proxies are registered when their first key with a threshold is created,
+ * and held weakly, so a proxy that is no longer used is dropped.
+ *
+ * @author Yuga Gandikota
+ */
+final class SloEvaluator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SloEvaluator.class);
+
+	/* interval between evaluations*/
+	static final long EVALUATION_INTERVAL_SECONDS = 5;
+
+	private static final CopyOnWriteArrayList<WeakReference<LatencyMonitoredProxy>> PROXIES = new CopyOnWriteArrayList<WeakReference<LatencyMonitoredProxy>>();
+
+	/* set when the evaluations are scheduled*/
+	private static boolean started;
+
+	private SloEvaluator() {
+	}
+
+	/* Adds a proxy to the evaluations, starting them with the first proxy*/
+	static synchronized void register(LatencyMonitoredProxy aProxy) {
+		if (!started) {
+			started = true;
+			MonitoringScheduler.get().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					evaluate();
+				}
+			}, EVALUATION_INTERVAL_SECONDS, EVALUATION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+		PROXIES.add(new WeakReference<LatencyMonitoredProxy>(aProxy));
+	}
+
+	/* Evaluates the thresholds of every proxy, dropping proxies that were collected*/
+	private static void evaluate() {
+		long now = System.nanoTime();
+		Iterator<WeakReference<LatencyMonitoredProxy>> iterator = PROXIES.iterator();
+		while (iterator.hasNext()) {
+			WeakReference<LatencyMonitoredProxy> reference = iterator.next();
+			LatencyMonitoredProxy proxy = reference.get();
+			if (proxy == null) {
+				PROXIES.remove(reference);
+				continue;
+			}
+			try {
+				proxy.evaluateThresholds(now);
+			}
+			catch (RuntimeException e) {
+				LOGGER.error("Could not evaluate latency thresholds", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breach state of the latency threshold of one attribute key, see JMXLatencyMonitored#sloThreshold().
+ * Only used by the thread of SloEvaluator.
+ *
+ * The value has to be above the threshold for <code>evaluations</code> evaluations in a row to breach,
+ * and below RECOVERY_FRACTION of the threshold for as many evaluations to recover, so a value close to
+ * the threshold does not flap. A change is reported at most once every MIN_NOTIFICATION_INTERVAL_NANOS,
+ * a change that comes sooner is reported when the interval has passed, if it still holds.
+ *
+ * @author Yuga Gandikota
+ */
+final class SloState {
+
+	/* a breach recovers below this fraction of the threshold*/
+	static final double RECOVERY_FRACTION = 0.9d;
+
+	/* least time between two notifications of the same key*/
+	static final long MIN_NOTIFICATION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	/* returned by evaluate()*/
+	static final int UNCHANGED = 0;
+	static final int BREACHED = 1;
+	static final int RECOVERED = 2;
+
+	/* name of the attribute compared with the threshold*/
+	final String attribute;
+
+	/* threshold and recovery level, in the units of the attribute*/
+	final long threshold;
+	final double recovery;
+
+	/* consecutive evaluations needed to change the state*/
+	private final int evaluations;
+
+	private boolean breached;
+
+	/* consecutive evaluations that disagreed with the state*/
+	private int disagreeing;
+
+	/* time of the last notification, valid if notified is set*/
+	private long lastNotificationNanos;
+	private boolean notified;
+
+	SloState(String aAttribute, long aThreshold, int aEvaluations) {
+		attribute = aAttribute;
+		threshold = aThreshold;
+		recovery = aThreshold * RECOVERY_FRACTION;
+		evaluations = Math.max(1, aEvaluations);
+	}
+
+	/**
+	 * Evaluates the current value of the attribute.
+	 * @return BREACHED or RECOVERED if the state changed and should be reported, UNCHANGED otherwise.
+	 */
+	int evaluate(double aValue, long aNowNanos) {
+		boolean disagrees = breached ? aValue < recovery : aValue > threshold;
+		disagreeing = disagrees ? disagreeing + 1 : 0;
+		if (disagreeing < evaluations) {
+			return UNCHANGED;
+		}
+		if (notified && aNowNanos - lastNotificationNanos < MIN_NOTIFICATION_INTERVAL_NANOS) {
+			//rate limited, evaluated again until the interval has passed
+			return UNCHANGED;
+		}
+		breached = !breached;
+		disagreeing = 0;
+		notified = true;
+		lastNotificationNanos = aNowNanos;
+		return breached ? BREACHED : RECOVERED;
+	}
+
+	boolean isBreached() {
+		return breached;
+	}
+}
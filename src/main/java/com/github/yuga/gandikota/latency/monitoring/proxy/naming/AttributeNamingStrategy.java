@@ -18,6 +18,9 @@ import java.lang.reflect.Method;
  *    <code>methodName(name.package.Param1, name.package.Param2)</code>
  * 
  * 
+ * Attribute names are resolved once per method, when the proxy is created (or on the first invocation 
+ * of methods not declared in the proxied interfaces), and not on every invocation.
+ * 
  * @author Yuga Gandikota
  * @see DefaultAttributeNamingStrategy
  */
@@ -2,6 +2,8 @@ package com.github.yuga.gandikota.latency.monitoring.proxy.naming;
 
 import java.lang.reflect.Method;
 
+import com.github.yuga.gandikota.latency.monitoring.utils.SharedInstance;
+
 /**
  * Default naming strategy implementation used. Naming convention used is one of the following:
  * 1) If only one interface is being proxy'd..
@@ -14,6 +16,7 @@ import java.lang.reflect.Method;
  * @author Yuga Gandikota
  */
 
+@SharedInstance
 public class DefaultAttributeNamingStrategy implements AttributeNamingStrategy {
 
 	public String getAttributeName(Object source, Class<?>[] allTypes, Class<?> type, Method method) {
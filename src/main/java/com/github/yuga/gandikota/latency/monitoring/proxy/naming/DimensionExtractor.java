@@ -0,0 +1,28 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy.naming;
+
+import java.lang.reflect.Method;
+
+/**
+ * Interface that you have to implement to break down the latency of methods by a property of each call,
+ * such as the tenant, the request type or the category of the first argument. Set it with
+ * <code>JMXLatencyMonitored.dimensionExtractorClass()</code>.
+ * 
+ * The extractor is run before every call, so it must be cheap and should not allocate: return constants,
+ * enum names or strings the arguments already hold rather than building a new string per call. Values
+ * must come from a small set, the proxy keeps at most <code>JMXLatencyMonitored.maxDimensions()</code>
+ * of them per method and records further values under <code>other</code>.
+ * 
+ * Dimensions are only supported by the REFLECTIVE proxy engine.
+ * 
+ * @author Yuga Gandikota
+ * @see FirstArgumentDimensionExtractor
+ */
+public interface DimensionExtractor {
+	/**
+	 * @param method method being called.
+	 * @param args arguments of the call, null if it has none. Must not be modified.
+	 * 
+	 * @return dimension value of the call, null if the call is not broken down.
+	 */
+	public String getDimension(Method method, Object[] args);
+}
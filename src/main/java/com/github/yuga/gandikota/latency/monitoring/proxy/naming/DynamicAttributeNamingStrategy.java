@@ -0,0 +1,17 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy.naming;
+
+/**
+ * Marks naming strategies whose attribute names depend on runtime state, such as the state of the 
+ * source bean or the current tenant. Unlike other strategies, which are run once per method, these are
+ * run on every invocation and the call is recorded under the name returned.
+ * 
+ * Since such names are not bounded by the number of methods, the proxy keeps at most
+ * <code>JMXLatencyMonitored.maxMonitors()</code> of them. When a new name would exceed it, the names
+ * recorded least recently are evicted and their counts added to the <code>other</code> attribute.
+ * 
+ * Dynamic strategies are only supported by the REFLECTIVE proxy engine.
+ * 
+ * @author Yuga Gandikota
+ */
+public interface DynamicAttributeNamingStrategy extends AttributeNamingStrategy {
+}
@@ -0,0 +1,32 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy.naming;
+
+import java.lang.reflect.Method;
+
+import com.github.yuga.gandikota.latency.monitoring.utils.SharedInstance;
+
+/**
+ * Breaks down calls by their first argument: the name of an enum, a String as is, or the class name 
+ * of any other value. None of these allocate. Calls without arguments or with a null first argument 
+ * are not broken down.
+ * 
+ * Suitable when the first argument is a request type or a tenant id from a small set.
+ * 
+ * @author Yuga Gandikota
+ */
+@SharedInstance
+public class FirstArgumentDimensionExtractor implements DimensionExtractor {
+
+	public String getDimension(Method method, Object[] args) {
+		if (args == null || args.length == 0 || args[0] == null) {
+			return null;
+		}
+		Object first = args[0];
+		if (first instanceof Enum) {
+			return ((Enum<?>) first).name();
+		}
+		if (first instanceof String) {
+			return (String) first;
+		}
+		return first.getClass().getName();
+	}
+}
@@ -2,6 +2,9 @@ package com.github.yuga.gandikota.latency.monitoring.proxy.naming;
 
 import java.lang.reflect.Method;
 
+import com.github.yuga.gandikota.latency.monitoring.utils.SharedInstance;
+
+@SharedInstance
 public class SimpleAttributeNamingStrategy implements AttributeNamingStrategy {
 
 	public String getAttributeName(Object source, Class<?>[] allTypes, Class<?> type, Method method) {
@@ -0,0 +1,91 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free circular buffer of primitive longs. Writers claim a slot with a single fetch-and-add
+ * on a 64 bit sequence and swap the new sample in, readers copy the slots without blocking writers.
+ * The sum of the samples in the buffer is updated with the difference between the new and the 
+ * evicted sample, so it can be read in O(1).
+ * 
+ * A snapshot is not an atomic copy of the buffer. Samples added while the snapshot is taken 
+ * may or may not be part of it.
+ * 
+ * @author Yuga Gandikota
+ */
+public class AtomicLongCircularBuffer implements LongCircularBuffer {
+	
+	/* backend structure for the circular buffer*/ 
+	private final AtomicLongArray buffer;
+	
+	/* sequence of the next element. 64 bits, so it does not wrap around in practice*/ 
+	private final AtomicLong sequence = new AtomicLong();
+	
+	/* sum of the samples currently in the buffer*/ 
+	private final AtomicLong sum = new AtomicLong();
+	
+	/**
+	 * Constructs a ring buffer with the given size.
+	 * 
+	 * @param bufferSize size of the circular buffer.
+	 */
+	public AtomicLongCircularBuffer(int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("buffer size has to be positive, found:"+bufferSize);
+		}
+		buffer = new AtomicLongArray(bufferSize);
+	}
+	
+	/* Adds a new element to the buffer, without boxing*/
+	public void add(long sample) {
+		long slot = sequence.getAndIncrement();
+		long evicted = buffer.getAndSet((int)(slot % buffer.length()), sample);
+		sum.addAndGet(sample - evicted);
+	}
+	
+	/* Adds a new element to the buffer. null samples are ignored*/
+	public void add(Long sample) {
+		if (sample != null) {
+			add(sample.longValue());
+		}
+	}
+	
+	/* Returns a snapshot copy of the samples recorded so far, at most size() elements*/
+	public long[] getLongSnapshot() {
+		long[] snapshot = new long[filled()];
+		for(int i=0; i<snapshot.length; i++) {
+			snapshot[i] = buffer.get(i);
+		}
+		return snapshot;
+	}
+	
+	/* Returns a snapshot copy of the samples recorded so far, at most size() elements*/
+	public Long[] getSnapshot() {
+		Long[] snapshot = new Long[filled()];
+		for(int i=0; i<snapshot.length; i++) {
+			snapshot[i] = buffer.get(i);
+		}
+		return snapshot;
+	}
+	
+	/* Total number of samples added to the buffer so far*/
+	public long getCount() {
+		return sequence.get();
+	}
+	
+	/* Sum of the samples currently in the buffer*/
+	public long getSum() {
+		return sum.get();
+	}
+	
+	/* Capacity of the buffer*/
+	public int size() {
+		return buffer.length();
+	}
+	
+	/* number of slots that have been written to at least once*/
+	private int filled() {
+		return (int) Math.min(sequence.get(), buffer.length());
+	}
+}
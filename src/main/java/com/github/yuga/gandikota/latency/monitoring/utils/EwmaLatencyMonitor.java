@@ -0,0 +1,143 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LatencyMonitor that keeps an exponentially weighted moving average of the samples, in constant memory
+ * regardless of the sample size. Every sample moves the average by <code>alpha</code> times its difference 
+ * to the current average, so recent samples weigh more and regressions show up quickly.
+ * 
+ * Optionally keeps a <code>ForwardDecayingReservoir</code> to report percentiles biased towards recent samples.
+ * 
+ * @author Yuga Gandikota
+ * @see EwmaLatencyMonitorFactory
+ */
+public class EwmaLatencyMonitor implements MergeableLatencyMonitor, WeightedLatencyMonitor, LatencyStatistics {
+	
+	private static final String[] STATISTIC_NAMES = {"count", "ewma"};
+	
+	private static final String[] RESERVOIR_STATISTIC_NAMES = {"count", "ewma", "p50", "p90", "p99", "p999"};
+	
+	private static final double[] PERCENTILES = {50.0d, 90.0d, 99.0d, 99.9d};
+	
+	/* raw bits of the average before the first sample*/
+	private static final long NO_SAMPLES = Double.doubleToRawLongBits(Double.NaN);
+	
+	/* weight of every new sample, between 0 and 1*/
+	private final double alpha;
+	
+	/* raw bits of the moving average, in nanoseconds*/
+	private final AtomicLong average = new AtomicLong(NO_SAMPLES);
+	
+	/* number of samples added*/
+	private final AtomicLong count = new AtomicLong();
+	
+	/* recent samples for percentiles, null if percentiles are not kept*/
+	private final ForwardDecayingReservoir reservoir;
+	
+	/*time units that this monitor is setup to use.*/
+	private final TimeUnit timeUnit;
+	
+	/**
+	 * @param aAlpha weight of every new sample, between 0 (exclusive) and 1.
+	 * @param aReservoirSize number of samples kept for percentiles, 0 to not keep percentiles.
+	 * @param aUnit time unit to use.
+	 */
+	public EwmaLatencyMonitor(double aAlpha, int aReservoirSize, TimeUnit aUnit) {
+		if (!(aAlpha > 0.0d && aAlpha <= 1.0d)) {
+			throw new IllegalArgumentException("alpha has to be in (0, 1], found:"+aAlpha);
+		}
+		alpha = aAlpha;
+		reservoir = aReservoirSize > 0 ? new ForwardDecayingReservoir(aReservoirSize, ForwardDecayingReservoir.DEFAULT_ALPHA) : null;
+		timeUnit = aUnit;
+	}
+
+	/**
+	 * Moves the average towards the sample. duration is expected to be in nanoseconds
+	 * @param duration duration is nanoseconds.
+	 */
+	public void addSample(long duration) {
+		addSample(duration, alpha, 1L);
+	}
+
+	/**
+	 * Moves the average towards the sample as much as <code>weight</code> samples of the same duration would.
+	 * @param duration duration is nanoseconds.
+	 * @param weight number of calls the sample stands for.
+	 */
+	public void addSample(long duration, long weight) {
+		addSample(duration, weight == 1L ? alpha : 1.0d - Math.pow(1.0d - alpha, weight), weight);
+	}
+
+	private void addSample(long duration, double weightedAlpha, long weight) {
+		long current;
+		double updated;
+		do {
+			current = average.get();
+			double value = Double.longBitsToDouble(current);
+			updated = Double.isNaN(value) ? duration : value + weightedAlpha * (duration - value);
+		} while (!average.compareAndSet(current, Double.doubleToRawLongBits(updated)));
+		count.addAndGet(weight);
+		
+		if (reservoir != null) {
+			reservoir.update(duration);
+		}
+	}
+
+	/**
+	 * Returns the moving average, converted to this instance's time unit.
+	 * 
+	 * @return moving average, converted to this instance's TimeUnit.
+	 */
+	public long getAverage() {
+		double value = Double.longBitsToDouble(average.get());
+		return Double.isNaN(value) ? 0L : timeUnit.convert(Math.round(value), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Combines the average of this monitor with the average of the given monitor, weighted by 
+	 * their number of samples.
+	 * @param target EwmaLatencyMonitor
+	 */
+	public void mergeInto(LatencyMonitor target) {
+		EwmaLatencyMonitor other = (EwmaLatencyMonitor) target;
+		long samples = count.get();
+		double value = Double.longBitsToDouble(average.get());
+		if (samples == 0 || Double.isNaN(value)) {
+			return;
+		}
+		synchronized (other) {
+			long otherSamples = other.count.get();
+			double otherValue = Double.longBitsToDouble(other.average.get());
+			double merged = (otherSamples == 0 || Double.isNaN(otherValue)) ? value 
+					: (otherValue * otherSamples + value * samples) / (otherSamples + samples);
+			other.average.set(Double.doubleToRawLongBits(merged));
+			other.count.addAndGet(samples);
+		}
+		if (reservoir != null && other.reservoir != null) {
+			reservoir.mergeInto(other.reservoir);
+		}
+	}
+
+	public String[] getStatisticNames() {
+		return reservoir == null ? STATISTIC_NAMES.clone() : RESERVOIR_STATISTIC_NAMES.clone();
+	}
+
+	public TimeUnit getStatisticUnit(int index) {
+		return index == 0 ? null : timeUnit;
+	}
+
+	public long[] getStatistics() {
+		long[] statistics = new long[reservoir == null ? STATISTIC_NAMES.length : RESERVOIR_STATISTIC_NAMES.length];
+		statistics[0] = count.get();
+		statistics[1] = getAverage();
+		if (reservoir != null) {
+			long[] percentiles = reservoir.getValuesAtPercentiles(PERCENTILES);
+			for (int i=0; i<percentiles.length; i++) {
+				statistics[2 + i] = timeUnit.convert(percentiles[i], TimeUnit.NANOSECONDS);
+			}
+		}
+		return statistics;
+	}
+}
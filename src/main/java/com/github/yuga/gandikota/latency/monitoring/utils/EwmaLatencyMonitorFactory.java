@@ -0,0 +1,45 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitorFactory that creates <code>EwmaLatencyMonitor</code> instances.
+ * 
+ * If alpha is not set, it is derived from the sample size as <code>2 / (sampleSize + 1)</code>, which gives
+ * the moving average the same center of mass as a running average of <code>sampleSize</code> samples.
+ * To configure a half-life of n samples instead, use <code>alpha = 1 - 2^(-1/n)</code>.
+ * 
+ * @author Yuga Gandikota
+ * @see LatencyMonitorFactory
+ */
+@SharedInstance
+public class EwmaLatencyMonitorFactory implements LatencyMonitorFactory {
+	
+	/* weight of every new sample, 0 or less to derive it from the sample size*/
+	private double alpha;
+	
+	/* number of samples kept for percentiles, 0 to not keep percentiles*/
+	private int reservoirSize;
+	
+	/**
+	 * Creates factory that derives alpha from the sample size and does not keep percentiles. 
+	 * Used when the factory is set using system property.
+	 */
+	public EwmaLatencyMonitorFactory() {
+		this(0.0d, 0);
+	}
+	
+	/**
+	 * @param aAlpha weight of every new sample, 0 or less to derive it from the sample size.
+	 * @param aReservoirSize number of samples kept for percentiles, 0 to not keep percentiles.
+	 */
+	public EwmaLatencyMonitorFactory(double aAlpha, int aReservoirSize) {
+		alpha = aAlpha;
+		reservoirSize = aReservoirSize;
+	}
+
+	public LatencyMonitor createLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
+		double sampleAlpha = alpha > 0.0d ? alpha : 2.0d / (Math.max(aSampleSize, 1) + 1);
+		return new EwmaLatencyMonitor(sampleAlpha, reservoirSize, aUnit);
+	}
+}
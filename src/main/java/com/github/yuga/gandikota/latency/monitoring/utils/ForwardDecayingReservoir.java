@@ -0,0 +1,234 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed size sample of values biased towards recent values, using forward decay priority sampling
+ * (Cormode et al., "Forward Decay: A Practical Time Decay Model for Streaming Systems").
+ * Every value gets the weight <code>exp(alpha * t)</code>, t being seconds since a landmark, and the
+ * priority <code>weight / u</code> for a random u. The values with the highest priorities are kept.
+ *
+ * Values whose priority is below the lowest one kept are rejected without taking the lock.
+ * Priorities are rescaled to a new landmark once an hour, so that weights do not overflow. Weights computed
+ * against a landmark that was moved before the value is added are rescaled to the new landmark under the lock.
+ *
+ * @author Yuga Gandikota
+ */
+public class ForwardDecayingReservoir {
+
+	/* Default decay rate, per second. About the last 5 minutes matter most.*/
+	public static final double DEFAULT_ALPHA = 0.015d;
+
+	private static final long RESCALE_THRESHOLD_NANOS = TimeUnit.HOURS.toNanos(1);
+
+	/* decay rate, per second*/
+	private final double alpha;
+
+	/* min heap on priorities, values and weights are kept at the same index*/
+	private final double[] priorities;
+	private final double[] weights;
+	private final long[] values;
+
+	/* number of values kept*/
+	private int size;
+
+	/* lowest priority kept once full, values below it are rejected without locking*/
+	private volatile double threshold = 0.0d;
+
+	/* time weights are relative to*/
+	private volatile long landmarkNanos;
+
+	/**
+	 * @param aSize number of values kept.
+	 * @param aAlpha decay rate, per second.
+	 */
+	public ForwardDecayingReservoir(int aSize, double aAlpha) {
+		if (aSize <= 0) {
+			throw new IllegalArgumentException("reservoir size has to be positive, found:"+aSize);
+		}
+		alpha = aAlpha;
+		priorities = new double[aSize];
+		weights = new double[aSize];
+		values = new long[aSize];
+		landmarkNanos = System.nanoTime();
+	}
+
+	/**
+	 * Offers value to the reservoir.
+	 * @param value value to add.
+	 */
+	public void update(long value) {
+		long now = System.nanoTime();
+		if (now - landmarkNanos > RESCALE_THRESHOLD_NANOS) {
+			rescale(now);
+		}
+		long landmark = landmarkNanos;
+		double weight = Math.exp(alpha * ((now - landmark) / 1e9d));
+		double priority = weight / (1.0d - ThreadLocalRandom.current().nextDouble());
+		if (priority > threshold) {
+			offer(value, weight, priority, landmark);
+		}
+	}
+
+	/**
+	 * Offers all values of this reservoir to the given reservoir, keeping their priorities.
+	 * @param target reservoir to add values to.
+	 */
+	public void mergeInto(ForwardDecayingReservoir target) {
+		double[] p;
+		double[] w;
+		long[] v;
+		long landmark;
+		synchronized (this) {
+			p = Arrays.copyOf(priorities, size);
+			w = Arrays.copyOf(weights, size);
+			v = Arrays.copyOf(values, size);
+			landmark = landmarkNanos;
+		}
+		for (int i=0; i<v.length; i++) {
+			target.offer(v[i], w[i], p[i], landmark);
+		}
+	}
+
+	/**
+	 * Returns values at the given percentiles, weighted by their decayed weights.
+	 *
+	 * @param percentiles percentiles between 0 and 100, in ascending order.
+	 * @return values at the given percentiles, 0s if the reservoir is empty.
+	 */
+	public long[] getValuesAtPercentiles(double[] percentiles) {
+		long[] result = new long[percentiles.length];
+		long[] v;
+		double[] w;
+		synchronized (this) {
+			v = Arrays.copyOf(values, size);
+			w = Arrays.copyOf(weights, size);
+		}
+		if (v.length == 0) {
+			return result;
+		}
+
+		Integer[] order = new Integer[v.length];
+		for (int i=0; i<order.length; i++) {
+			order[i] = i;
+		}
+		final long[] sortBy = v;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return sortBy[a] < sortBy[b] ? -1 : (sortBy[a] == sortBy[b] ? 0 : 1);
+			}
+		});
+
+		double total = 0.0d;
+		for (double weight : w) {
+			total += weight;
+		}
+
+		int next = 0;
+		double cumulative = 0.0d;
+		for (int i=0; i<order.length && next < percentiles.length; i++) {
+			cumulative += w[order[i]];
+			while (next < percentiles.length && cumulative >= (percentiles[next] / 100.0d) * total) {
+				result[next++] = v[order[i]];
+			}
+		}
+		while (next < percentiles.length) {
+			result[next++] = v[order[order.length - 1]];
+		}
+		return result;
+	}
+
+	/* 
+	 * Adds value if there is room or if its priority is higher than the lowest one kept. Weight and priority
+	 * are relative to the given landmark and are moved to the current one, which a rescale may have changed.
+	 */
+	private synchronized void offer(long value, double aWeight, double aPriority, long aLandmarkNanos) {
+		double weight = aWeight;
+		double priority = aPriority;
+		if (aLandmarkNanos != landmarkNanos) {
+			double factor = Math.exp(alpha * ((aLandmarkNanos - landmarkNanos) / 1e9d));
+			weight *= factor;
+			priority *= factor;
+		}
+		if (size < priorities.length) {
+			int i = size++;
+			priorities[i] = priority;
+			weights[i] = weight;
+			values[i] = value;
+			siftUp(i);
+			if (size == priorities.length) {
+				threshold = priorities[0];
+			}
+		}
+		else if (priority > priorities[0]) {
+			priorities[0] = priority;
+			weights[0] = weight;
+			values[0] = value;
+			siftDown(0);
+			threshold = priorities[0];
+		}
+	}
+
+	/* Moves the landmark to now, scaling down all weights and priorities*/
+	private synchronized void rescale(long now) {
+		if (now - landmarkNanos <= RESCALE_THRESHOLD_NANOS) {
+			return;
+		}
+		double factor = Math.exp(-alpha * ((now - landmarkNanos) / 1e9d));
+		for (int i=0; i<size; i++) {
+			priorities[i] *= factor;
+			weights[i] *= factor;
+		}
+		if (size == priorities.length) {
+			threshold = priorities[0];
+		}
+		landmarkNanos = now;
+	}
+
+	private void siftUp(int index) {
+		int i = index;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (priorities[parent] <= priorities[i]) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		int i = index;
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && priorities[left] < priorities[smallest]) {
+				smallest = left;
+			}
+			if (right < size && priorities[right] < priorities[smallest]) {
+				smallest = right;
+			}
+			if (smallest == i) {
+				return;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		double priority = priorities[a];
+		priorities[a] = priorities[b];
+		priorities[b] = priority;
+		double weight = weights[a];
+		weights[a] = weights[b];
+		weights[b] = weight;
+		long value = values[a];
+		values[a] = values[b];
+		values[b] = value;
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitor backed by a <code>LogLinearHistogram</code> of all samples recorded since it was created.
+ * In addition to the average, keeps track of count, min, max and the 50th, 90th, 99th and 99.9th percentiles. 
+ * 
+ * @author Yuga Gandikota
+ * @see HistogramLatencyMonitorFactory
+ */
+public class HistogramLatencyMonitor implements MergeableLatencyMonitor, WeightedLatencyMonitor, LatencyStatistics, SnapshotLatencyMonitor, SummedLatencyMonitor {
+	
+	private static final String[] STATISTIC_NAMES = {"count", "min", "max", "p50", "p90", "p99", "p999"};
+	
+	private static final double[] PERCENTILES = {50.0d, 90.0d, 99.0d, 99.9d};
+	
+	/*histogram of samples in nanoseconds*/
+	LogLinearHistogram histogram;
+	
+	/*time units that this monitor is setup to use.*/
+	TimeUnit timeUnit;
+	
+	/**
+	 * Constructor that instantiates an instance with histogram range, precision and time units to use.
+	 * 
+	 * @param aHighestTrackableNanos largest sample, in nanoseconds, tracked with the configured precision.
+	 * @param aSignificantDigits number of significant decimal digits samples are kept with.
+	 * @param aUnit
+	 */
+	public HistogramLatencyMonitor(long aHighestTrackableNanos, int aSignificantDigits, TimeUnit aUnit) {
+		histogram = new LogLinearHistogram(aHighestTrackableNanos, aSignificantDigits);
+		timeUnit = aUnit;
+	}
+
+	/**
+	 * Adds sample to the histogram. duration is expected to be in nanoseconds
+	 * @param duration duration is nanoseconds.
+	 */
+	public void addSample(long duration) {
+		histogram.recordValue(duration);
+	}
+
+	/**
+	 * Adds sample that stands for the given number of calls. duration is expected to be in nanoseconds
+	 * @param duration duration is nanoseconds.
+	 * @param weight number of calls the sample stands for.
+	 */
+	public void addSample(long duration, long weight) {
+		histogram.recordValue(duration, weight);
+	}
+
+	/**
+	 * Returns average of all the samples recorded, converted to this instance's time unit
+	 * 
+	 * @return average of samples, converted to this instance's TimeUnit.
+	 */
+	public long getAverage() {
+		return timeUnit.convert(histogram.getMean(), TimeUnit.NANOSECONDS);
+	}
+
+	/* Sum of all the samples recorded*/
+	public long getSampleSum() {
+		return histogram.getSum();
+	}
+
+	/* Number of calls recorded, weights included*/
+	public long getSampleCount() {
+		return histogram.getTotalCount();
+	}
+
+	/**
+	 * Adds all samples of this histogram to the given monitor.
+	 * @param target HistogramLatencyMonitor with the same range and precision.
+	 */
+	public void mergeInto(LatencyMonitor target) {
+		((HistogramLatencyMonitor) target).histogram.add(histogram);
+	}
+
+	/**
+	 * Returns a copy of the histogram, made in one pass over its buckets.
+	 * @return distribution of all the samples recorded.
+	 */
+	public LatencySnapshot getSnapshot() {
+		return LatencySnapshot.of(histogram);
+	}
+
+	public String[] getStatisticNames() {
+		return STATISTIC_NAMES.clone();
+	}
+	
+	public TimeUnit getStatisticUnit(int index) {
+		return index == 0 ? null : timeUnit;
+	}
+
+	public long[] getStatistics() {
+		long[] percentiles = histogram.getValuesAtPercentiles(PERCENTILES);
+		long[] statistics = new long[STATISTIC_NAMES.length];
+		statistics[0] = histogram.getTotalCount();
+		statistics[1] = timeUnit.convert(histogram.getMin(), TimeUnit.NANOSECONDS);
+		statistics[2] = timeUnit.convert(histogram.getMax(), TimeUnit.NANOSECONDS);
+		for (int i=0; i<percentiles.length; i++) {
+			statistics[3 + i] = timeUnit.convert(percentiles[i], TimeUnit.NANOSECONDS);
+		}
+		return statistics;
+	}
+}
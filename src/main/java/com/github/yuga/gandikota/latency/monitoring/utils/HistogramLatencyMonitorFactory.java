@@ -0,0 +1,44 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitorFactory that creates <code>HistogramLatencyMonitor</code> instances. 
+ * Sample size is not used, histograms keep all the samples in fixed memory.
+ * 
+ * @author Yuga Gandikota
+ * @see LatencyMonitorFactory
+ */
+@SharedInstance
+public class HistogramLatencyMonitorFactory implements LatencyMonitorFactory {
+	
+	/* Default range of the histograms: one minute*/
+	public static final long DEFAULT_HIGHEST_TRACKABLE_NANOS = 60000000000L;
+	
+	/* Default precision of the histograms: 2 significant decimal digits*/
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+	
+	private long highestTrackableNanos;
+	
+	private int significantDigits;
+	
+	/**
+	 * Creates factory with default range and precision. Used when the factory is set using system property.
+	 */
+	public HistogramLatencyMonitorFactory() {
+		this(DEFAULT_HIGHEST_TRACKABLE_NANOS, DEFAULT_SIGNIFICANT_DIGITS);
+	}
+	
+	/**
+	 * @param aHighestTrackableNanos largest sample, in nanoseconds, tracked with the configured precision.
+	 * @param aSignificantDigits number of significant decimal digits samples are kept with, between 0 and 5.
+	 */
+	public HistogramLatencyMonitorFactory(long aHighestTrackableNanos, int aSignificantDigits) {
+		highestTrackableNanos = aHighestTrackableNanos;
+		significantDigits = aSignificantDigits;
+	}
+
+	public LatencyMonitor createLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
+		return new HistogramLatencyMonitor(highestTrackableNanos, significantDigits, aUnit);
+	}
+}
@@ -0,0 +1,222 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Distribution of latencies in nanoseconds, as the buckets of a <code>LogLinearHistogram</code> with their
+ * count, sum, min and max. Snapshots with the same range and precision can be merged exactly, so 
+ * percentiles of a fleet are computed from the merged buckets of every node rather than from per node 
+ * percentiles. Serializing, reading and merging are linear in the number of buckets.
+ * 
+ * The binary form, version 1, is big-endian:
+ * <pre>
+ * int     magic 0x4C4D4453 ("LMDS")
+ * byte    version
+ * varlong highest trackable value
+ * byte    significant digits
+ * varlong count, sum, min, max
+ * varint  number of non empty buckets, followed for each by
+ * varint  index less the index of the previous non empty bucket
+ * varlong count of the bucket
+ * </pre>
+ * varlongs are unsigned LEB128, 7 bits per byte, least significant first. Readers reject other versions.
+ * 
+ * @author Yuga Gandikota
+ * @see SnapshotLatencyMonitor
+ */
+public final class LatencySnapshot {
+	
+	/* first bytes of every serialized snapshot*/
+	public static final int MAGIC = 0x4C4D4453;
+	
+	/* version of the binary form written*/
+	public static final byte VERSION = 1;
+	
+	/* distribution kept, also when merged*/
+	private final LogLinearHistogram histogram;
+	
+	private LatencySnapshot(LogLinearHistogram aHistogram) {
+		histogram = aHistogram;
+	}
+	
+	/**
+	 * Copies the current state of the histogram. Values recorded while it is copied may be missing.
+	 * @param aHistogram histogram of nanoseconds.
+	 */
+	public static LatencySnapshot of(LogLinearHistogram aHistogram) {
+		LogLinearHistogram copy = aHistogram.newEmptyCopy();
+		copy.add(aHistogram);
+		return new LatencySnapshot(copy);
+	}
+	
+	/**
+	 * Creates snapshot of the given samples, with the default range and precision of HistogramLatencyMonitor,
+	 * for monitors that keep their samples rather than a histogram.
+	 * @param aSamples samples in nanoseconds.
+	 */
+	public static LatencySnapshot ofSamples(long[] aSamples) {
+		LogLinearHistogram histogram = new LogLinearHistogram(HistogramLatencyMonitorFactory.DEFAULT_HIGHEST_TRACKABLE_NANOS, 
+				HistogramLatencyMonitorFactory.DEFAULT_SIGNIFICANT_DIGITS);
+		for (long sample : aSamples) {
+			histogram.recordValue(sample);
+		}
+		return new LatencySnapshot(histogram);
+	}
+	
+	/**
+	 * Adds the buckets of another snapshot to this one.
+	 * @param aOther snapshot with the same range and precision.
+	 * @throws IllegalArgumentException if the snapshots have different ranges or precisions.
+	 */
+	public void merge(LatencySnapshot aOther) {
+		if (aOther.histogram.getHighestTrackableValue() != histogram.getHighestTrackableValue() 
+				|| aOther.histogram.getSignificantDigits() != histogram.getSignificantDigits()) {
+			throw new IllegalArgumentException("snapshots have different layouts, range:" + histogram.getHighestTrackableValue() 
+					+ "/" + aOther.histogram.getHighestTrackableValue() + ", digits:" + histogram.getSignificantDigits() + "/" + aOther.histogram.getSignificantDigits());
+		}
+		histogram.add(aOther.histogram);
+	}
+	
+	/**
+	 * @return snapshot in its binary form.
+	 */
+	public byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			writeVarLong(out, histogram.getHighestTrackableValue());
+			out.writeByte(histogram.getSignificantDigits());
+			writeVarLong(out, histogram.getTotalCount());
+			writeVarLong(out, histogram.getSum());
+			writeVarLong(out, histogram.getMin());
+			writeVarLong(out, histogram.getMax());
+			int length = histogram.getCountsLength();
+			int buckets = 0;
+			for (int i=0; i<length; i++) {
+				if (histogram.getCountAt(i) != 0) {
+					buckets++;
+				}
+			}
+			writeVarLong(out, buckets);
+			int previous = 0;
+			for (int i=0; i<length && buckets > 0; i++) {
+				long count = histogram.getCountAt(i);
+				if (count != 0) {
+					writeVarLong(out, i - previous);
+					writeVarLong(out, count);
+					previous = i;
+					buckets--;
+				}
+			}
+			out.flush();
+		}
+		catch (IOException e) {
+			//not thrown by ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Reads a snapshot from its binary form.
+	 * @throws IllegalArgumentException if the bytes are not a snapshot of a known version.
+	 */
+	public static LatencySnapshot fromByteArray(byte[] aBytes) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(aBytes));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IllegalArgumentException("not a latency snapshot");
+			}
+			byte version = in.readByte();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("unsupported snapshot version:" + version);
+			}
+			long highest = readVarLong(in);
+			int digits = in.readByte();
+			LogLinearHistogram histogram = new LogLinearHistogram(highest, digits);
+			long count = readVarLong(in);
+			long sum = readVarLong(in);
+			long min = readVarLong(in);
+			long max = readVarLong(in);
+			long buckets = readVarLong(in);
+			int index = 0;
+			for (long i=0; i<buckets; i++) {
+				index += (int) readVarLong(in);
+				if (index < 0 || index >= histogram.getCountsLength()) {
+					throw new IllegalArgumentException("bucket index out of range:" + index);
+				}
+				histogram.addCountAt(index, readVarLong(in));
+			}
+			histogram.addTotals(count, sum, min, max);
+			return new LatencySnapshot(histogram);
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException("truncated latency snapshot", e);
+		}
+	}
+	
+	/* Number of values recorded*/
+	public long getCount() {
+		return histogram.getTotalCount();
+	}
+	
+	/* Smallest value recorded, 0 if nothing was recorded*/
+	public long getMin() {
+		return histogram.getMin();
+	}
+	
+	/* Largest value recorded, 0 if nothing was recorded*/
+	public long getMax() {
+		return histogram.getMax();
+	}
+	
+	/* Mean of the values recorded, 0 if nothing was recorded*/
+	public long getMean() {
+		return histogram.getMean();
+	}
+	
+	/**
+	 * @param aPercentiles percentiles between 0 and 100, in ascending order.
+	 * @return the values at the given percentiles, in the same order.
+	 */
+	public long[] getValuesAtPercentiles(double[] aPercentiles) {
+		return histogram.getValuesAtPercentiles(aPercentiles);
+	}
+	
+	public long getHighestTrackableValue() {
+		return histogram.getHighestTrackableValue();
+	}
+	
+	public int getSignificantDigits() {
+		return histogram.getSignificantDigits();
+	}
+	
+	private static void writeVarLong(DataOutput aOut, long aValue) throws IOException {
+		long value = aValue;
+		while ((value & ~0x7FL) != 0) {
+			aOut.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		aOut.writeByte((int) value);
+	}
+	
+	private static long readVarLong(DataInput aIn) throws IOException {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = aIn.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varlong");
+	}
+}
@@ -0,0 +1,38 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional interface for LatencyMonitor implementations that keep track of more than the average.
+ * Every statistic is exposed by the proxy as an additional attribute, named after the method's 
+ * attribute and the name of the statistic.
+ * 
+ * @author Yuga Gandikota
+ * @see HistogramLatencyMonitor
+ */
+public interface LatencyStatistics {
+
+	/**
+	 * Returns names of the statistics kept by this monitor. Names are fixed for an instance and
+	 * must not contain '.'.
+	 * 
+	 * @return names of statistics, in the same order as values returned by <code>getStatistics()</code>
+	 */
+	public String[] getStatisticNames();
+	
+	/**
+	 * Returns unit of the statistic at the given index.
+	 * 
+	 * @param index index of the statistic in <code>getStatisticNames()</code>
+	 * @return time unit of the value, or null if the statistic is not a duration (like counts).
+	 */
+	public TimeUnit getStatisticUnit(int index);
+	
+	/**
+	 * Returns current values of all statistics, computed together. Durations are converted
+	 * to this instance's time unit.
+	 * 
+	 * @return values of statistics, in the same order as names returned by <code>getStatisticNames()</code>
+	 */
+	public long[] getStatistics();
+}
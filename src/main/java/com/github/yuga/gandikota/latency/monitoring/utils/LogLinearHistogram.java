@@ -0,0 +1,283 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory, log-linear histogram of long values, laid out the same way as HdrHistogram.
+ * Values are grouped in buckets whose width doubles from one bucket to the next, every bucket is
+ * split into linear sub buckets so that every recorded value is kept with the configured number
+ * of significant decimal digits.
+ *
+ * Recording is O(1), lock free and does not allocate. Values below 0 are recorded as 0 and values
+ * above the highest trackable value are recorded as the highest trackable value, also in min, max and
+ * the sum. Within the range, min and max are kept exactly.
+ *
+ * Memory used is roughly <code>(log2(highestTrackableValue / (2 * 10^significantDigits)) + 2) * 10^significantDigits * 8</code> bytes,
+ * i.e. about 30KB for one minute in nanoseconds with 2 significant digits.
+ *
+ * @author Yuga Gandikota
+ */
+public class LogLinearHistogram {
+
+	/* largest value that can be recorded*/
+	private final long highestTrackableValue;
+
+	/* number of significant decimal digits values are kept with*/
+	private final int significantDigits;
+
+	/* log2 of half the number of linear sub buckets per bucket*/
+	private final int subBucketHalfCountMagnitude;
+
+	private final int subBucketHalfCount;
+
+	private final long subBucketMask;
+
+	private final int leadingZeroCountBase;
+
+	/* number of buckets needed to cover highestTrackableValue*/
+	private final int bucketCount;
+
+	/* count per sub bucket*/
+	private final AtomicLongArray counts;
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong totalSum = new AtomicLong();
+
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Constructs an empty histogram.
+	 *
+	 * @param aHighestTrackableValue largest value to be tracked with the configured precision, has to be 2 or more.
+	 * @param aSignificantDigits number of significant decimal digits to keep, between 0 and 5.
+	 */
+	public LogLinearHistogram(long aHighestTrackableValue, int aSignificantDigits) {
+		if (aSignificantDigits < 0 || aSignificantDigits > 5) {
+			throw new IllegalArgumentException("significant digits has to be between 0 and 5, found:"+aSignificantDigits);
+		}
+		if (aHighestTrackableValue < 2) {
+			throw new IllegalArgumentException("highest trackable value has to be 2 or more, found:"+aHighestTrackableValue);
+		}
+		highestTrackableValue = aHighestTrackableValue;
+		significantDigits = aSignificantDigits;
+
+		long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, aSignificantDigits);
+		int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+		subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+		int subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+		subBucketHalfCount = subBucketCount / 2;
+		subBucketMask = subBucketCount - 1;
+		leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+		int buckets = 1;
+		long smallestUntrackableValue = subBucketCount;
+		while (smallestUntrackableValue <= aHighestTrackableValue) {
+			if (smallestUntrackableValue > (Long.MAX_VALUE / 2)) {
+				buckets++;
+				break;
+			}
+			smallestUntrackableValue <<= 1;
+			buckets++;
+		}
+		bucketCount = buckets;
+		counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+	}
+
+	/**
+	 * Records a single occurrence of the given value.
+	 * @param value value to record
+	 */
+	public void recordValue(long value) {
+		recordValue(value, 1L);
+	}
+
+	/**
+	 * Records <code>count</code> occurrences of the given value.
+	 * @param value value to record
+	 * @param count number of occurrences
+	 */
+	public void recordValue(long value, long count) {
+		long clamped = value < 0 ? 0 : Math.min(value, highestTrackableValue);
+		counts.addAndGet(countsIndex(clamped), count);
+		totalCount.addAndGet(count);
+		totalSum.addAndGet(clamped * count);
+		updateMin(clamped);
+		updateMax(clamped);
+	}
+
+	/**
+	 * Adds all the values recorded in the given histogram to this one.
+	 *
+	 * @param other histogram with the same highest trackable value and significant digits.
+	 */
+	public void add(LogLinearHistogram other) {
+		if (other.counts.length() != counts.length()) {
+			throw new IllegalArgumentException("histograms have different layouts");
+		}
+		long otherCount = 0L;
+		for (int i=0; i<counts.length(); i++) {
+			long count = other.counts.get(i);
+			if (count != 0) {
+				counts.addAndGet(i, count);
+				otherCount += count;
+			}
+		}
+		if (otherCount > 0) {
+			totalCount.addAndGet(otherCount);
+			totalSum.addAndGet(other.totalSum.get());
+			updateMin(other.min.get());
+			updateMax(other.max.get());
+		}
+	}
+
+	/* Number of sub buckets, see LatencySnapshot*/
+	int getCountsLength() {
+		return counts.length();
+	}
+
+	/* Count of the sub bucket at the given index*/
+	long getCountAt(int index) {
+		return counts.get(index);
+	}
+
+	/* Adds to the count of a sub bucket without updating the totals, see addTotals()*/
+	void addCountAt(int index, long count) {
+		counts.addAndGet(index, count);
+	}
+
+	/* Adds totals of values whose counts were added with addCountAt()*/
+	void addTotals(long count, long sum, long minValue, long maxValue) {
+		if (count > 0) {
+			totalCount.addAndGet(count);
+			totalSum.addAndGet(sum);
+			updateMin(minValue);
+			updateMax(maxValue);
+		}
+	}
+
+	/* Returns a new, empty histogram with the same layout as this one*/
+	public LogLinearHistogram newEmptyCopy() {
+		return new LogLinearHistogram(highestTrackableValue, significantDigits);
+	}
+
+	/* Number of values recorded*/
+	public long getTotalCount() {
+		return totalCount.get();
+	}
+
+	/* Sum of all the values recorded*/
+	public long getSum() {
+		return totalSum.get();
+	}
+
+	/* Smallest value recorded, 0 if nothing was recorded*/
+	public long getMin() {
+		long value = min.get();
+		return value == Long.MAX_VALUE ? 0L : value;
+	}
+
+	/* Largest value recorded, 0 if nothing was recorded*/
+	public long getMax() {
+		return max.get();
+	}
+
+	/* Mean of the values recorded, 0 if nothing was recorded*/
+	public long getMean() {
+		long count = totalCount.get();
+		return count == 0 ? 0L : totalSum.get() / count;
+	}
+
+	public long getHighestTrackableValue() {
+		return highestTrackableValue;
+	}
+
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	/**
+	 * Returns the value at the given percentile.
+	 *
+	 * @param percentile percentile between 0 and 100
+	 * @return the largest value that is equivalent to the value at the percentile, 0 if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		return getValuesAtPercentiles(new double[] {percentile})[0];
+	}
+
+	/**
+	 * Returns the values at all the given percentiles, computed in a single pass over the buckets.
+	 *
+	 * @param percentiles percentiles between 0 and 100, in ascending order.
+	 * @return the values at the given percentiles, in the same order.
+	 */
+	public long[] getValuesAtPercentiles(double[] percentiles) {
+		long[] values = new long[percentiles.length];
+
+		long total = 0L;
+		for (int i=0; i<counts.length(); i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return values;
+		}
+
+		long highest = getMax();
+		int next = 0;
+		long cumulative = 0L;
+		for (int i=0; i<counts.length() && next < percentiles.length; i++) {
+			cumulative += counts.get(i);
+			while (next < percentiles.length && cumulative >= countAtPercentile(percentiles[next], total)) {
+				values[next++] = Math.min(highestEquivalentValue(i), highest);
+			}
+		}
+		//counts were reset or values were recorded while iterating.
+		while (next < percentiles.length) {
+			values[next++] = highest;
+		}
+		return values;
+	}
+
+	/* number of values that are at or below the given percentile*/
+	private static long countAtPercentile(double percentile, long total) {
+		double clamped = Math.max(0.0d, Math.min(100.0d, percentile));
+		return Math.max(1L, (long)((clamped / 100.0d) * total + 0.5d));
+	}
+
+	/* index of the sub bucket the value goes into */
+	private int countsIndex(long value) {
+		int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		int subBucketIndex = (int)(value >>> bucketIndex);
+		return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+	}
+
+	/* largest value that falls in the sub bucket at the given index*/
+	private long highestEquivalentValue(int index) {
+		int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		long lowest = ((long) subBucketIndex) << bucketIndex;
+		return lowest + (1L << bucketIndex) - 1;
+	}
+
+	private void updateMin(long value) {
+		long current = min.get();
+		while (value < current && !min.compareAndSet(current, value)) {
+			current = min.get();
+		}
+	}
+
+	private void updateMax(long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+}
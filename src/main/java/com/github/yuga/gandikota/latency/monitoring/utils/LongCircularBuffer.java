@@ -0,0 +1,26 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+/**
+ * Circular buffer specialized for primitive long samples. Samples can be added and read
+ * without boxing them into <code>Long</code> instances.
+ * 
+ * @author Yuga Gandikota
+ * @see AtomicLongCircularBuffer
+ */
+public interface LongCircularBuffer extends CircularBuffer<Long> {
+	
+	/* Adds a new element to the buffer, without boxing*/
+	public void add(long sample);
+	
+	/* Returns a snapshot copy of the samples recorded so far, at most size() elements*/
+	public long[] getLongSnapshot();
+	
+	/* Total number of samples added to the buffer so far*/
+	public long getCount();
+	
+	/* Sum of the samples currently in the buffer, kept up to date as samples are added and evicted*/
+	public long getSum();
+	
+	/* Capacity of the buffer*/
+	public int size();
+}
@@ -0,0 +1,18 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+/**
+ * Optional interface for LatencyMonitor implementations whose samples can be combined with the samples
+ * of other instances. Required by <code>StripedLatencyMonitor</code>, which merges its stripes when read.
+ * 
+ * @author Yuga Gandikota
+ * @see StripedLatencyMonitor
+ */
+public interface MergeableLatencyMonitor extends LatencyMonitor {
+	
+	/**
+	 * Adds the samples kept by this monitor to the given monitor. 
+	 * 
+	 * @param target monitor created by the same factory as this monitor. 
+	 */
+	public void mergeInto(LatencyMonitor target);
+}
@@ -0,0 +1,40 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Single daemon thread shared by all monitored beans for work that must not run on the calling thread,
+ * such as sending notifications. The thread is started when the scheduler is first used.
+ *
+ * Tasks run one after the other and must be short. Tasks that throw are not rescheduled.
+ *
+ * @author Yuga Gandikota
+ */
+public final class MonitoringScheduler {
+
+	/* name of the scheduler thread*/
+	public static final String THREAD_NAME = "latency-monitoring-scheduler";
+
+	private MonitoringScheduler() {
+	}
+
+	/**
+	 * @return scheduler shared by all monitored beans.
+	 */
+	public static ScheduledExecutorService get() {
+		return Holder.SCHEDULER;
+	}
+
+	/* Creates the scheduler on first use only*/
+	private static final class Holder {
+		static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable aTask) {
+				Thread thread = new Thread(aTask, THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
@@ -0,0 +1,138 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitor that keeps the last sampleSize samples in a region of an <code>OffHeapSlab</code>,
+ * like SimpleLatencyMonitor does on the heap. Writers claim a slot with a single fetch-and-add on the
+ * count of the region, write the sample to it and add the difference to the sample it replaced to the
+ * running sum of the region, so the average is read in O(1).
+ * 
+ * Slots are written and read without ordering, a read may miss samples added while it runs. Unlike
+ * AtomicLongCircularBuffer, a slot is not swapped atomically: a writer that is preempted between reading
+ * and writing its slot while sampleSize other samples are added races with the writer of the next lap,
+ * and the running sum stays off by the sample that was lost from then on.
+ * 
+ * The region is given back to the slab with <code>release()</code>, when the proxy drops the monitor.
+ * Writers enter the region before they check that the monitor is not released, so the region is not
+ * reused while one of them still writes to it.
+ * 
+ * @author Yuga Gandikota
+ * @see OffHeapLatencyMonitorFactory
+ */
+public class OffHeapLatencyMonitor implements MergeableLatencyMonitor, SnapshotLatencyMonitor, SummedLatencyMonitor, ReleasableLatencyMonitor {
+	
+	/* slab that holds the samples*/
+	private final OffHeapSlab slab;
+	
+	/* region of this monitor in the slab, and its offset in bytes*/
+	private final int region;
+	private final int offset;
+	
+	/* number of samples kept*/
+	private final int size;
+	
+	/*time units that this monitor is setup to use.*/
+	private final TimeUnit timeUnit;
+	
+	/* set once the region is given back to the slab*/
+	private volatile boolean released;
+	
+	/**
+	 * @param aSlab slab that holds the samples.
+	 * @param aRegion region of aSampleSize longs allocated in the slab.
+	 * @param aSampleSize number of samples kept.
+	 * @param aUnit time unit of the average.
+	 */
+	OffHeapLatencyMonitor(OffHeapSlab aSlab, int aRegion, int aSampleSize, TimeUnit aUnit) {
+		slab = aSlab;
+		region = aRegion;
+		offset = aSlab.offsetOf(aRegion);
+		size = aSampleSize;
+		timeUnit = aUnit;
+	}
+	
+	/**
+	 * Adds sample to the region. duration is expected to be in nanoseconds
+	 * @param duration duration is nanoseconds.
+	 */
+	public void addSample(long duration) {
+		slab.enter(region);
+		try {
+			if (released) {
+				return;
+			}
+			long slot = slab.next(region);
+			int position = offset + (int) (slot % size) * 8;
+			long evicted = slot < size ? 0L : slab.getLong(position);
+			slab.putLong(position, duration);
+			slab.addToSum(region, duration - evicted);
+		}
+		finally {
+			slab.exit(region);
+		}
+	}
+	
+	/**
+	 * Adds samples currently in the region to the given monitor.
+	 * @param target monitor to add samples to.
+	 */
+	public void mergeInto(LatencyMonitor target) {
+		int filled = filled();
+		for (int i=0; i<filled; i++) {
+			target.addSample(slab.getLong(offset + i * 8));
+		}
+	}
+	
+	/**
+	 * Returns distribution of the samples currently in the region, with the default range and precision
+	 * of HistogramLatencyMonitor.
+	 * @return distribution of the samples in the region.
+	 */
+	public LatencySnapshot getSnapshot() {
+		long[] values = new long[filled()];
+		for (int i=0; i<values.length; i++) {
+			values[i] = slab.getLong(offset + i * 8);
+		}
+		return LatencySnapshot.ofSamples(values);
+	}
+	
+	/**
+	 * Calculates average in nanoseconds of the samples currently in the region from its running sum
+	 * and converts it to this instance's time unit.
+	 * 
+	 * @return average of the samples recorded, converted to this instance's TimeUnit.
+	 */
+	public long getAverage() {
+		int filled = filled();
+		if (filled == 0) {
+			return 0L;
+		}
+		return timeUnit.convert(slab.sum(region) / filled, TimeUnit.NANOSECONDS);
+	}
+	
+	/* Running sum of the region*/
+	public long getSampleSum() {
+		return slab.sum(region);
+	}
+	
+	/* Number of samples currently in the region*/
+	public long getSampleCount() {
+		return filled();
+	}
+	
+	/**
+	 * Gives the region back to the slab, once the samples being added are written. Samples added afterwards are ignored.
+	 */
+	public synchronized void release() {
+		if (!released) {
+			released = true;
+			slab.free(region);
+		}
+	}
+	
+	/* number of slots that have been written to at least once*/
+	private int filled() {
+		return (int) Math.min(slab.count(region), size);
+	}
+}
@@ -0,0 +1,54 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitorFactory that creates <code>OffHeapLatencyMonitor</code> instances, keeping the samples of
+ * all monitors in one <code>OffHeapSlab</code> outside the Java heap. Once the slab is full, further monitors
+ * are created as <code>SimpleLatencyMonitor</code> on the heap and counted by <code>OffHeapSlab.getFailedAllocations()</code>.
+ * 
+ * @author Yuga Gandikota
+ * @see OffHeapSlab
+ */
+@SharedInstance
+public class OffHeapLatencyMonitorFactory implements LatencyMonitorFactory {
+	
+	/* slab the samples are kept in*/
+	private final OffHeapSlab slab;
+	
+	/* factory of monitors created once the slab is full*/
+	private final LatencyMonitorFactory heapFactory = new SimpleLatencyMonitorFactory();
+	
+	/**
+	 * Creates factory that uses the shared slab, sized with system properties. 
+	 * Used when the factory is set using system property.
+	 */
+	public OffHeapLatencyMonitorFactory() {
+		this(OffHeapSlab.getShared());
+	}
+	
+	/**
+	 * @param aSlab slab the samples are kept in.
+	 */
+	public OffHeapLatencyMonitorFactory(OffHeapSlab aSlab) {
+		slab = aSlab;
+	}
+
+	public LatencyMonitor createLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
+		if (aSampleSize <= 0) {
+			throw new IllegalArgumentException("sample size has to be positive, found:"+aSampleSize);
+		}
+		int region = slab.allocate(aSampleSize);
+		if (region < 0) {
+			return heapFactory.createLatencyMonitor(aSampleSize, aUnit);
+		}
+		return new OffHeapLatencyMonitor(slab, region, aSampleSize, aUnit);
+	}
+	
+	/**
+	 * @return slab the samples are kept in.
+	 */
+	public OffHeapSlab getSlab() {
+		return slab;
+	}
+}
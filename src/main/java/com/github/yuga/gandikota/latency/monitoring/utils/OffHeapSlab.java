@@ -0,0 +1,209 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size block of memory outside the Java heap that <code>OffHeapLatencyMonitor</code> instances
+ * keep their samples in, one region of longs per monitor. Regions are allocated one after the other.
+ * A freed region is reused by the next allocation of the same number of longs, the memory of the slab
+ * is never given back. Writers enter a region before they write to it, <code>free()</code> waits for the
+ * writers that entered before the monitor was released, so none of them writes to the region once it is reused.
+ * 
+ * The sample count, the sum and the writers of every region are kept in atomic arrays, primitive arrays which add
+ * no object per monitor and no card marking to the heap.
+ * 
+ * The size is set explicitly, with the constructor or, for the shared slab, with the system properties
+ * {@link #CAPACITY_PROPERTY_NAME} and {@link #MAX_REGIONS_PROPERTY_NAME}. When the slab is full 
+ * <code>allocate()</code> fails and the factory creates monitors on the heap instead.
+ * 
+ * @author Yuga Gandikota
+ * @see OffHeapLatencyMonitorFactory
+ */
+public final class OffHeapSlab {
+	
+	/* system property with the size of the shared slab in bytes*/
+	public static final String CAPACITY_PROPERTY_NAME = "com.github.yuga.gandikota.latency.monitoring.utils.OffHeapSlab.capacity";
+	
+	/* system property with the number of regions of the shared slab*/
+	public static final String MAX_REGIONS_PROPERTY_NAME = "com.github.yuga.gandikota.latency.monitoring.utils.OffHeapSlab.maxRegions";
+	
+	/* size of the shared slab if the property is not set, 64MB*/
+	public static final int DEFAULT_CAPACITY = 64 << 20;
+	
+	/* number of regions of the shared slab if the property is not set*/
+	public static final int DEFAULT_MAX_REGIONS = 1 << 16;
+	
+	/* memory of all regions, in native order*/
+	private final ByteBuffer memory;
+	
+	/* number of longs added to every region so far*/
+	private final AtomicLongArray counts;
+	
+	/* sum of the longs currently in every region*/
+	private final AtomicLongArray sums;
+	
+	/* number of writers currently in every region*/
+	private final AtomicIntegerArray writers;
+	
+	/* offset in bytes and length in longs of every region. Guarded by this*/
+	private final int[] offsets;
+	private final int[] lengths;
+	
+	/* regions freed and not allocated again. Guarded by this*/
+	private final int[] freeRegions;
+	private int freeCount;
+	
+	/* offset of the next region, and number of regions allocated. Guarded by this*/
+	private int nextOffset;
+	private int regions;
+	
+	/* number of allocations that failed because the slab was full*/
+	private final AtomicLong failedAllocations = new AtomicLong();
+	
+	/**
+	 * Allocates the memory of the slab.
+	 * 
+	 * @param aCapacity size in bytes.
+	 * @param aMaxRegions most regions allocated.
+	 */
+	public OffHeapSlab(int aCapacity, int aMaxRegions) {
+		if (aCapacity <= 0 || aMaxRegions <= 0) {
+			throw new IllegalArgumentException("capacity and regions have to be positive, found:" + aCapacity + ", " + aMaxRegions);
+		}
+		memory = ByteBuffer.allocateDirect(aCapacity).order(ByteOrder.nativeOrder());
+		counts = new AtomicLongArray(aMaxRegions);
+		sums = new AtomicLongArray(aMaxRegions);
+		writers = new AtomicIntegerArray(aMaxRegions);
+		offsets = new int[aMaxRegions];
+		lengths = new int[aMaxRegions];
+		freeRegions = new int[aMaxRegions];
+	}
+	
+	/**
+	 * @return slab shared by all monitors of OffHeapLatencyMonitorFactory instances created without a slab,
+	 *         allocated on first use with the size set with system properties.
+	 */
+	public static OffHeapSlab getShared() {
+		return Holder.SHARED;
+	}
+	
+	/**
+	 * Allocates a region of the given number of longs, reusing a freed region of the same length if there is one.
+	 * @return region number, -1 if the slab is full.
+	 */
+	synchronized int allocate(int aLongs) {
+		for (int i=freeCount-1; i>=0; i--) {
+			int region = freeRegions[i];
+			if (lengths[region] == aLongs) {
+				freeRegions[i] = freeRegions[--freeCount];
+				counts.set(region, 0L);
+				sums.set(region, 0L);
+				return region;
+			}
+		}
+		long end = nextOffset + aLongs * 8L;
+		if (regions == counts.length() || end > memory.capacity()) {
+			failedAllocations.incrementAndGet();
+			return -1;
+		}
+		int region = regions++;
+		offsets[region] = nextOffset;
+		lengths[region] = aLongs;
+		nextOffset = (int) end;
+		return region;
+	}
+	
+	/**
+	 * Frees a region, to be reused by a later allocation of the same length. The owner has to be marked released
+	 * before, writers that enter the region afterwards must check the mark and not write. Waits for the writers
+	 * that entered before.
+	 */
+	void free(int aRegion) {
+		while (writers.get(aRegion) != 0) {
+			Thread.yield();
+		}
+		synchronized (this) {
+			freeRegions[freeCount++] = aRegion;
+		}
+	}
+	
+	/* Enters a region before writing to it, the region is not freed until exit()*/
+	void enter(int aRegion) {
+		writers.incrementAndGet(aRegion);
+	}
+	
+	void exit(int aRegion) {
+		writers.decrementAndGet(aRegion);
+	}
+	
+	/* Offset in bytes of a region*/
+	synchronized int offsetOf(int aRegion) {
+		return offsets[aRegion];
+	}
+	
+	/* Claims the next slot of a region, returns the number of longs added to it before*/
+	long next(int aRegion) {
+		return counts.getAndIncrement(aRegion);
+	}
+	
+	/* Number of longs added to a region so far*/
+	long count(int aRegion) {
+		return counts.get(aRegion);
+	}
+	
+	/* Adds the difference between a long written to a region and the one it replaced to the sum of the region*/
+	void addToSum(int aRegion, long aDelta) {
+		sums.addAndGet(aRegion, aDelta);
+	}
+	
+	/* Sum of the longs currently in a region*/
+	long sum(int aRegion) {
+		return sums.get(aRegion);
+	}
+	
+	void putLong(int aOffset, long aValue) {
+		memory.putLong(aOffset, aValue);
+	}
+	
+	long getLong(int aOffset) {
+		return memory.getLong(aOffset);
+	}
+	
+	/**
+	 * @return size of the slab in bytes.
+	 */
+	public int getCapacity() {
+		return memory.capacity();
+	}
+	
+	/**
+	 * @return bytes allocated to regions, also to freed regions waiting to be reused.
+	 */
+	public synchronized int getUsedBytes() {
+		return nextOffset;
+	}
+	
+	/**
+	 * @return number of regions in use, allocated and not freed.
+	 */
+	public synchronized int getRegionCount() {
+		return regions - freeCount;
+	}
+	
+	/**
+	 * @return number of allocations that failed because the slab was full.
+	 */
+	public long getFailedAllocations() {
+		return failedAllocations.get();
+	}
+	
+	/* Creates the shared slab on first use only*/
+	private static final class Holder {
+		static final OffHeapSlab SHARED = new OffHeapSlab(Integer.getInteger(CAPACITY_PROPERTY_NAME, DEFAULT_CAPACITY), 
+				Integer.getInteger(MAX_REGIONS_PROPERTY_NAME, DEFAULT_MAX_REGIONS));
+	}
+}
@@ -0,0 +1,135 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and reports their rate per second over the last few seconds.
+ *
+ * Events are counted in a <code>LongAdder</code>. The first event of every second records the count
+ * at the start of that second, in a small ring of per second snapshots, with a single CAS. The rate
+ * is the difference between the snapshot of the current second and the oldest snapshot of the window,
+ * divided by the seconds between them. There is no timer thread and no lock.
+ *
+ * @author Yuga Gandikota
+ */
+public class RateMeter {
+
+	/* Default window the rate is reported over, in seconds*/
+	public static final int DEFAULT_WINDOW_SECONDS = 10;
+
+	private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/* total number of events*/
+	private final LongAdder count = new LongAdder();
+
+	/* second of the last snapshot taken*/
+	private final AtomicLong lastSecond = new AtomicLong(Long.MIN_VALUE);
+
+	/* ring of [second, count at the start of the second] pairs*/
+	private final AtomicLongArray snapshots;
+
+	/* number of seconds the rate is reported over*/
+	private final int windowSeconds;
+
+	public RateMeter() {
+		this(DEFAULT_WINDOW_SECONDS);
+	}
+
+	/**
+	 * @param aWindowSeconds number of seconds the rate is reported over.
+	 */
+	public RateMeter(int aWindowSeconds) {
+		if (aWindowSeconds <= 0) {
+			throw new IllegalArgumentException("window has to be positive, found:"+aWindowSeconds);
+		}
+		windowSeconds = aWindowSeconds;
+		snapshots = new AtomicLongArray((aWindowSeconds + 2) * 2);
+		for (int i=0; i<snapshots.length(); i+=2) {
+			snapshots.set(i, Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * Counts an event.
+	 * @param nowNanos current <code>System.nanoTime()</code>
+	 */
+	public void mark(long nowNanos) {
+		tick(second(nowNanos));
+		count.increment();
+	}
+
+	/**
+	 * Counts an event without reading the time. Snapshots are then taken only by events counted with 
+	 * <code>mark(long)</code> and by <code>getRate()</code>. Events counted between two snapshots are
+	 * not told apart by second, see getRate().
+	 */
+	public void mark() {
+		count.increment();
+	}
+
+	/* Total number of events counted*/
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the average number of events per second over the window, not counting the current second.
+	 * If the window does not start with a snapshot, the rate is measured from its oldest snapshot, since
+	 * events counted with <code>mark()</code> before it can not be placed in time. Without any snapshot
+	 * in the window the rate is 0, one <code>mark(long)</code> or getRate() per window avoids it.
+	 * @return events per second.
+	 */
+	public double getRate() {
+		long current = second(System.nanoTime());
+		tick(current);
+
+		long currentCount = snapshotAt(current);
+		if (currentCount < 0) {
+			//a snapshot for a newer second was just taken.
+			return 0.0d;
+		}
+
+		//seconds before the oldest snapshot may have had events counted by mark(), the rate is measured from it
+		for (long second = current - windowSeconds; second < current; second++) {
+			long snapshot = snapshotAt(second);
+			if (snapshot >= 0) {
+				return (currentCount - snapshot) / (double) (current - second);
+			}
+		}
+		return 0.0d;
+	}
+
+	/* Takes the snapshot of the given second, unless it is already taken*/
+	private void tick(long second) {
+		long last = lastSecond.get();
+		if (last < second && lastSecond.compareAndSet(last, second)) {
+			int index = slot(second);
+			//invalidate the slot while it is written, see snapshotAt()
+			snapshots.set(index, Long.MIN_VALUE);
+			snapshots.set(index + 1, count.sum());
+			snapshots.set(index, second);
+		}
+	}
+
+	/* count at the start of the given second, -1 if no snapshot was taken for it*/
+	private long snapshotAt(long second) {
+		int index = slot(second);
+		long before = snapshots.get(index);
+		long value = snapshots.get(index + 1);
+		return (before == second && snapshots.get(index) == second) ? value : -1L;
+	}
+
+	private int slot(long second) {
+		int slots = snapshots.length() / 2;
+		int index = (int) (second % slots);
+		return (index < 0 ? index + slots : index) * 2;
+	}
+
+	private static long second(long nanos) {
+		long second = nanos / SECOND_NANOS;
+		return (nanos < 0 && second * SECOND_NANOS != nanos) ? second - 1 : second;
+	}
+}
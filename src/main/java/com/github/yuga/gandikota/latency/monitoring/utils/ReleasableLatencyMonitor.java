@@ -0,0 +1,18 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+/**
+ * Optional interface for LatencyMonitor implementations that hold memory which is not reclaimed by the
+ * garbage collector, like the regions of an <code>OffHeapSlab</code>. The proxy releases monitors of
+ * attribute keys it drops.
+ * 
+ * @author Yuga Gandikota
+ * @see OffHeapLatencyMonitor
+ */
+public interface ReleasableLatencyMonitor extends LatencyMonitor {
+	
+	/**
+	 * Gives back the memory of this monitor. Samples added afterwards are ignored, the values read
+	 * afterwards are undefined. Releasing a monitor more than once has no effect.
+	 */
+	public void release();
+}
@@ -0,0 +1,93 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which calls are timed, so that very frequent methods do not pay for two <code>System.nanoTime()</code>
+ * reads and a monitor update on every call. Every call is sampled with probability 1/interval, decided with
+ * a thread local random number, so no shared state is written by calls that are not sampled.
+ * 
+ * The interval is fixed, or adapted once per second to keep the number of samples under a maximum per second.
+ * A sample stands for <code>getInterval()</code> calls, see WeightedLatencyMonitor.
+ * 
+ * @author Yuga Gandikota
+ * @see WeightedLatencyMonitor
+ */
+public class Sampler {
+
+	/* largest interval the adaptive mode goes to*/
+	private static final int MAX_INTERVAL = 1 << 20;
+
+	private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/* smallest interval, the fixed 1-in-N rate*/
+	private final int rate;
+
+	/* samples per second the interval is adapted to, 0 for a fixed interval*/
+	private final int maxSamplesPerSecond;
+
+	/* current interval, 1 in interval calls is sampled*/
+	private volatile int interval;
+
+	/* second the samples are being counted for*/
+	private final AtomicLong second = new AtomicLong(Long.MIN_VALUE);
+
+	/* samples counted since the start of the second*/
+	private final AtomicLong samples = new AtomicLong();
+
+	/**
+	 * @param aRate sample 1 in aRate calls, at least 1.
+	 * @param aMaxSamplesPerSecond adapt the interval, never below aRate, to keep the samples under this 
+	 *        number per second. 0 to keep the interval fixed.
+	 */
+	public Sampler(int aRate, int aMaxSamplesPerSecond) {
+		if (aRate < 1) {
+			throw new IllegalArgumentException("sample rate has to be at least 1, found:"+aRate);
+		}
+		if (aMaxSamplesPerSecond < 0) {
+			throw new IllegalArgumentException("samples per second can not be negative, found:"+aMaxSamplesPerSecond);
+		}
+		rate = aRate;
+		maxSamplesPerSecond = aMaxSamplesPerSecond;
+		interval = aRate;
+	}
+
+	/**
+	 * @return true if the call should be timed.
+	 */
+	public boolean sample() {
+		int current = interval;
+		return current == 1 || ThreadLocalRandom.current().nextInt(current) == 0;
+	}
+
+	/**
+	 * Counts a sample taken, for the adaptive mode. The first sample of every second adapts the interval to 
+	 * the number of calls in the seconds since the previous adaptation.
+	 * @param nowNanos start time of the sampled call, <code>System.nanoTime()</code>
+	 */
+	public void sampled(long nowNanos) {
+		if (maxSamplesPerSecond == 0) {
+			return;
+		}
+		long current = Math.floorDiv(nowNanos, SECOND_NANOS);
+		long last = second.get();
+		if (current > last && second.compareAndSet(last, current)) {
+			long count = samples.getAndSet(0);
+			if (last != Long.MIN_VALUE) {
+				double callsPerSecond = (double) count * interval / (current - last);
+				long adapted = (long) Math.ceil(callsPerSecond / maxSamplesPerSecond);
+				interval = (int) Math.max(rate, Math.min(MAX_INTERVAL, adapted));
+			}
+		}
+		samples.incrementAndGet();
+	}
+
+	/**
+	 * @return number of calls every sample currently stands for.
+	 */
+	public int getInterval() {
+		return interval;
+	}
+}
@@ -0,0 +1,20 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks naming strategies, dimension extractors and LatencyMonitorFactory classes that are stateless
+ * and thread safe. The proxy creates a single instance of a marked class and shares it with all beans,
+ * instead of creating one per bean. Not inherited: a subclass is shared only if it is marked itself.
+ * 
+ * @author Yuga Gandikota
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface SharedInstance {
+}
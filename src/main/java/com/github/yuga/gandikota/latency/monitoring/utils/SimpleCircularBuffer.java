@@ -16,8 +16,8 @@ public class SimpleCircularBuffer<T> implements CircularBuffer<T> {
 	/* type of buffer element. used while initializing buffer*/
 	private Class<T> type;
 	
-	/* index where the next element goes*/ 
-	private int index = 0;
+	/* index where the next element goes. 64 bits, so it does not turn negative*/ 
+	private long index = 0;
 	
 	/**
 	 * Constructs a simple ring buffer with the given size.
@@ -1,5 +1,6 @@
 package com.github.yuga.gandikota.latency.monitoring.utils;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -7,11 +8,14 @@ import java.util.concurrent.TimeUnit;
  * 
  * @author Yuga Gandikota
  */
-public class SimpleLatencyMonitor implements LatencyMonitor {
+public class SimpleLatencyMonitor implements MergeableLatencyMonitor, SnapshotLatencyMonitor, SummedLatencyMonitor {
 	
 	/*Circular buffer to keep samples.*/
 	CircularBuffer<Long> samples;
 	
+	/*same as samples if the buffer supports primitive longs, null otherwise.*/
+	LongCircularBuffer longSamples;
+	
 	/*time units that this monitor is setup to use.*/
 	TimeUnit timeUnit;
 	
@@ -23,16 +27,21 @@ public class SimpleLatencyMonitor implements LatencyMonitor {
 	 */
 	public SimpleLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
 		samples = createNewCircularBuffer(aSampleSize);
+		if (samples instanceof LongCircularBuffer) {
+			longSamples = (LongCircularBuffer) samples;
+		}
 		timeUnit = aUnit;
 	}
 
 	/**
 	 * Utility method that you can override to be able to override CircularBuffer implementation used.
+	 * Returns lock free <code>AtomicLongCircularBuffer</code> by default. If the buffer returned 
+	 * implements <code>LongCircularBuffer</code>, samples are added and read without boxing.
 	 * @param aSampleSize
 	 * @return
 	 */
 	protected CircularBuffer<Long> createNewCircularBuffer(int aSampleSize) {
-		return new SimpleCircularBuffer<Long>(Long.class, aSampleSize);
+		return new AtomicLongCircularBuffer(aSampleSize);
 	}
 
 	/**
@@ -40,31 +49,118 @@ public class SimpleLatencyMonitor implements LatencyMonitor {
 	 * @param duration duration is nanoseconds.
 	 */
 	public void addSample(long duration) {
-		samples.add(duration);
+		if (longSamples != null) {
+			longSamples.add(duration);
+		}
+		else {
+			samples.add(duration);
+		}
+	}
+	
+	/**
+	 * Adds samples currently in the buffer to the given monitor.
+	 * @param target monitor to add samples to.
+	 */
+	public void mergeInto(LatencyMonitor target) {
+		if (longSamples != null) {
+			for (long duration : longSamples.getLongSnapshot()) {
+				target.addSample(duration);
+			}
+		}
+		else {
+			for (Long duration : samples.getSnapshot()) {
+				if (duration != null) {
+					target.addSample(duration);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns distribution of the samples currently in the buffer, with the default range and precision
+	 * of HistogramLatencyMonitor.
+	 * @return distribution of the samples in the buffer.
+	 */
+	public LatencySnapshot getSnapshot() {
+		if (longSamples != null) {
+			return LatencySnapshot.ofSamples(longSamples.getLongSnapshot());
+		}
+		Long[] snapshot = samples.getSnapshot();
+		long[] values = new long[snapshot.length];
+		int count = 0;
+		for (Long duration : snapshot) {
+			if (duration != null) {
+				values[count++] = duration;
+			}
+		}
+		return LatencySnapshot.ofSamples(count == values.length ? values : Arrays.copyOf(values, count));
 	}
 	
 	/**
-	 * Calculates average in nanoseconds, based on current snapshot of the buffer
-	 * and converts it to this instance's time unit
+	 * Calculates average in nanoseconds of the samples currently in the buffer
+	 * and converts it to this instance's time unit. If the buffer is a <code>LongCircularBuffer</code>,
+	 * its running sum is used and no copy of the buffer is made.
 	 * 
-	 * @return average from current snapshot of samples buffer, converted to this instance's TimeUnit.
+	 * @return average of the samples recorded, converted to this instance's TimeUnit.
 	 */
 	public long getAverage() {
+		if (longSamples != null) {
+			long count = getSampleCount();
+			if (count == 0) {
+				return 0L;
+			}
+			return timeUnit.convert(longSamples.getSum() / count, TimeUnit.NANOSECONDS);
+		}
+		
         Long[] snapshot = samples.getSnapshot();
 
-        if (snapshot.length == 0) {
-            return 0L;
-        }
-
         long totalDuration = 0L;
+        int count = 0;
 
         for (Long duration : snapshot) {
         	if (duration != null) {
         		totalDuration += duration;
+        		count++;
         	}
         }
 
-        return timeUnit.convert(totalDuration / snapshot.length,
+        if (count == 0) {
+            return 0L;
+        }
+
+        return timeUnit.convert(totalDuration / count,
                                       TimeUnit.NANOSECONDS);		
 	}
+
+	/**
+	 * @return sum of the samples currently in the buffer, its running sum if it keeps one.
+	 */
+	public long getSampleSum() {
+		if (longSamples != null) {
+			return longSamples.getSum();
+		}
+		long sum = 0L;
+		for (Long duration : samples.getSnapshot()) {
+			if (duration != null) {
+				sum += duration;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @return number of samples currently in the buffer.
+	 */
+	public long getSampleCount() {
+		if (longSamples != null) {
+			return Math.min(longSamples.getCount(), longSamples.size());
+		}
+		long count = 0L;
+		for (Long duration : samples.getSnapshot()) {
+			if (duration != null) {
+				count++;
+			}
+		}
+		return count;
+	}
 }
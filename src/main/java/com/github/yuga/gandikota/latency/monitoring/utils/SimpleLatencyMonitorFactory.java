@@ -8,6 +8,7 @@ import java.util.concurrent.TimeUnit;
  * @author Yuga Gandikota
  * @see LatencyMonitorFactory
  */
+@SharedInstance
 public class SimpleLatencyMonitorFactory implements LatencyMonitorFactory {
 
 	public LatencyMonitor createLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
@@ -0,0 +1,17 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+/**
+ * Optional interface for LatencyMonitor implementations that can describe the distribution of their
+ * samples as a <code>LatencySnapshot</code>, which can be serialized and merged with the snapshots of 
+ * other monitors, also of other processes.
+ * 
+ * @author Yuga Gandikota
+ * @see LatencySnapshot
+ */
+public interface SnapshotLatencyMonitor extends LatencyMonitor {
+	
+	/**
+	 * @return distribution of the samples currently kept, in nanoseconds. null if it can not be produced.
+	 */
+	public LatencySnapshot getSnapshot();
+}
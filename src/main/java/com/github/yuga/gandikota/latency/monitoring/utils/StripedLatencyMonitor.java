@@ -0,0 +1,218 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitor that spreads recording over several stripes, in the style of <code>LongAdder</code>.
+ * Every thread records into the stripe picked by its id, so threads on different stripes do not
+ * contend on the same counters. Stripes are merged only when the monitor is read.
+ * 
+ * Stripes are created by the given factory and have to implement <code>MergeableLatencyMonitor</code>.
+ * Every stripe keeps the full sample size, which takes sampleSize samples of memory per stripe. Buffer
+ * based monitors do not average the last sampleSize samples of the monitor, but the last sampleSize
+ * samples of every stripe: samples of a stripe no thread records into any more are kept, and counted
+ * in the average, until other threads that hash to the stripe replace them.
+ * 
+ * Unlike <code>LongAdder</code> cells, stripes are picked by a fixed hash of the thread id and are
+ * not rehashed on contention: two busy threads that hash to the same stripe keep sharing it.
+ * Use more stripes than busy threads to make this unlikely.
+ * 
+ * If the stripes implement <code>SummedLatencyMonitor</code>, the average is computed from their sums 
+ * and counts without merging them. Readers that need the average and the statistics of the same moment 
+ * use <code>read()</code>, which merges the stripes once.
+ * 
+ * @author Yuga Gandikota
+ * @see StripedLatencyMonitorFactory
+ */
+public class StripedLatencyMonitor implements MergeableLatencyMonitor, WeightedLatencyMonitor, LatencyStatistics, SnapshotLatencyMonitor, ReleasableLatencyMonitor {
+	
+	private static final String[] NO_STATISTICS = new String[0];
+	
+	/* monitors samples are recorded into*/
+	private final MergeableLatencyMonitor[] stripes;
+	
+	/* stripes.length - 1, stripes.length is a power of 2*/
+	private final int mask;
+	
+	/* factory of the monitor stripes are merged into when read. Never allocates off the heap*/
+	private final LatencyMonitorFactory factory;
+	
+	/* sample size of the monitor stripes are merged into*/
+	private final int mergedSampleSize;
+	
+	/*time units that this monitor is setup to use.*/
+	private final TimeUnit timeUnit;
+	
+	/* true if all stripes implement SummedLatencyMonitor*/
+	private final boolean summed;
+	
+	/**
+	 * @param aFactory factory to create stripes with, has to create MergeableLatencyMonitor instances.
+	 * @param aSampleSize sample size of every stripe.
+	 * @param aUnit time unit to use.
+	 * @param aStripeCount number of stripes, rounded up to a power of 2.
+	 */
+	public StripedLatencyMonitor(LatencyMonitorFactory aFactory, int aSampleSize, TimeUnit aUnit, int aStripeCount) {
+		int stripeCount = Integer.highestOneBit(Math.max(1, aStripeCount) - 1) << 1;
+		if (stripeCount == 0) {
+			stripeCount = 1;
+		}
+		stripes = new MergeableLatencyMonitor[stripeCount];
+		boolean allSummed = true;
+		for (int i=0; i<stripeCount; i++) {
+			LatencyMonitor stripe = aFactory.createLatencyMonitor(aSampleSize, aUnit);
+			if (!(stripe instanceof MergeableLatencyMonitor)) {
+				throw new IllegalArgumentException(stripe.getClass().getName()+" does not implement "+MergeableLatencyMonitor.class.getName());
+			}
+			stripes[i] = (MergeableLatencyMonitor) stripe;
+			allSummed &= stripe instanceof SummedLatencyMonitor;
+		}
+		summed = allSummed;
+		mask = stripeCount - 1;
+		//reads must not take regions of the slab, off-heap stripes are merged into a monitor on the heap
+		factory = aFactory instanceof OffHeapLatencyMonitorFactory ? new SimpleLatencyMonitorFactory() : aFactory;
+		mergedSampleSize = aSampleSize * stripeCount;
+		timeUnit = aUnit;
+	}
+
+	/**
+	 * Adds sample to the stripe of the current thread. duration is expected to be in nanoseconds
+	 * @param duration duration is nanoseconds.
+	 */
+	public void addSample(long duration) {
+		stripes[stripeIndex()].addSample(duration);
+	}
+
+	/**
+	 * Adds weighted sample to the stripe of the current thread, if stripes keep weights.
+	 * @param duration duration is nanoseconds.
+	 * @param weight number of calls the sample stands for.
+	 */
+	public void addSample(long duration, long weight) {
+		MergeableLatencyMonitor stripe = stripes[stripeIndex()];
+		if (stripe instanceof WeightedLatencyMonitor) {
+			((WeightedLatencyMonitor) stripe).addSample(duration, weight);
+		}
+		else {
+			stripe.addSample(duration);
+		}
+	}
+
+	/**
+	 * Returns the average of all stripes, converted to this instance's time unit. Computed from the sums
+	 * and counts of the stripes if they keep them, from the merged stripes otherwise.
+	 * 
+	 * @return average of all stripes, converted to this instance's TimeUnit.
+	 */
+	public long getAverage() {
+		if (!summed) {
+			return read().getAverage();
+		}
+		long sum = 0L;
+		long count = 0L;
+		for (MergeableLatencyMonitor stripe : stripes) {
+			sum += ((SummedLatencyMonitor) stripe).getSampleSum();
+			count += ((SummedLatencyMonitor) stripe).getSampleCount();
+		}
+		return count == 0 ? 0L : timeUnit.convert(sum / count, TimeUnit.NANOSECONDS);
+	}
+
+	public String[] getStatisticNames() {
+		if (stripes[0] instanceof LatencyStatistics) {
+			return ((LatencyStatistics) stripes[0]).getStatisticNames();
+		}
+		return NO_STATISTICS;
+	}
+
+	public TimeUnit getStatisticUnit(int index) {
+		if (stripes[0] instanceof LatencyStatistics) {
+			return ((LatencyStatistics) stripes[0]).getStatisticUnit(index);
+		}
+		return timeUnit;
+	}
+
+	public long[] getStatistics() {
+		LatencyMonitor merged = read();
+		if (merged instanceof LatencyStatistics) {
+			return ((LatencyStatistics) merged).getStatistics();
+		}
+		return new long[0];
+	}
+	
+	/**
+	 * Merges the snapshots of all stripes, without merging the stripes themselves.
+	 * @return distribution of all stripes, null if stripes do not implement SnapshotLatencyMonitor.
+	 */
+	public LatencySnapshot getSnapshot() {
+		LatencySnapshot merged = null;
+		for (MergeableLatencyMonitor stripe : stripes) {
+			if (!(stripe instanceof SnapshotLatencyMonitor)) {
+				return null;
+			}
+			LatencySnapshot snapshot = ((SnapshotLatencyMonitor) stripe).getSnapshot();
+			if (merged == null) {
+				merged = snapshot;
+			}
+			else if (snapshot != null) {
+				merged.merge(snapshot);
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * Releases the stripes that hold memory outside the heap.
+	 */
+	public void release() {
+		for (MergeableLatencyMonitor stripe : stripes) {
+			if (stripe instanceof ReleasableLatencyMonitor) {
+				((ReleasableLatencyMonitor) stripe).release();
+			}
+		}
+	}
+	
+	/* Number of stripes used*/
+	public int getStripeCount() {
+		return stripes.length;
+	}
+	
+	/**
+	 * Adds the samples of every stripe to the given monitor. If it is a StripedLatencyMonitor with as many stripes,
+	 * every stripe is merged into the stripe at the same index, without creating a monitor.
+	 * @param target monitor created by the same factory as this monitor.
+	 */
+	public void mergeInto(LatencyMonitor target) {
+		if (target instanceof StripedLatencyMonitor && ((StripedLatencyMonitor) target).stripes.length == stripes.length) {
+			MergeableLatencyMonitor[] targetStripes = ((StripedLatencyMonitor) target).stripes;
+			for (int i=0; i<stripes.length; i++) {
+				stripes[i].mergeInto(targetStripes[i]);
+			}
+		}
+		else {
+			for (MergeableLatencyMonitor stripe : stripes) {
+				stripe.mergeInto(target);
+			}
+		}
+	}
+	
+	/**
+	 * Merges all stripes once into a new monitor, created by the factory of the stripes, or on the heap if 
+	 * the stripes are off the heap. Its average and
+	 * statistics are of the same moment, callers that read both read them from the returned monitor.
+	 * @return monitor holding the samples of all stripes.
+	 */
+	public LatencyMonitor read() {
+		LatencyMonitor merged = factory.createLatencyMonitor(mergedSampleSize, timeUnit);
+		for (MergeableLatencyMonitor stripe : stripes) {
+			stripe.mergeInto(merged);
+		}
+		return merged;
+	}
+	
+	/* Stripe of the current thread. Thread ids are mixed so that consecutive ids are spread evenly.*/
+	private int stripeIndex() {
+		long id = Thread.currentThread().getId();
+		int hash = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
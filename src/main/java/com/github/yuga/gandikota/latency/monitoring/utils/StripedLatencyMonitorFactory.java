@@ -0,0 +1,31 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitorFactory that wraps monitors of another factory into <code>StripedLatencyMonitor</code> instances.
+ * 
+ * @author Yuga Gandikota
+ * @see StripedLatencyMonitor
+ */
+public class StripedLatencyMonitorFactory implements LatencyMonitorFactory {
+	
+	/* factory that creates the stripes*/
+	private LatencyMonitorFactory delegate;
+	
+	/* number of stripes per monitor*/
+	private int stripeCount;
+	
+	/**
+	 * @param aDelegate factory creating the stripes, has to create MergeableLatencyMonitor instances.
+	 * @param aStripeCount number of stripes per monitor. If 0 or less, one stripe per available processor is used.
+	 */
+	public StripedLatencyMonitorFactory(LatencyMonitorFactory aDelegate, int aStripeCount) {
+		delegate = aDelegate;
+		stripeCount = aStripeCount > 0 ? aStripeCount : Runtime.getRuntime().availableProcessors();
+	}
+
+	public LatencyMonitor createLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
+		return new StripedLatencyMonitor(delegate, aSampleSize, aUnit, stripeCount);
+	}
+}
@@ -0,0 +1,24 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+/**
+ * Optional interface for LatencyMonitor implementations whose average is the sum of the samples they 
+ * keep divided by their number. The averages of several such monitors are combined from their sums and
+ * counts, without merging their samples.
+ * 
+ * Sum and count are read one after the other, a sample added in between may be part of one only.
+ * 
+ * @author Yuga Gandikota
+ * @see StripedLatencyMonitor
+ */
+public interface SummedLatencyMonitor extends LatencyMonitor {
+	
+	/**
+	 * @return sum in nanoseconds of the samples the average is computed from.
+	 */
+	public long getSampleSum();
+	
+	/**
+	 * @return number of samples the average is computed from.
+	 */
+	public long getSampleCount();
+}
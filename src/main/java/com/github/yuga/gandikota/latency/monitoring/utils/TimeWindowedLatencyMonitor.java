@@ -0,0 +1,223 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyMonitor that keeps count, sum and max of samples in a ring of per interval buckets and reports
+ * them over the last 1, 5 and 15 minutes. The average returned by <code>getAverage()</code> is the
+ * one minute average.
+ *
+ * Buckets are rotated lazily, by the first sample recorded in a new interval, and buckets that are
+ * too old are skipped when read. No timer thread is used. A sample recorded by one thread while another
+ * thread rotates the same bucket may be lost.
+ *
+ * With the default 5 second interval, every monitor keeps 181 buckets, about 6KB.
+ *
+ * @author Yuga Gandikota
+ * @see TimeWindowedLatencyMonitorFactory
+ */
+public class TimeWindowedLatencyMonitor implements MergeableLatencyMonitor, WeightedLatencyMonitor, LatencyStatistics {
+
+	/* Default width of a bucket: 5 seconds*/
+	public static final long DEFAULT_BUCKET_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	private static final String[] STATISTIC_NAMES = {
+		"count1m", "avg1m", "max1m",
+		"count5m", "avg5m", "max5m",
+		"count15m", "avg15m", "max15m"};
+
+	/* length of the windows reported, in the same order as STATISTIC_NAMES*/
+	private static final long[] WINDOW_NANOS = {
+		TimeUnit.MINUTES.toNanos(1), TimeUnit.MINUTES.toNanos(5), TimeUnit.MINUTES.toNanos(15)};
+
+	/* epoch of buckets that were never used*/
+	private static final long UNUSED = Long.MIN_VALUE;
+
+	/* fields of a bucket, every bucket takes FIELDS consecutive cells*/
+	private static final int EPOCH = 0;
+	private static final int COUNT = 1;
+	private static final int SUM = 2;
+	private static final int MAX = 3;
+	private static final int FIELDS = 4;
+
+	/* width of a bucket in nanoseconds*/
+	private final long bucketNanos;
+
+	/* number of buckets in the ring*/
+	private final int bucketCount;
+
+	/* number of buckets in each of the windows reported*/
+	private final int[] windowBuckets;
+
+	/* epoch, count, sum and max of every bucket*/
+	private final AtomicLongArray buckets;
+
+	/*time units that this monitor is setup to use.*/
+	private final TimeUnit timeUnit;
+
+	/**
+	 * Constructs monitor with the default 5 second buckets.
+	 * @param aUnit time unit to use.
+	 */
+	public TimeWindowedLatencyMonitor(TimeUnit aUnit) {
+		this(DEFAULT_BUCKET_NANOS, aUnit);
+	}
+
+	/**
+	 * @param aBucketNanos width of a bucket in nanoseconds. Windows are rounded up to a multiple of it.
+	 * @param aUnit time unit to use.
+	 */
+	public TimeWindowedLatencyMonitor(long aBucketNanos, TimeUnit aUnit) {
+		if (aBucketNanos <= 0) {
+			throw new IllegalArgumentException("bucket width has to be positive, found:"+aBucketNanos);
+		}
+		bucketNanos = aBucketNanos;
+		windowBuckets = new int[WINDOW_NANOS.length];
+		for (int i=0; i<WINDOW_NANOS.length; i++) {
+			windowBuckets[i] = (int) ((WINDOW_NANOS[i] + aBucketNanos - 1) / aBucketNanos);
+		}
+		//one more bucket than the longest window, for the interval being rotated in.
+		bucketCount = windowBuckets[windowBuckets.length - 1] + 1;
+		buckets = new AtomicLongArray(bucketCount * FIELDS);
+		for (int i=0; i<bucketCount; i++) {
+			buckets.set(i * FIELDS + EPOCH, UNUSED);
+		}
+		timeUnit = aUnit;
+	}
+
+	/**
+	 * Adds sample to the bucket of the current interval. duration is expected to be in nanoseconds
+	 * @param duration duration is nanoseconds.
+	 */
+	public void addSample(long duration) {
+		addSample(duration, 1L);
+	}
+
+	/**
+	 * Adds sample that stands for the given number of calls to the bucket of the current interval.
+	 * @param duration duration is nanoseconds.
+	 * @param weight number of calls the sample stands for.
+	 */
+	public void addSample(long duration, long weight) {
+		long epoch = currentEpoch();
+		int base = bucketBase(epoch);
+		long bucketEpoch = buckets.get(base + EPOCH);
+		if (bucketEpoch != epoch) {
+			if (bucketEpoch > epoch) {
+				//this thread was delayed for a whole rotation, the sample is too old to keep.
+				return;
+			}
+			rotate(base, bucketEpoch, epoch);
+		}
+
+		buckets.addAndGet(base + COUNT, weight);
+		buckets.addAndGet(base + SUM, duration * weight);
+		long max = buckets.get(base + MAX);
+		while (duration > max && !buckets.compareAndSet(base + MAX, max, duration)) {
+			max = buckets.get(base + MAX);
+		}
+	}
+
+	/**
+	 * Returns average of the samples recorded in the last minute, converted to this instance's time unit.
+	 *
+	 * @return one minute average, converted to this instance's TimeUnit.
+	 */
+	public long getAverage() {
+		long epoch = currentEpoch();
+		long count = 0L;
+		long sum = 0L;
+		for (int i=0; i<windowBuckets[0]; i++) {
+			int base = bucketBase(epoch - i);
+			if (buckets.get(base + EPOCH) == epoch - i) {
+				count += buckets.get(base + COUNT);
+				sum += buckets.get(base + SUM);
+			}
+		}
+		return count == 0 ? 0L : timeUnit.convert(sum / count, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Adds buckets of this monitor to the given monitor.
+	 * @param target TimeWindowedLatencyMonitor with the same bucket width.
+	 */
+	public void mergeInto(LatencyMonitor target) {
+		TimeWindowedLatencyMonitor other = (TimeWindowedLatencyMonitor) target;
+		for (int i=0; i<bucketCount; i++) {
+			int base = i * FIELDS;
+			long epoch = buckets.get(base + EPOCH);
+			if (epoch == UNUSED) {
+				continue;
+			}
+			long otherEpoch = other.buckets.get(base + EPOCH);
+			if (otherEpoch < epoch) {
+				other.rotate(base, otherEpoch, epoch);
+			}
+			else if (otherEpoch > epoch) {
+				continue;
+			}
+			other.buckets.addAndGet(base + COUNT, buckets.get(base + COUNT));
+			other.buckets.addAndGet(base + SUM, buckets.get(base + SUM));
+			if (buckets.get(base + MAX) > other.buckets.get(base + MAX)) {
+				other.buckets.set(base + MAX, buckets.get(base + MAX));
+			}
+		}
+	}
+
+	public String[] getStatisticNames() {
+		return STATISTIC_NAMES.clone();
+	}
+
+	public TimeUnit getStatisticUnit(int index) {
+		return index % 3 == 0 ? null : timeUnit;
+	}
+
+	/* Statistics of all windows, read in one pass over the buckets*/
+	public long[] getStatistics() {
+		long epoch = currentEpoch();
+		long[] statistics = new long[STATISTIC_NAMES.length];
+		long count = 0L;
+		long sum = 0L;
+		long max = 0L;
+		int window = 0;
+		for (int i=0; i<windowBuckets[windowBuckets.length - 1]; i++) {
+			int base = bucketBase(epoch - i);
+			if (buckets.get(base + EPOCH) == epoch - i) {
+				count += buckets.get(base + COUNT);
+				sum += buckets.get(base + SUM);
+				max = Math.max(max, buckets.get(base + MAX));
+			}
+			if (i + 1 == windowBuckets[window]) {
+				statistics[window * 3] = count;
+				statistics[window * 3 + 1] = count == 0 ? 0L : timeUnit.convert(sum / count, TimeUnit.NANOSECONDS);
+				statistics[window * 3 + 2] = timeUnit.convert(max, TimeUnit.NANOSECONDS);
+				window++;
+			}
+		}
+		return statistics;
+	}
+
+	/* Resets the bucket at the given base for a new interval, unless another thread already did.*/
+	private void rotate(int base, long expectedEpoch, long epoch) {
+		if (buckets.compareAndSet(base + EPOCH, expectedEpoch, epoch)) {
+			buckets.set(base + COUNT, 0L);
+			buckets.set(base + SUM, 0L);
+			buckets.set(base + MAX, 0L);
+		}
+	}
+
+	/* number of the current interval*/
+	private long currentEpoch() {
+		long now = System.nanoTime();
+		long epoch = now / bucketNanos;
+		//round towards negative infinity, nanoTime may be negative
+		return (now < 0 && epoch * bucketNanos != now) ? epoch - 1 : epoch;
+	}
+
+	/* index of the first cell of the bucket for the given interval*/
+	private int bucketBase(long epoch) {
+		int index = (int) (epoch % bucketCount);
+		return (index < 0 ? index + bucketCount : index) * FIELDS;
+	}
+}
@@ -0,0 +1,18 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatencyMonitorFactory that creates <code>TimeWindowedLatencyMonitor</code> instances.
+ * Sample size is not used, windows are based on time.
+ * 
+ * @author Yuga Gandikota
+ * @see LatencyMonitorFactory
+ */
+@SharedInstance
+public class TimeWindowedLatencyMonitorFactory implements LatencyMonitorFactory {
+
+	public LatencyMonitor createLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
+		return new TimeWindowedLatencyMonitor(aUnit);
+	}
+}
@@ -0,0 +1,22 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+/**
+ * Optional interface for LatencyMonitor implementations that keep counts or other statistics that 
+ * depend on the number of calls, not only on the distribution of their latencies. Used when calls are
+ * sampled: every recorded sample stands for <code>weight</code> calls.
+ * 
+ * Monitors that only keep averages or percentiles of the samples do not need it, uniform sampling
+ * does not change them.
+ * 
+ * @author Yuga Gandikota
+ * @see Sampler
+ */
+public interface WeightedLatencyMonitor extends LatencyMonitor {
+	
+	/**
+	 * Adds sample that stands for the given number of calls. duration is expected to be in nanoseconds
+	 * @param duration duration is nanoseconds.
+	 * @param weight number of calls the sample stands for, at least 1.
+	 */
+	public void addSample(long duration, long weight);
+}
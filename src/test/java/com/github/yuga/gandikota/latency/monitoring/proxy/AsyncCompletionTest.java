@@ -0,0 +1,112 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Calls returning a CompletionStage, recorded when the stage completes.
+ * 
+ * @author Yuga Gandikota
+ */
+public class AsyncCompletionTest {
+
+	public interface Service {
+		CompletableFuture<String> later();
+		CompletableFuture<String> refused();
+	}
+
+	/* stage that fails to attach callbacks*/
+	static class RefusingFuture extends CompletableFuture<String> {
+		@Override
+		public CompletableFuture<String> whenComplete(BiConsumer<? super String, ? super Throwable> action) {
+			throw new UnsupportedOperationException("no callbacks");
+		}
+	}
+
+	public static class ServiceImpl implements Service {
+		CompletableFuture<String> pending;
+		public CompletableFuture<String> later() {
+			pending = new CompletableFuture<String>();
+			return pending;
+		}
+		public CompletableFuture<String> refused() {
+			return new RefusingFuture();
+		}
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=AsyncReflective", types={Service.class}, monitorKind=MonitorKind.HISTOGRAM, engine=ProxyEngine.REFLECTIVE)
+	public static class ReflectiveServiceImpl extends ServiceImpl {
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=AsyncGenerated", types={Service.class}, monitorKind=MonitorKind.HISTOGRAM, engine=ProxyEngine.GENERATED)
+	public static class GeneratedServiceImpl extends ServiceImpl {
+	}
+
+	private CapturedLog log;
+
+	@Before
+	public void captureLog() {
+		log = CapturedLog.of(LatencyMonitoredProxy.class);
+	}
+
+	@After
+	public void closeLog() {
+		log.close();
+	}
+
+	@Test
+	public void reflectiveCallsEndWhenTheStageCompletes() throws Exception {
+		assertEndWhenTheStageCompletes(new ReflectiveServiceImpl());
+	}
+
+	@Test
+	public void generatedCallsEndWhenTheStageCompletes() throws Exception {
+		assertEndWhenTheStageCompletes(new GeneratedServiceImpl());
+	}
+
+	@Test
+	public void reflectiveCallsEndIfTheStageRefusesCallbacks() throws Exception {
+		assertEndIfTheStageRefusesCallbacks(new ReflectiveServiceImpl());
+	}
+
+	@Test
+	public void generatedCallsEndIfTheStageRefusesCallbacks() throws Exception {
+		assertEndIfTheStageRefusesCallbacks(new GeneratedServiceImpl());
+	}
+
+	private void assertEndWhenTheStageCompletes(ServiceImpl aBean) throws Exception {
+		LatencyMonitoredProxy proxy = proxy(aBean);
+		CompletionStage<String> stage = ((Service) proxy.getProxy()).later();
+		assertEquals(1L, proxy.getAttribute("later().inFlight"));
+		assertEquals(0L, proxy.getAttribute("later().count"));
+		aBean.pending.complete("done");
+		assertEquals("done", stage.toCompletableFuture().get());
+		assertEquals(0L, proxy.getAttribute("later().inFlight"));
+		assertEquals(1L, proxy.getAttribute("later().peakInFlight"));
+		assertEquals(1L, proxy.getAttribute("later().count"));
+	}
+
+	private void assertEndIfTheStageRefusesCallbacks(ServiceImpl aBean) throws Exception {
+		LatencyMonitoredProxy proxy = proxy(aBean);
+		try {
+			((Service) proxy.getProxy()).refused();
+			fail("callback attached");
+		}
+		catch (UnsupportedOperationException e) {
+			//expected
+		}
+		assertEquals(0L, proxy.getAttribute("refused().inFlight"));
+	}
+
+	private static LatencyMonitoredProxy proxy(ServiceImpl aBean) throws Exception {
+		return new LatencyMonitoredProxy(aBean, aBean.getClass().getAnnotation(JMXLatencyMonitored.class));
+	}
+}
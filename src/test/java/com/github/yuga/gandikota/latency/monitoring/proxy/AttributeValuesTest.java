@@ -0,0 +1,51 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.OpenMBeanAttributeInfo;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class AttributeValuesTest {
+
+	@Test
+	public void snapshotKeepsLongValuesExact() {
+		AttributeValues values = new AttributeValues();
+		long large = (1L << 53) + 1;
+		values.add("a()", large, "NANOSECONDS");
+		values.add("a().callsPerSecond", 2.5d, AttributeValues.CALLS_PER_SECOND);
+		TabularData table = values.toTabularData();
+
+		CompositeData row = table.get(new Object[] {"a()"});
+		assertEquals(Long.valueOf(large), row.get("longValue"));
+		assertEquals((double) large, (Double) row.get("value"), 0.0d);
+		assertEquals("NANOSECONDS", row.get("unit"));
+
+		CompositeData rate = table.get(new Object[] {"a().callsPerSecond"});
+		assertNull(rate.get("longValue"));
+		assertEquals(2.5d, (Double) rate.get("value"), 0.0d);
+	}
+
+	@Test
+	public void attributesAreTypedAfterTheirValues() {
+		AttributeValues values = new AttributeValues();
+		values.add("a()", 1L, "NANOSECONDS");
+		values.add("a().callsPerSecond", 1.0d, AttributeValues.CALLS_PER_SECOND);
+		List<OpenMBeanAttributeInfo> infos = new ArrayList<OpenMBeanAttributeInfo>();
+		values.collectAttributeInfos(infos);
+		assertEquals(SimpleType.LONG, infos.get(0).getOpenType());
+		assertEquals(SimpleType.DOUBLE, infos.get(1).getOpenType());
+		assertEquals(AttributeValues.CALLS_PER_SECOND, ((MBeanAttributeInfo) infos.get(1)).getDescriptor().getFieldValue("units"));
+	}
+}
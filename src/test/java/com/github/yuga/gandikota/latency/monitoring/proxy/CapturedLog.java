@@ -0,0 +1,61 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Keeps the events of a logger instead of printing them, so tests can assert on the failures they cause.
+ * 
+ * @author Yuga Gandikota
+ */
+final class CapturedLog extends AppenderSkeleton {
+
+	private final List<LoggingEvent> events = new CopyOnWriteArrayList<LoggingEvent>();
+
+	private final Logger logger;
+
+	private final boolean additivity;
+
+	private CapturedLog(Logger aLogger) {
+		logger = aLogger;
+		additivity = aLogger.getAdditivity();
+	}
+
+	/* Captures the events of the logger of the given class until close()*/
+	static CapturedLog of(Class<?> aType) {
+		CapturedLog log = new CapturedLog(Logger.getLogger(aType));
+		log.logger.addAppender(log);
+		log.logger.setAdditivity(false);
+		return log;
+	}
+
+	/* Events of at least the given level, in the order they were logged*/
+	List<LoggingEvent> getEvents(Level aLevel) {
+		List<LoggingEvent> result = new CopyOnWriteArrayList<LoggingEvent>();
+		for (LoggingEvent event : events) {
+			if (event.getLevel().isGreaterOrEqual(aLevel)) {
+				result.add(event);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	protected void append(LoggingEvent aEvent) {
+		events.add(aEvent);
+	}
+
+	public void close() {
+		logger.removeAppender(this);
+		logger.setAdditivity(additivity);
+	}
+
+	public boolean requiresLayout() {
+		return false;
+	}
+}
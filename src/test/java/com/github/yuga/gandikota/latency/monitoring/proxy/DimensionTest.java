@@ -0,0 +1,102 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.FirstArgumentDimensionExtractor;
+
+/**
+ * Latency broken down by the first argument of the calls.
+ * 
+ * @author Yuga Gandikota
+ */
+public class DimensionTest {
+
+	private static final String KEY = "get(" + String.class.getName() + ")";
+
+	public interface Service {
+		String get(String aTenant);
+		String none();
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=Dimensions", types={Service.class}, maxDimensions=2, units=TimeUnit.NANOSECONDS,
+			dimensionExtractorClass=FirstArgumentDimensionExtractor.class, engine=ProxyEngine.REFLECTIVE)
+	public static class ServiceImpl implements Service {
+		public String get(String aTenant) {
+			if ("bad".equals(aTenant)) {
+				throw new IllegalArgumentException(aTenant);
+			}
+			return aTenant;
+		}
+		public String none() {
+			return null;
+		}
+	}
+
+	private LatencyMonitoredProxy proxy;
+	private Service service;
+	private CapturedLog log;
+
+	@Before
+	public void createProxy() throws Exception {
+		log = CapturedLog.of(LatencyMonitoredProxy.class);
+		proxy = new LatencyMonitoredProxy(new ServiceImpl(), ServiceImpl.class.getAnnotation(JMXLatencyMonitored.class));
+		service = (Service) proxy.getProxy();
+	}
+
+	@After
+	public void closeLog() {
+		log.close();
+	}
+
+	@Test
+	public void callsAreRecordedPerValue() {
+		service.get("a");
+		service.get("a");
+		service.get("b");
+		TabularData table = proxy.dimensions();
+		assertEquals(2L, row(table, "a").get("invocations"));
+		assertEquals(1L, row(table, "b").get("invocations"));
+		assertEquals(0L, row(table, "a").get("errors"));
+		assertEquals("NANOSECONDS", row(table, "a").get("unit"));
+	}
+
+	@Test
+	public void furtherValuesAreRecordedUnderOther() {
+		service.get("a");
+		service.get("b");
+		service.get("c");
+		service.get("d");
+		try {
+			service.get("bad");
+			fail("no exception");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+		TabularData table = proxy.dimensions();
+		assertNull(table.get(new Object[] {KEY, "c"}));
+		assertEquals(3L, row(table, Dimension.OTHER).get("invocations"));
+		assertEquals(1L, row(table, Dimension.OTHER).get("errors"));
+	}
+
+	@Test
+	public void callsWithoutValueAreNotBrokenDown() {
+		service.none();
+		assertEquals(0, proxy.dimensions().size());
+	}
+
+	private static CompositeData row(TabularData aTable, String aDimension) {
+		return aTable.get(new Object[] {KEY, aDimension});
+	}
+}
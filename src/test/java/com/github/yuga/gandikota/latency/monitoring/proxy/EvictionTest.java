@@ -0,0 +1,84 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanAttributeInfo;
+
+import org.junit.Test;
+
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DynamicAttributeNamingStrategy;
+
+/**
+ * Keys of dynamic naming strategies, bounded by maxMonitors.
+ * 
+ * @author Yuga Gandikota
+ */
+public class EvictionTest {
+
+	public interface Service {
+		void call();
+	}
+
+	/* names every call after the current tenant*/
+	public static class TenantNamingStrategy implements DynamicAttributeNamingStrategy {
+		static volatile String tenant = "tenant";
+		public String getAttributeName(Object source, Class<?>[] allTypes, Class<?> type, Method method) {
+			return tenant;
+		}
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=Tenants", types={Service.class}, maxMonitors=4, monitorKind=MonitorKind.HISTOGRAM,
+			namingStrategyClass=TenantNamingStrategy.class, engine=ProxyEngine.REFLECTIVE)
+	public static class ServiceImpl implements Service {
+		public void call() {
+		}
+	}
+
+	@Test
+	public void leastRecentKeysAreEvictedIntoOther() throws Exception {
+		LatencyMonitoredProxy proxy = new LatencyMonitoredProxy(new ServiceImpl(), ServiceImpl.class.getAnnotation(JMXLatencyMonitored.class));
+		Service service = (Service) proxy.getProxy();
+		for (int i=0; i<10; i++) {
+			TenantNamingStrategy.tenant = "tenant" + i;
+			service.call();
+			service.call();
+		}
+		long evicted = (Long) proxy.getAttribute("other.evicted");
+		assertTrue(evicted >= 6);
+
+		//every call is counted by a kept key or by other, samples of evicted keys are merged into other
+		long invocations = (Long) proxy.getAttribute("other.invocations");
+		long kept = 0;
+		for (int i=0; i<10; i++) {
+			try {
+				invocations += (Long) proxy.getAttribute("tenant" + i + ".invocations");
+				kept++;
+			}
+			catch (AttributeNotFoundException e) {
+				//evicted
+			}
+		}
+		assertEquals(20L, invocations);
+		assertTrue(kept <= 4);
+		assertEquals(proxy.getAttribute("other.invocations"), proxy.getAttribute("other.count"));
+		//the most recent key is kept
+		assertEquals(2L, proxy.getAttribute("tenant9.invocations"));
+	}
+
+	@Test
+	public void attributesOfEvictedKeysAreUnpublished() throws Exception {
+		LatencyMonitoredProxy proxy = new LatencyMonitoredProxy(new ServiceImpl(), ServiceImpl.class.getAnnotation(JMXLatencyMonitored.class));
+		Service service = (Service) proxy.getProxy();
+		for (int i=0; i<10; i++) {
+			TenantNamingStrategy.tenant = "tenant" + i;
+			service.call();
+		}
+		for (MBeanAttributeInfo info : proxy.getMBeanInfo().getAttributes()) {
+			assertTrue(info.getName(), !info.getName().startsWith("tenant0."));
+		}
+	}
+}
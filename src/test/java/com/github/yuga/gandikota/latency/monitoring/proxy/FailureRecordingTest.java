@@ -0,0 +1,86 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import javax.management.AttributeNotFoundException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Failed calls, timed or only counted.
+ * 
+ * @author Yuga Gandikota
+ */
+public class FailureRecordingTest {
+
+	public interface Service {
+		void fail() throws IOException;
+	}
+
+	public static class ServiceImpl implements Service {
+		public void fail() throws IOException {
+			throw new IOException("failed");
+		}
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=Timed", types={Service.class})
+	public static class TimedServiceImpl extends ServiceImpl {
+	}
+
+	/* practically never timed*/
+	@JMXLatencyMonitored(beanName="test:name=Unsampled", types={Service.class}, sampleRate=Integer.MAX_VALUE)
+	public static class UnsampledServiceImpl extends ServiceImpl {
+	}
+
+	private CapturedLog log;
+
+	@Before
+	public void captureLog() {
+		log = CapturedLog.of(LatencyMonitoredProxy.class);
+	}
+
+	@After
+	public void closeLog() {
+		log.close();
+	}
+
+	@Test
+	public void timedFailuresHaveLatency() throws Exception {
+		LatencyMonitoredProxy proxy = callFail(new TimedServiceImpl());
+		assertEquals(1L, proxy.getAttribute("fail().errors"));
+		assertEquals(1L, proxy.getAttribute("fail().errors." + IOException.class.getName()));
+		proxy.getAttribute("fail().failed");
+	}
+
+	@Test
+	public void unsampledFailuresAreOnlyCounted() throws Exception {
+		LatencyMonitoredProxy proxy = callFail(new UnsampledServiceImpl());
+		assertEquals(1L, proxy.getAttribute("fail().invocations"));
+		assertEquals(1L, proxy.getAttribute("fail().errors"));
+		assertEquals(1L, proxy.getAttribute("fail().errors." + IOException.class.getName()));
+		try {
+			proxy.getAttribute("fail().failed");
+			fail("failure monitor created");
+		}
+		catch (AttributeNotFoundException e) {
+			//expected
+		}
+	}
+
+	private static LatencyMonitoredProxy callFail(ServiceImpl aBean) throws Exception {
+		LatencyMonitoredProxy proxy = new LatencyMonitoredProxy(aBean, aBean.getClass().getAnnotation(JMXLatencyMonitored.class));
+		try {
+			((Service) proxy.getProxy()).fail();
+			fail("no exception");
+		}
+		catch (IOException e) {
+			//expected
+		}
+		return proxy;
+	}
+}
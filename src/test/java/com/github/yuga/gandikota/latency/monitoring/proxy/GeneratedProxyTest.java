@@ -0,0 +1,119 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Calls recorded by proxies of the GENERATED engine.
+ * 
+ * @author Yuga Gandikota
+ */
+public class GeneratedProxyTest {
+
+	public interface Service {
+		int add(int a, int b);
+		void fail() throws IOException;
+		CompletableFuture<String> later();
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=Generated", types={Service.class}, monitorKind=MonitorKind.HISTOGRAM, engine=ProxyEngine.GENERATED)
+	public static class ServiceImpl implements Service {
+		CompletableFuture<String> pending;
+		public int add(int a, int b) {
+			return a + b;
+		}
+		public void fail() throws IOException {
+			throw new IOException("failed");
+		}
+		public CompletableFuture<String> later() {
+			pending = new CompletableFuture<String>();
+			return pending;
+		}
+	}
+
+	private ServiceImpl bean;
+	private LatencyMonitoredProxy proxy;
+	private Service service;
+
+	private CapturedLog log;
+
+	@Before
+	public void createProxy() throws Exception {
+		log = CapturedLog.of(LatencyMonitoredProxy.class);
+		bean = new ServiceImpl();
+		proxy = new LatencyMonitoredProxy(bean, ServiceImpl.class.getAnnotation(JMXLatencyMonitored.class));
+		service = (Service) proxy.getProxy();
+	}
+
+	@After
+	public void closeLog() {
+		log.close();
+	}
+
+	@Test
+	public void proxyIsGenerated() {
+		assertFalse(java.lang.reflect.Proxy.isProxyClass(service.getClass()));
+	}
+
+	@Test
+	public void recordsSuccessfulCalls() throws Exception {
+		assertEquals(5, service.add(2, 3));
+		assertEquals(7, service.add(3, 4));
+		assertEquals(2L, proxy.getAttribute("add(int,int).invocations"));
+		assertEquals(2L, proxy.getAttribute("add(int,int).count"));
+		assertEquals(0L, proxy.getAttribute("add(int,int).inFlight"));
+	}
+
+	@Test
+	public void recordsFailedCalls() throws Exception {
+		try {
+			service.fail();
+			fail("exception of the bean was not thrown");
+		}
+		catch (IOException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		assertEquals(1L, proxy.getAttribute("fail().invocations"));
+		assertEquals(1L, proxy.getAttribute("fail().errors"));
+		assertEquals(1L, proxy.getAttribute("fail().errors.java.io.IOException"));
+		assertEquals(1L, proxy.getAttribute("fail().failed.count"));
+		assertEquals(0L, proxy.getAttribute("fail().count"));
+		assertLogged(IOException.class);
+	}
+
+	@Test
+	public void recordsCompletionStagesWhenTheyComplete() throws Exception {
+		CompletableFuture<String> result = service.later();
+		assertSame(bean.pending, result);
+		assertEquals(1L, proxy.getAttribute("later().inFlight"));
+		assertEquals(0L, proxy.getAttribute("later().count"));
+		result.complete("done");
+		assertEquals(0L, proxy.getAttribute("later().inFlight"));
+		assertEquals(1L, proxy.getAttribute("later().count"));
+
+		service.later().completeExceptionally(new IllegalStateException());
+		assertEquals(2L, proxy.getAttribute("later().invocations"));
+		assertEquals(1L, proxy.getAttribute("later().errors.java.lang.IllegalStateException"));
+		assertEquals(0L, proxy.getAttribute("later().inFlight"));
+		assertLogged(IllegalStateException.class);
+	}
+
+	/* Failures of the bean are logged once, with their exception*/
+	private void assertLogged(Class<? extends Throwable> aType) {
+		List<LoggingEvent> errors = log.getEvents(Level.ERROR);
+		assertEquals(1, errors.size());
+		assertSame(aType, errors.get(0).getThrowableInformation().getThrowable().getClass());
+	}
+}
@@ -0,0 +1,60 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class MonitorSettingsTest {
+
+	public interface Service {
+		void plain();
+
+		@JMXLatencyMonitoredMethod(units=MethodUnits.MICROSECONDS, sampleSize=10)
+		void first();
+
+		@JMXLatencyMonitoredMethod(units=MethodUnits.MICROSECONDS, sampleSize=10)
+		void second();
+
+		@JMXLatencyMonitoredMethod(sampleSize=10)
+		void beanUnits();
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=Settings", types={Service.class}, units=TimeUnit.SECONDS)
+	public static class ServiceImpl {
+	}
+
+	private final MonitorSettings bean = MonitorSettings.of(ServiceImpl.class.getAnnotation(JMXLatencyMonitored.class));
+
+	@Test
+	public void methodsWithoutAnnotationUseTheBeanSettings() throws Exception {
+		assertSame(bean, settingsOf("plain"));
+	}
+
+	@Test
+	public void methodsAnnotatedAlikeHaveEqualSettings() throws Exception {
+		MonitorSettings first = settingsOf("first");
+		MonitorSettings second = settingsOf("second");
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+		assertEquals(TimeUnit.MICROSECONDS, first.units);
+		assertFalse(first.equals(bean));
+	}
+
+	@Test
+	public void beanUnitsAreKeptByDefault() throws Exception {
+		MonitorSettings settings = settingsOf("beanUnits");
+		assertEquals(TimeUnit.SECONDS, settings.units);
+		assertEquals(10, settings.sampleSize);
+	}
+
+	private MonitorSettings settingsOf(String aMethod) throws Exception {
+		return MonitorSettings.of(bean, Service.class.getMethod(aMethod));
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DynamicAttributeNamingStrategy;
+
+/**
+ * Self time of nested calls and the edges they add to the CallGraph.
+ * 
+ * @author Yuga Gandikota
+ */
+public class SelfTimeTest {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static final String CALL = "call(" + Inner.class.getName() + ",long,long)";
+
+	public interface Inner {
+		void work(long aMillis) throws InterruptedException;
+	}
+
+	public interface Outer {
+		void call(Inner aInner, long aOwnMillis, long aInnerMillis) throws InterruptedException;
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=SelfInner", types={Inner.class}, units=TimeUnit.NANOSECONDS, selfTime=true)
+	public static class InnerImpl implements Inner {
+		public void work(long aMillis) throws InterruptedException {
+			Thread.sleep(aMillis);
+		}
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=SelfOuter", types={Outer.class}, units=TimeUnit.NANOSECONDS, selfTime=true)
+	public static class OuterImpl implements Outer {
+		public void call(Inner aInner, long aOwnMillis, long aInnerMillis) throws InterruptedException {
+			Thread.sleep(aOwnMillis);
+			aInner.work(aInnerMillis);
+		}
+	}
+
+	/* names every call of the keyed bean after the current key*/
+	public static class CurrentKeyNamingStrategy implements DynamicAttributeNamingStrategy {
+		static volatile String key = "key";
+		public String getAttributeName(Object source, Class<?>[] allTypes, Class<?> type, Method method) {
+			return key;
+		}
+	}
+
+	@JMXLatencyMonitored(beanName="test:name=SelfKeyed", types={Inner.class}, units=TimeUnit.NANOSECONDS, selfTime=true, maxMonitors=2,
+			namingStrategyClass=CurrentKeyNamingStrategy.class, engine=ProxyEngine.REFLECTIVE)
+	public static class KeyedImpl extends InnerImpl {
+	}
+
+	@Test
+	public void nestedCallsAreNotSelfTime() throws Exception {
+		LatencyMonitoredProxy innerProxy = proxy(new InnerImpl());
+		LatencyMonitoredProxy outerProxy = proxy(new OuterImpl());
+		Inner inner = (Inner) innerProxy.getProxy();
+		((Outer) outerProxy.getProxy()).call(inner, 10, 30);
+
+		long total = (Long) outerProxy.getAttribute(CALL);
+		long self = (Long) outerProxy.getAttribute(CALL + ".self");
+		long innerTotal = (Long) innerProxy.getAttribute("work(long)");
+		assertTrue(total >= 40 * MILLIS);
+		assertTrue(self >= 10 * MILLIS);
+		assertEquals(total - innerTotal, self, MILLIS);
+
+		CompositeData edge = CallGraph.getInstance().getEdges().get(new Object[] {"test:name=SelfOuter/" + CALL, "test:name=SelfInner/work(long)"});
+		assertEquals(1L, edge.get("calls"));
+		assertEquals(innerTotal, ((Long) edge.get("totalNanos")).longValue(), 5 * MILLIS);
+	}
+
+	@Test
+	public void edgesOfEvictedKeysAreRemoved() throws Exception {
+		Inner keyed = (Inner) proxy(new KeyedImpl()).getProxy();
+		Outer outer = (Outer) proxy(new OuterImpl()).getProxy();
+		int edges = CallGraph.getInstance().getEdgeCount();
+		for (int i=0; i<10; i++) {
+			CurrentKeyNamingStrategy.key = "key" + i;
+			outer.call(keyed, 0, 0);
+		}
+		//an edge to the called method and to each key kept
+		assertTrue(CallGraph.getInstance().getEdgeCount() - edges <= 3);
+	}
+
+	private static LatencyMonitoredProxy proxy(Object aBean) throws Exception {
+		return new LatencyMonitoredProxy(aBean, aBean.getClass().getAnnotation(JMXLatencyMonitored.class));
+	}
+}
@@ -0,0 +1,50 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import com.github.yuga.gandikota.latency.monitoring.exception.LatencyMonitoringProxyException;
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.AttributeNamingStrategy;
+import com.github.yuga.gandikota.latency.monitoring.proxy.naming.DefaultAttributeNamingStrategy;
+import com.github.yuga.gandikota.latency.monitoring.utils.LatencyMonitorFactory;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class SharedInstancesTest {
+
+	/* keeps state of its bean, not marked*/
+	public static class CountingNamingStrategy implements AttributeNamingStrategy {
+		int names;
+		public String getAttributeName(Object source, Class<?>[] allTypes, Class<?> type, Method method) {
+			return method.getName() + names++;
+		}
+	}
+
+	/* subclass of a marked class, not marked itself*/
+	public static class PrefixNamingStrategy extends DefaultAttributeNamingStrategy {
+	}
+
+	@Test
+	public void markedClassesAreShared() throws Exception {
+		assertSame(SharedInstances.get(DefaultAttributeNamingStrategy.class, AttributeNamingStrategy.class), 
+				SharedInstances.get(DefaultAttributeNamingStrategy.class, AttributeNamingStrategy.class));
+	}
+
+	@Test
+	public void otherClassesAreCreatedForEveryBean() throws Exception {
+		assertNotSame(SharedInstances.get(CountingNamingStrategy.class, AttributeNamingStrategy.class), 
+				SharedInstances.get(CountingNamingStrategy.class, AttributeNamingStrategy.class));
+		assertNotSame(SharedInstances.get(PrefixNamingStrategy.class, AttributeNamingStrategy.class), 
+				SharedInstances.get(PrefixNamingStrategy.class, AttributeNamingStrategy.class));
+	}
+
+	@Test(expected = LatencyMonitoringProxyException.class)
+	public void classHasToBeOfTheExpectedType() throws Exception {
+		SharedInstances.get(CountingNamingStrategy.class.getName(), LatencyMonitorFactory.class);
+	}
+}
@@ -0,0 +1,100 @@
+package com.github.yuga.gandikota.latency.monitoring.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class SloStateTest {
+
+	private static final long EVALUATION_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	private final SloState slo = new SloState("a()", 100, 3);
+
+	private long now = System.nanoTime();
+
+	@Test
+	public void breachesAfterConsecutiveEvaluations() {
+		assertEquals(SloState.UNCHANGED, evaluate(150));
+		assertEquals(SloState.UNCHANGED, evaluate(150));
+		//a value below the threshold starts over
+		assertEquals(SloState.UNCHANGED, evaluate(50));
+		assertEquals(SloState.UNCHANGED, evaluate(150));
+		assertEquals(SloState.UNCHANGED, evaluate(150));
+		assertFalse(slo.isBreached());
+		assertEquals(SloState.BREACHED, evaluate(150));
+		assertTrue(slo.isBreached());
+		assertEquals(SloState.UNCHANGED, evaluate(150));
+	}
+
+	@Test
+	public void recoversBelowRecoveryLevelOnly() {
+		breach();
+		now += SloState.MIN_NOTIFICATION_INTERVAL_NANOS;
+		//below the threshold, above the recovery level: no flapping
+		for (int i=0; i<10; i++) {
+			assertEquals(SloState.UNCHANGED, evaluate(95));
+		}
+		assertEquals(SloState.UNCHANGED, evaluate(89));
+		assertEquals(SloState.UNCHANGED, evaluate(89));
+		assertEquals(SloState.RECOVERED, evaluate(89));
+		assertFalse(slo.isBreached());
+	}
+
+	@Test
+	public void comparesFractionalValues() {
+		SloState fractional = new SloState("a()", 1, 1);
+		assertEquals(SloState.BREACHED, fractional.evaluate(1.5d, now));
+	}
+
+	@Test
+	public void smallThresholdRecovers() {
+		SloState small = new SloState("a()", 1, 1);
+		assertEquals(SloState.BREACHED, small.evaluate(2, now));
+		now += SloState.MIN_NOTIFICATION_INTERVAL_NANOS;
+		assertEquals(SloState.UNCHANGED, small.evaluate(0.95d, now));
+		assertEquals(SloState.RECOVERED, small.evaluate(0.5d, now));
+	}
+
+	@Test
+	public void changesAreRateLimited() {
+		breach();
+		//recovery within the interval is held back, and reported once the interval has passed
+		for (int i=0; i<5; i++) {
+			assertEquals(SloState.UNCHANGED, evaluate(10));
+		}
+		assertTrue(slo.isBreached());
+		now += SloState.MIN_NOTIFICATION_INTERVAL_NANOS;
+		assertEquals(SloState.RECOVERED, evaluate(10));
+	}
+
+	@Test
+	public void heldBackChangeIsDroppedIfItNoLongerHolds() {
+		breach();
+		assertEquals(SloState.UNCHANGED, evaluate(10));
+		assertEquals(SloState.UNCHANGED, evaluate(10));
+		assertEquals(SloState.UNCHANGED, evaluate(10));
+		now += SloState.MIN_NOTIFICATION_INTERVAL_NANOS;
+		//back above the recovery level before the interval passed
+		assertEquals(SloState.UNCHANGED, evaluate(150));
+		assertEquals(SloState.UNCHANGED, evaluate(10));
+		assertTrue(slo.isBreached());
+	}
+
+	private void breach() {
+		evaluate(150);
+		evaluate(150);
+		assertEquals(SloState.BREACHED, evaluate(150));
+	}
+
+	private int evaluate(double aValue) {
+		now += EVALUATION_NANOS;
+		return slo.evaluate(aValue, now);
+	}
+}
@@ -0,0 +1,125 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class AtomicLongCircularBufferTest {
+
+	@Test
+	public void keepsTheLastSamples() {
+		AtomicLongCircularBuffer buffer = new AtomicLongCircularBuffer(4);
+		assertEquals(0, buffer.getLongSnapshot().length);
+		buffer.add(1L);
+		buffer.add(Long.valueOf(2L));
+		buffer.add((Long) null);
+		assertArrayEquals(new long[] {1, 2}, buffer.getLongSnapshot());
+		for (long sample=3; sample<=10; sample++) {
+			buffer.add(sample);
+		}
+		assertEquals(10, buffer.getCount());
+		assertEquals(4, buffer.size());
+		//slots are overwritten in turn: 9, 10, 7, 8
+		assertArrayEquals(new long[] {9, 10, 7, 8}, buffer.getLongSnapshot());
+		assertArrayEquals(new Long[] {9L, 10L, 7L, 8L}, buffer.getSnapshot());
+	}
+
+	@Test
+	public void sumFollowsTheSamplesInTheBuffer() {
+		AtomicLongCircularBuffer buffer = new AtomicLongCircularBuffer(4);
+		assertEquals(0, buffer.getSum());
+		buffer.add(1L);
+		buffer.add(2L);
+		assertEquals(3, buffer.getSum());
+		for (long sample=3; sample<=10; sample++) {
+			buffer.add(sample);
+		}
+		assertEquals(7 + 8 + 9 + 10, buffer.getSum());
+	}
+
+	@Test
+	public void sumIsExactAfterConcurrentWriters() throws Exception {
+		final AtomicLongCircularBuffer buffer = new AtomicLongCircularBuffer(64);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t=0; t<8; t++) {
+			final long sample = t + 1;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i=0; i<100000; i++) {
+						buffer.add(sample);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long sum = 0;
+		for (long sample : buffer.getLongSnapshot()) {
+			sum += sample;
+		}
+		assertEquals(sum, buffer.getSum());
+	}
+
+	@Test
+	public void averageUsesTheRunningSum() {
+		SimpleLatencyMonitor monitor = new SimpleLatencyMonitor(3, TimeUnit.MICROSECONDS);
+		assertEquals(0, monitor.getAverage());
+		monitor.addSample(1000);
+		monitor.addSample(2000);
+		assertEquals(1, monitor.getAverage());
+		monitor.addSample(9000);
+		monitor.addSample(10000);
+		assertEquals(7, monitor.getAverage());
+	}
+
+	@Test
+	public void rejectsEmptyBuffers() {
+		try {
+			new AtomicLongCircularBuffer(0);
+			fail("created buffer without slots");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void concurrentWritersClaimEverySlotOnce() throws Exception {
+		final AtomicLongCircularBuffer buffer = new AtomicLongCircularBuffer(800000);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t=0; t<8; t++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i=0; i<100000; i++) {
+						buffer.add(1L);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(800000, buffer.getCount());
+		for (long sample : buffer.getLongSnapshot()) {
+			assertEquals(1L, sample);
+		}
+	}
+}
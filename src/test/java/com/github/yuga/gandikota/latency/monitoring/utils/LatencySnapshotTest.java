@@ -0,0 +1,140 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class LatencySnapshotTest {
+
+	private static final double[] PERCENTILES = {50.0d, 90.0d, 99.0d, 99.9d};
+
+	@Test
+	public void roundTripKeepsTheDistribution() {
+		HistogramLatencyMonitor monitor = new HistogramLatencyMonitor(60000000000L, 3, TimeUnit.MILLISECONDS);
+		Random random = new Random(1);
+		for (int i=0; i<50000; i++) {
+			monitor.addSample(1000 + random.nextInt(100000000));
+		}
+		LatencySnapshot snapshot = monitor.getSnapshot();
+		LatencySnapshot read = LatencySnapshot.fromByteArray(snapshot.toByteArray());
+		assertEquals(snapshot.getCount(), read.getCount());
+		assertEquals(snapshot.getMin(), read.getMin());
+		assertEquals(snapshot.getMax(), read.getMax());
+		assertEquals(snapshot.getMean(), read.getMean());
+		assertEquals(60000000000L, read.getHighestTrackableValue());
+		assertEquals(3, read.getSignificantDigits());
+		assertArrayEquals(snapshot.getValuesAtPercentiles(PERCENTILES), read.getValuesAtPercentiles(PERCENTILES));
+		assertArrayEquals(snapshot.toByteArray(), read.toByteArray());
+	}
+
+	@Test
+	public void mergedSnapshotsMatchOneHistogramOfAllSamples() {
+		HistogramLatencyMonitor first = new HistogramLatencyMonitor(60000000000L, 2, TimeUnit.MILLISECONDS);
+		HistogramLatencyMonitor second = new HistogramLatencyMonitor(60000000000L, 2, TimeUnit.MILLISECONDS);
+		HistogramLatencyMonitor all = new HistogramLatencyMonitor(60000000000L, 2, TimeUnit.MILLISECONDS);
+		Random random = new Random(2);
+		for (int i=0; i<100000; i++) {
+			//two nodes with different latencies, the percentiles of the fleet are not the average of theirs
+			long fast = 1000 + random.nextInt(1000000);
+			long slow = 5000000 + random.nextInt(50000000);
+			first.addSample(fast);
+			second.addSample(slow);
+			all.addSample(fast);
+			all.addSample(slow);
+		}
+		LatencySnapshot merged = LatencySnapshot.fromByteArray(first.getSnapshot().toByteArray());
+		merged.merge(LatencySnapshot.fromByteArray(second.getSnapshot().toByteArray()));
+		LatencySnapshot expected = all.getSnapshot();
+		assertEquals(expected.getCount(), merged.getCount());
+		assertEquals(expected.getMin(), merged.getMin());
+		assertEquals(expected.getMax(), merged.getMax());
+		assertEquals(expected.getMean(), merged.getMean());
+		assertArrayEquals(expected.getValuesAtPercentiles(PERCENTILES), merged.getValuesAtPercentiles(PERCENTILES));
+	}
+
+	@Test
+	public void bufferSnapshotsUseTheDefaultLayout() {
+		SimpleLatencyMonitor buffer = new SimpleLatencyMonitor(1000, TimeUnit.MILLISECONDS);
+		HistogramLatencyMonitor histogram = new HistogramLatencyMonitor(HistogramLatencyMonitorFactory.DEFAULT_HIGHEST_TRACKABLE_NANOS, 
+				HistogramLatencyMonitorFactory.DEFAULT_SIGNIFICANT_DIGITS, TimeUnit.MILLISECONDS);
+		for (int i=1; i<=1000; i++) {
+			buffer.addSample(i * 1000L);
+			histogram.addSample(i * 1000L);
+		}
+		LatencySnapshot merged = buffer.getSnapshot();
+		merged.merge(histogram.getSnapshot());
+		assertEquals(2000, merged.getCount());
+		assertArrayEquals(histogram.getSnapshot().getValuesAtPercentiles(PERCENTILES), merged.getValuesAtPercentiles(PERCENTILES));
+	}
+
+	@Test
+	public void stripedSnapshotMergesItsStripes() {
+		StripedLatencyMonitor striped = new StripedLatencyMonitor(new HistogramLatencyMonitorFactory(), 100, TimeUnit.MILLISECONDS, 4);
+		for (int i=1; i<=1000; i++) {
+			striped.addSample(i);
+		}
+		assertEquals(1000, striped.getSnapshot().getCount());
+		assertNull(new StripedLatencyMonitor(new TimeWindowedLatencyMonitorFactory(), 100, TimeUnit.MILLISECONDS, 2).getSnapshot());
+	}
+
+	@Test
+	public void emptySnapshotRoundTrips() {
+		LatencySnapshot empty = LatencySnapshot.ofSamples(new long[0]);
+		LatencySnapshot read = LatencySnapshot.fromByteArray(empty.toByteArray());
+		assertEquals(0, read.getCount());
+		assertArrayEquals(new long[PERCENTILES.length], read.getValuesAtPercentiles(PERCENTILES));
+	}
+
+	@Test
+	public void differentLayoutsDoNotMerge() {
+		LatencySnapshot first = new HistogramLatencyMonitor(60000000000L, 2, TimeUnit.MILLISECONDS).getSnapshot();
+		try {
+			first.merge(new HistogramLatencyMonitor(1000000L, 2, TimeUnit.MILLISECONDS).getSnapshot());
+			fail("merged snapshots with different ranges");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			first.merge(new HistogramLatencyMonitor(60000000000L, 3, TimeUnit.MILLISECONDS).getSnapshot());
+			fail("merged snapshots with different precisions");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void invalidBytesAreRejected() {
+		HistogramLatencyMonitor monitor = new HistogramLatencyMonitor(60000000000L, 2, TimeUnit.MILLISECONDS);
+		monitor.addSample(12345);
+		byte[] bytes = monitor.getSnapshot().toByteArray();
+		assertRejected(Arrays.copyOf(bytes, bytes.length - 1));
+		byte[] magic = bytes.clone();
+		magic[0]++;
+		assertRejected(magic);
+		byte[] version = bytes.clone();
+		version[4] = LatencySnapshot.VERSION + 1;
+		assertRejected(version);
+	}
+
+	private static void assertRejected(byte[] aBytes) {
+		try {
+			LatencySnapshot.fromByteArray(aBytes);
+			fail("read invalid snapshot");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+}
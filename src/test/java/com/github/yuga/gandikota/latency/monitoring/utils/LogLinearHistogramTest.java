@@ -0,0 +1,81 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class LogLinearHistogramTest {
+
+	private static final double[] PERCENTILES = {1.0d, 50.0d, 90.0d, 99.0d, 99.9d, 100.0d};
+
+	@Test
+	public void percentilesAreWithinPrecision() {
+		for (int digits=1; digits<=3; digits++) {
+			LogLinearHistogram histogram = new LogLinearHistogram(3600000000000L, digits);
+			for (long value=1; value<=100000; value++) {
+				histogram.recordValue(value * 1000);
+			}
+			long[] values = histogram.getValuesAtPercentiles(PERCENTILES);
+			double precision = Math.pow(10, -digits);
+			for (int i=0; i<PERCENTILES.length; i++) {
+				long exact = (long) (PERCENTILES[i] * 1000) * 1000;
+				assertTrue("p" + PERCENTILES[i] + " with " + digits + " digits: " + values[i] + " expected about " + exact, 
+						Math.abs(values[i] - exact) <= exact * precision);
+			}
+		}
+	}
+
+	@Test
+	public void totalsAreExact() {
+		LogLinearHistogram histogram = new LogLinearHistogram(60000000000L, 2);
+		histogram.recordValue(1234567);
+		histogram.recordValue(7);
+		histogram.recordValue(89, 2);
+		assertEquals(4, histogram.getTotalCount());
+		assertEquals(1234567 + 7 + 89 * 2, histogram.getSum());
+		assertEquals(7, histogram.getMin());
+		assertEquals(1234567, histogram.getMax());
+		assertEquals((1234567 + 7 + 89 * 2) / 4, histogram.getMean());
+	}
+
+	@Test
+	public void valuesOutOfRangeAreClamped() {
+		LogLinearHistogram histogram = new LogLinearHistogram(1000, 2);
+		histogram.recordValue(-5);
+		histogram.recordValue(5000);
+		assertEquals(2, histogram.getTotalCount());
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(1000, histogram.getMax());
+		assertEquals(1000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void emptyHistogramReturnsZeros() {
+		LogLinearHistogram histogram = new LogLinearHistogram(1000, 2);
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void addedHistogramsMatchOneHistogram() {
+		LogLinearHistogram a = new LogLinearHistogram(60000000000L, 2);
+		LogLinearHistogram b = a.newEmptyCopy();
+		LogLinearHistogram all = a.newEmptyCopy();
+		for (long value=1; value<=10000; value++) {
+			(value % 3 == 0 ? a : b).recordValue(value * 997);
+			all.recordValue(value * 997);
+		}
+		a.add(b);
+		assertEquals(all.getTotalCount(), a.getTotalCount());
+		assertEquals(all.getMin(), a.getMin());
+		assertEquals(all.getMax(), a.getMax());
+		assertEquals(all.getMean(), a.getMean());
+		assertArrayEquals(all.getValuesAtPercentiles(PERCENTILES), a.getValuesAtPercentiles(PERCENTILES));
+	}
+}
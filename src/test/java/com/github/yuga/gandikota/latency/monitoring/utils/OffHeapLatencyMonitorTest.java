@@ -0,0 +1,73 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class OffHeapLatencyMonitorTest {
+
+	private final OffHeapSlab slab = new OffHeapSlab(1 << 16, 16);
+
+	private final OffHeapLatencyMonitorFactory factory = new OffHeapLatencyMonitorFactory(slab);
+
+	@Test
+	public void averageOfTheLastSamples() {
+		LatencyMonitor monitor = factory.createLatencyMonitor(10, TimeUnit.NANOSECONDS);
+		assertTrue(monitor instanceof OffHeapLatencyMonitor);
+		assertEquals(0, monitor.getAverage());
+		for (int i=1; i<=25; i++) {
+			monitor.addSample(i);
+		}
+		assertEquals((16 + 25) / 2, monitor.getAverage());
+	}
+
+	@Test
+	public void stripedReadsDoNotTakeRegions() {
+		StripedLatencyMonitor monitor = new StripedLatencyMonitor(factory, 10, TimeUnit.NANOSECONDS, 4);
+		assertEquals(4, slab.getRegionCount());
+		for (int i=0; i<100; i++) {
+			monitor.addSample(i);
+			monitor.getAverage();
+			monitor.read();
+		}
+		assertEquals(4, slab.getRegionCount());
+		assertEquals(0, slab.getFailedAllocations());
+	}
+
+	@Test
+	public void releasedRegionsAreReused() {
+		OffHeapLatencyMonitor first = (OffHeapLatencyMonitor) factory.createLatencyMonitor(10, TimeUnit.NANOSECONDS);
+		first.addSample(100);
+		int usedBytes = slab.getUsedBytes();
+		first.release();
+		first.release();
+		assertEquals(0, slab.getRegionCount());
+		//ignored once released
+		first.addSample(100);
+		
+		OffHeapLatencyMonitor second = (OffHeapLatencyMonitor) factory.createLatencyMonitor(10, TimeUnit.NANOSECONDS);
+		assertEquals(1, slab.getRegionCount());
+		assertEquals(usedBytes, slab.getUsedBytes());
+		assertEquals(0, second.getAverage());
+		second.addSample(7);
+		assertEquals(7, second.getAverage());
+		//the released monitor does not write to the region it gave back
+		first.addSample(100);
+		assertEquals(7, second.getAverage());
+	}
+
+	@Test
+	public void fullSlabFallsBackToTheHeap() {
+		OffHeapSlab small = new OffHeapSlab(80, 16);
+		OffHeapLatencyMonitorFactory smallFactory = new OffHeapLatencyMonitorFactory(small);
+		assertTrue(smallFactory.createLatencyMonitor(10, TimeUnit.NANOSECONDS) instanceof OffHeapLatencyMonitor);
+		assertTrue(smallFactory.createLatencyMonitor(10, TimeUnit.NANOSECONDS) instanceof SimpleLatencyMonitor);
+		assertEquals(1, small.getFailedAllocations());
+	}
+}
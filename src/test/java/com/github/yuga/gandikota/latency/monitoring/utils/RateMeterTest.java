@@ -0,0 +1,38 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class RateMeterTest {
+
+	@Test
+	public void eventsWithoutTimeAreCountedFromTheLastSnapshot() {
+		RateMeter meter = new RateMeter(10);
+		meter.mark(System.nanoTime() - TimeUnit.SECONDS.toNanos(5));
+		for (int i=0; i<49; i++) {
+			meter.mark();
+		}
+		assertEquals(50, meter.getCount());
+		//5 seconds, or 6 if a second starts during the test
+		assertEquals(10.0d, meter.getRate(), 50 / 5.0d - 50 / 6.0d);
+	}
+
+	@Test
+	public void noRateWithoutSnapshotInTheWindow() {
+		RateMeter meter = new RateMeter(10);
+		meter.mark(System.nanoTime() - TimeUnit.SECONDS.toNanos(30));
+		meter.mark();
+		assertEquals(0.0d, meter.getRate(), 0.0d);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void windowHasToBePositive() {
+		new RateMeter(0);
+	}
+}
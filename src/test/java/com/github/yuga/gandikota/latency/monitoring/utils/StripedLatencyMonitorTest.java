@@ -0,0 +1,82 @@
+package com.github.yuga.gandikota.latency.monitoring.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Yuga Gandikota
+ */
+public class StripedLatencyMonitorTest {
+
+	@Test
+	public void stripeCountIsRoundedUpToAPowerOfTwo() {
+		assertEquals(1, new StripedLatencyMonitor(new SimpleLatencyMonitorFactory(), 10, TimeUnit.NANOSECONDS, 0).getStripeCount());
+		assertEquals(4, new StripedLatencyMonitor(new SimpleLatencyMonitorFactory(), 10, TimeUnit.NANOSECONDS, 3).getStripeCount());
+		assertEquals(8, new StripedLatencyMonitor(new SimpleLatencyMonitorFactory(), 10, TimeUnit.NANOSECONDS, 8).getStripeCount());
+	}
+
+	@Test
+	public void averageOfAllThreads() throws Exception {
+		final StripedLatencyMonitor monitor = new StripedLatencyMonitor(new SimpleLatencyMonitorFactory(), 100, TimeUnit.NANOSECONDS, 4);
+		Thread[] threads = new Thread[4];
+		for (int i=0; i<threads.length; i++) {
+			final long duration = (i + 1) * 100;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j=0; j<50; j++) {
+						monitor.addSample(duration);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(250, monitor.getAverage());
+		assertEquals(250, monitor.read().getAverage());
+	}
+
+	@Test
+	public void statisticsAreReadFromTheMergedStripes() {
+		StripedLatencyMonitor monitor = new StripedLatencyMonitor(new HistogramLatencyMonitorFactory(), 100, TimeUnit.NANOSECONDS, 2);
+		for (int i=1; i<=100; i++) {
+			monitor.addSample(i * 1000);
+		}
+		assertEquals(50500, monitor.getAverage());
+		String[] names = monitor.getStatisticNames();
+		assertTrue(names.length > 0);
+		assertEquals(100L, monitor.getStatistics()[0]);
+		assertEquals(100L, monitor.getSnapshot().getCount());
+	}
+
+	@Test
+	public void mergesStripeWise() {
+		StripedLatencyMonitor source = new StripedLatencyMonitor(new SimpleLatencyMonitorFactory(), 10, TimeUnit.NANOSECONDS, 2);
+		StripedLatencyMonitor target = new StripedLatencyMonitor(new SimpleLatencyMonitorFactory(), 10, TimeUnit.NANOSECONDS, 2);
+		source.addSample(100);
+		target.addSample(300);
+		source.mergeInto(target);
+		assertEquals(200, target.getAverage());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void stripesHaveToBeMergeable() {
+		new StripedLatencyMonitor(new LatencyMonitorFactory() {
+			public LatencyMonitor createLatencyMonitor(int aSampleSize, TimeUnit aUnit) {
+				return new LatencyMonitor() {
+					public void addSample(long duration) {
+					}
+					public long getAverage() {
+						return 0;
+					}
+				};
+			}
+		}, 10, TimeUnit.NANOSECONDS, 2);
+	}
+}